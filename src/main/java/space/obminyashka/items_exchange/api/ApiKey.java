@@ -8,12 +8,14 @@ public class ApiKey {
     // Advertisement API
     public static final String ADV = API + "/adv";
     public static final String ADV_SEARCH_PAGINATED = ADV + "/search/{keyword}?page={page}&size={size}";
+    public static final String ADV_SEARCH_FEED = ADV + "/search/{keyword}/feed";
     public static final String ADV_DEFAULT_IMAGE = ADV + "/default-image/{advertisementId}/{imageId}";
     public static final String ADV_ID = ADV + "/{advertisement_id}";
     public static final String ADV_FILTER = ADV + "/filter";
     public static final String ADV_THUMBNAIL = ADV + "/thumbnail";
     public static final String ADV_THUMBNAIL_RANDOM = ADV + "/thumbnail/random";
     public static final String ADV_THUMBNAIL_PARAMS = ADV_THUMBNAIL + "?page={page}&size={size}";
+    public static final String ADV_THUMBNAIL_FEED = ADV_THUMBNAIL + "/feed";
     public static final String ADV_TOTAL = ADV + "/total-amount";
     // Authorization API
     public static final String AUTH = API + "/auth";
@@ -31,7 +33,9 @@ public class ApiKey {
     public static final String IMAGE = API + "/image";
     public static final String IMAGE_BY_ADV_ID = IMAGE + "/{advertisement_id}";
     public static final String IMAGE_RESOURCE = IMAGE_BY_ADV_ID + "/resource";
+    public static final String IMAGE_BY_ADV_ID_AND_ID = IMAGE_BY_ADV_ID + "/{image_id}";
     public static final String IMAGE_COUNT = IMAGE_BY_ADV_ID + "/total";
+    public static final String IMAGE_STATUS = IMAGE_BY_ADV_ID + "/status";
     // Location API
     public static final String LOCATION = API + "/location";
     public static final String LOCATION_ID = LOCATION + "/{location_id}";
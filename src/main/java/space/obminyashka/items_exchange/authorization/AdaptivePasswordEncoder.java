@@ -0,0 +1,146 @@
+package space.obminyashka.items_exchange.authorization;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import space.obminyashka.items_exchange.exception.PasswordHashingOverloadedException;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import static space.obminyashka.items_exchange.util.MessageSourceUtil.getMessageSource;
+
+/**
+ * Hashes passwords with BCrypt on a small fixed pool of threads, so a burst of logins takes no more CPU than
+ * the pool has and doesn't slow down other requests. Request threads still wait for their hash, but passwords
+ * beyond the pool's queue are rejected at once instead of piling up request threads.
+ * BCrypt cost is calibrated on start to take about the target time on the current hardware. Passwords hashed
+ * with a lower cost are reported for upgrading, so they are rehashed with the calibrated cost on the next login.
+ * Ones hashed with a higher cost, e.g. by an instance on slower hardware, are kept, as they are no weaker
+ */
+@Slf4j
+@Component
+public class AdaptivePasswordEncoder implements PasswordEncoder {
+    private static final int MAX_STRENGTH = 31;
+    private static final Pattern BCRYPT_STRENGTH = Pattern.compile("\\A\\$2[aby]?\\$(\\d\\d)\\$");
+    private static final String STAGE_TIMER = "password.hashing.stage";
+
+    private final int strength;
+    private final BCryptPasswordEncoder delegate;
+    private final ThreadPoolExecutor executor;
+    private final Timer queueTimer;
+    private final Timer hashTimer;
+    private final Counter rejectedCounter;
+
+    public AdaptivePasswordEncoder(MeterRegistry meterRegistry,
+                                   @Value("${app.password.hashing.threads}") int threads,
+                                   @Value("${app.password.hashing.queue-capacity}") int queueCapacity,
+                                   @Value("${app.password.hashing.target.ms}") long targetMillis,
+                                   @Value("${app.password.hashing.min-strength}") int minStrength) {
+        this.strength = calibrate(minStrength, targetMillis);
+        this.delegate = new BCryptPasswordEncoder(strength);
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new CustomizableThreadFactory("password-hashing-"));
+        log.info("BCrypt strength {} is calibrated for {} ms per hash", strength, targetMillis);
+
+        Gauge.builder("password.hashing.queue.depth", executor, e -> e.getQueue().size())
+                .description("Passwords waiting for a free password hashing thread")
+                .register(meterRegistry);
+        Gauge.builder("password.hashing.strength", this, encoder -> encoder.strength)
+                .description("BCrypt cost calibrated on start")
+                .register(meterRegistry);
+        this.queueTimer = stageTimer(meterRegistry, "queue");
+        this.hashTimer = stageTimer(meterRegistry, "hash");
+        this.rejectedCounter = Counter.builder("password.hashing.rejected")
+                .description("Passwords rejected since the password hashing queue was full")
+                .register(meterRegistry);
+    }
+
+    private static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder(STAGE_TIMER)
+                .description("Time spent by a password in a hashing stage")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Find the highest cost, starting from the minimal one, which hashes a password within the target time.
+     * Every tried cost is measured, and as every next cost doubles the time, the next one is tried only while
+     * the measured time is within half of the target
+     */
+    static int calibrate(int minStrength, long targetMillis) {
+        var strength = minStrength;
+        // the first hash warms the code up
+        measureMillis(strength);
+        var millis = measureMillis(strength);
+        while (strength < MAX_STRENGTH && millis * 2 <= targetMillis) {
+            strength++;
+            millis = measureMillis(strength);
+        }
+        return strength;
+    }
+
+    private static long measureMillis(int strength) {
+        final var start = System.nanoTime();
+        new BCryptPasswordEncoder(strength).encode("calibration");
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return hash(() -> delegate.encode(rawPassword));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return hash(() -> delegate.matches(rawPassword, encodedPassword));
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        if (encodedPassword == null) {
+            return false;
+        }
+        final var matcher = BCRYPT_STRENGTH.matcher(encodedPassword);
+        return matcher.find() && Integer.parseInt(matcher.group(1)) < strength;
+    }
+
+    <T> T hash(Supplier<T> hashing) {
+        final var submitted = System.nanoTime();
+        final Future<T> result;
+        try {
+            result = executor.submit(() -> {
+                queueTimer.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+                return hashTimer.record(hashing);
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedCounter.increment();
+            throw new PasswordHashingOverloadedException(getMessageSource("password.hashing.overloaded"));
+        }
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Password hashing is interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException("Password hashing failed", e.getCause());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
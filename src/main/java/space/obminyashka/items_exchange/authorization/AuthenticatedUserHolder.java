@@ -0,0 +1,71 @@
+package space.obminyashka.items_exchange.authorization;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+import space.obminyashka.items_exchange.dto.UserAuthDto;
+import space.obminyashka.items_exchange.model.User;
+import space.obminyashka.items_exchange.service.UserService;
+
+import java.util.Optional;
+
+/**
+ * Keeps the user authenticated by the current request, so the JWT filter, the deleted users filter and controllers
+ * share a single lookup of the user's credentials and a single load of the user entity
+ */
+@Component
+@RequestScope
+@RequiredArgsConstructor
+public class AuthenticatedUserHolder {
+
+    private final UserService userService;
+
+    private String username;
+    private UserAuthDto credentials;
+    private User user;
+
+    /**
+     * Find the credentials of the user, which are selected once per request
+     * @param usernameOrEmail login or email of the authenticated user
+     * @return {@link Optional} with the user's authentication fields as the result
+     */
+    public Optional<UserAuthDto> findCredentials(String usernameOrEmail) {
+        resetIfAnotherUser(usernameOrEmail);
+        if (credentials == null) {
+            credentials = userService.findAuthByUsernameOrEmail(usernameOrEmail).orElse(null);
+        }
+        return Optional.ofNullable(credentials);
+    }
+
+    /**
+     * Keep the credentials read from a trusted source, like claims of a verified access token, instead of selecting them
+     * @param trustedCredentials the authenticated user's fields
+     * @return the same credentials
+     */
+    public UserAuthDto useCredentials(UserAuthDto trustedCredentials) {
+        resetIfAnotherUser(trustedCredentials.username());
+        credentials = trustedCredentials;
+        return trustedCredentials;
+    }
+
+    /**
+     * Find the user entity, which is loaded once per request
+     * @param usernameOrEmail login or email of the authenticated user
+     * @return {@link Optional} with the user as the result
+     */
+    public Optional<User> findUser(String usernameOrEmail) {
+        resetIfAnotherUser(usernameOrEmail);
+        if (user == null) {
+            user = userService.findByUsernameOrEmail(usernameOrEmail).orElse(null);
+        }
+        return Optional.ofNullable(user);
+    }
+
+    private void resetIfAnotherUser(String usernameOrEmail) {
+        if (!usernameOrEmail.equals(username)) {
+            username = usernameOrEmail;
+            credentials = null;
+            user = null;
+        }
+    }
+}
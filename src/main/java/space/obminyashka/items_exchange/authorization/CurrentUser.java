@@ -0,0 +1,14 @@
+package space.obminyashka.items_exchange.authorization;
+
+import java.lang.annotation.*;
+
+/**
+ * Marks a controller method parameter of the {@link space.obminyashka.items_exchange.model.User} type which has
+ * to be resolved as the user authenticated by the current request
+ * @see CurrentUserArgumentResolver
+ */
+@Target(ElementType.PARAMETER)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface CurrentUser {
+}
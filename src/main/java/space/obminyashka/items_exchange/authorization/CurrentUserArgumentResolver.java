@@ -0,0 +1,41 @@
+package space.obminyashka.items_exchange.authorization;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.MethodParameter;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import space.obminyashka.items_exchange.model.User;
+
+import java.security.Principal;
+import java.util.Optional;
+
+import static space.obminyashka.items_exchange.util.MessageSourceUtil.getMessageSource;
+
+/**
+ * Resolves parameters annotated with {@link CurrentUser} from the {@link AuthenticatedUserHolder} of the request
+ */
+@Component
+@RequiredArgsConstructor
+public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolver {
+
+    private final AuthenticatedUserHolder authenticatedUserHolder;
+
+    @Override
+    public boolean supportsParameter(MethodParameter parameter) {
+        return parameter.hasParameterAnnotation(CurrentUser.class) && parameter.getParameterType().equals(User.class);
+    }
+
+    @Override
+    public User resolveArgument(@NonNull MethodParameter parameter, ModelAndViewContainer mavContainer,
+                                @NonNull NativeWebRequest webRequest, WebDataBinderFactory binderFactory) {
+        return Optional.ofNullable(webRequest.getUserPrincipal())
+                .map(Principal::getName)
+                .flatMap(authenticatedUserHolder::findUser)
+                .orElseThrow(() -> new UsernameNotFoundException(getMessageSource("exception.user.not-found")));
+    }
+}
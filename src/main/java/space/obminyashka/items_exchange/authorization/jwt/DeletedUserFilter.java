@@ -1,6 +1,7 @@
 package space.obminyashka.items_exchange.authorization.jwt;
 
-import space.obminyashka.items_exchange.model.User;
+import space.obminyashka.items_exchange.authorization.AuthenticatedUserHolder;
+import space.obminyashka.items_exchange.dto.UserAuthDto;
 import space.obminyashka.items_exchange.service.UserService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpMethod;
@@ -27,6 +28,7 @@ import static space.obminyashka.items_exchange.util.MessageSourceUtil.getParamet
 public class DeletedUserFilter extends GenericFilterBean {
 
     private final UserService userService;
+    private final AuthenticatedUserHolder authenticatedUserHolder;
 
     @Override
     public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain chain)
@@ -36,8 +38,8 @@ public class DeletedUserFilter extends GenericFilterBean {
         if (principal != null) {
 
             String username = principal.getName();
-            Optional<User> selfDeletedUser = userService.findByUsernameOrEmail(username)
-                    .filter(Predicate.not(User::isEnabled));
+            Optional<UserAuthDto> selfDeletedUser = authenticatedUserHolder.findCredentials(username)
+                    .filter(Predicate.not(UserAuthDto::isEnabled));
             if (selfDeletedUser.isPresent() && !isAllowedMethodsAccessed(httpServletRequest)) {
                 blockFurtherAccessWithError(selfDeletedUser.get(), (HttpServletResponse) servletResponse);
                 return;
@@ -46,12 +48,12 @@ public class DeletedUserFilter extends GenericFilterBean {
         chain.doFilter(servletRequest, servletResponse);
     }
 
-    private void blockFurtherAccessWithError(User user, HttpServletResponse response) throws IOException {
+    private void blockFurtherAccessWithError(UserAuthDto user, HttpServletResponse response) throws IOException {
         try (PrintWriter writer = response.getWriter()) {
             writer.write(getMessageSource("exception.illegal.operation")
                     .concat(". ")
                     .concat(getParametrizedMessageSource("account.self.delete.request",
-                            userService.getDaysBeforeDeletion(user))));
+                            userService.getDaysBeforeDeletion(user.updated()))));
             response.setStatus(HttpServletResponse.SC_FORBIDDEN);
         }
     }
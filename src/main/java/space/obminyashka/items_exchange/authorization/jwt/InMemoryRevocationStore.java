@@ -0,0 +1,29 @@
+package space.obminyashka.items_exchange.authorization.jwt;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+
+/**
+ * Keeps revoked tokens in memory of the current instance only, so they are valid again after a restart.
+ * Used by tests and single instance setups with 'app.access.jwt.revocation.store=memory'
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "app.access.jwt.revocation.store", havingValue = "memory")
+public class InMemoryRevocationStore implements RevocationStore {
+
+    private final InvalidatedTokensHolder invalidatedTokensHolder;
+
+    @Override
+    public void revoke(TokenId id, Date expireDate) {
+        invalidatedTokensHolder.invalidate(id, expireDate);
+    }
+
+    @Override
+    public boolean isRevoked(TokenId id, Date expireDate) {
+        return invalidatedTokensHolder.isInvalidated(id, expireDate);
+    }
+}
@@ -1,31 +1,116 @@
 package space.obminyashka.items_exchange.authorization.jwt;
 
-import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.util.Date;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Keeps access tokens invalidated by logout until they expire. Tokens are identified by a 128-bit hash of their
+ * content and grouped into buckets by their expiration time, so expired tokens are dropped a whole bucket at once.
+ * Each bucket has a Bloom filter answering the common "not invalidated" case without looking into its set.
+ * Each bucket takes {@value #BLOOM_FILTER_BYTES} bytes for its Bloom filter. An invalidated token is estimated to take
+ * {@value #ESTIMATED_BYTES_PER_TOKEN} bytes more, the estimate isn't measured, but derived from object layouts of
+ * a 64-bit JVM with compressed references, so the 'jwt.invalidated.tokens.memory.estimated' gauge is approximate
+ */
 @Component
-@RequiredArgsConstructor
-@Slf4j
 public class InvalidatedTokensHolder {
 
-    private final Map<String, Date> data = new ConcurrentHashMap<>();
+    // a TokenId of two longs (12 bytes header + 16, aligned to 32), a node of the concurrent set (12 bytes header,
+    // hash and three references, aligned to 32) and its share of the set's table, whose slots are 4 bytes
+    // and which is 1.33 to 2.67 times larger than the set
+    static final int ESTIMATED_BYTES_PER_TOKEN = 32 + 32 + 8;
+    private static final int BLOOM_FILTER_BITS = 1 << 16;
+    static final int BLOOM_FILTER_BYTES = BLOOM_FILTER_BITS / Byte.SIZE;
+    private static final int BLOOM_FILTER_HASHES = 4;
 
-    public void invalidate(final String token, final Date expireDate) {
-        data.computeIfAbsent(token, v -> expireDate);
+    private final Map<Long, Bucket> buckets = new ConcurrentHashMap<>();
+    private final long bucketMillis;
+
+    public InvalidatedTokensHolder(@Value("${app.access.jwt.invalidated.bucket.ms}") long bucketMillis,
+                                   MeterRegistry meterRegistry) {
+        this.bucketMillis = bucketMillis;
+
+        Gauge.builder("jwt.invalidated.tokens", this, InvalidatedTokensHolder::size)
+                .description("Access tokens invalidated by logout which haven't expired yet")
+                .register(meterRegistry);
+        Gauge.builder("jwt.invalidated.tokens.memory.estimated", this, InvalidatedTokensHolder::estimateMemory)
+                .description("Estimate of memory taken by the invalidated access tokens, derived from the assumed "
+                        + "object layout rather than measured")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public void invalidate(final TokenId id, final Date expireDate) {
+        buckets.computeIfAbsent(bucketOf(expireDate), index -> new Bucket())
+                .add(id);
+    }
+
+    /**
+     * Check whether the token is invalidated
+     * @param id hash of the access token
+     * @param expireDate expiration date of the token, which points to the bucket it's kept in
+     * @return true when the token was invalidated
+     */
+    public boolean isInvalidated(final TokenId id, final Date expireDate) {
+        final var bucket = buckets.get(bucketOf(expireDate));
+        return bucket != null && bucket.contains(id);
+    }
+
+    @Scheduled(fixedDelayString = "${app.access.jwt.invalidated.bucket.ms}")
+    void removeExpiredTokens() {
+        // a bucket holds tokens expiring before its end, which is the start of the next bucket
+        final long lastExpiredBucket = bucketOf(new Date()) - 1;
+        buckets.keySet().removeIf(index -> index <= lastExpiredBucket);
     }
 
-    public boolean isInvalidated(final String token) {
-        return data.containsKey(token);
+    long size() {
+        return buckets.values().stream()
+                .mapToLong(bucket -> bucket.tokens.size())
+                .sum();
     }
 
-    @Scheduled(fixedDelayString = "${app.access.jwt.expiration.time.ms}")
-    private void removeExpiredTokens() {
-        data.entrySet().removeIf(entry -> entry.getValue().before(new Date()));
+    double estimateMemory() {
+        return (double) size() * ESTIMATED_BYTES_PER_TOKEN + (double) buckets.size() * BLOOM_FILTER_BYTES;
+    }
+
+    private long bucketOf(Date expireDate) {
+        return expireDate.getTime() / bucketMillis;
+    }
+
+    private static class Bucket {
+        private final Set<TokenId> tokens = ConcurrentHashMap.newKeySet();
+        private final AtomicLongArray bloomFilter = new AtomicLongArray(BLOOM_FILTER_BITS / Long.SIZE);
+
+        void add(TokenId id) {
+            tokens.add(id);
+            for (int i = 0; i < BLOOM_FILTER_HASHES; i++) {
+                final int bit = bitOf(id, i);
+                final long mask = 1L << (bit % Long.SIZE);
+                bloomFilter.getAndUpdate(bit / Long.SIZE, word -> word | mask);
+            }
+        }
+
+        boolean contains(TokenId id) {
+            for (int i = 0; i < BLOOM_FILTER_HASHES; i++) {
+                final int bit = bitOf(id, i);
+                if ((bloomFilter.get(bit / Long.SIZE) & (1L << (bit % Long.SIZE))) == 0) {
+                    return false;
+                }
+            }
+            return tokens.contains(id);
+        }
+
+        private static int bitOf(TokenId id, int hashIndex) {
+            // double hashing, both halves of the token's hash are already uniformly distributed
+            return (int) ((id.high() + hashIndex * id.low()) & (BLOOM_FILTER_BITS - 1));
+        }
     }
 }
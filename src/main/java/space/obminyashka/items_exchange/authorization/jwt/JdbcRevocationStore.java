@@ -0,0 +1,81 @@
+package space.obminyashka.items_exchange.authorization.jwt;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.Date;
+
+/**
+ * Shares revoked tokens between all instances and restarts through the append-only 'revoked_token' table.
+ * Lookups are answered by the local {@link InvalidatedTokensHolder}, which is filled with all unexpired rows
+ * on start and then with rows created since the last poll, so a token revoked by another instance is rejected
+ * here at most 'app.access.jwt.revocation.store.poll.ms' later. Rows are re-read by their creation time rather than
+ * by ID: a row with a lower ID may be committed later, so every poll looks 'app.access.jwt.revocation.store.look-back.ms'
+ * further back, re-adding a token is harmless
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "app.access.jwt.revocation.store", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcRevocationStore implements RevocationStore {
+
+    private static final String INSERT = "INSERT INTO revoked_token (token_hash, expires_at, created_at) VALUES (?, ?, ?)";
+    private static final String SELECT_UNEXPIRED = "SELECT token_hash, expires_at FROM revoked_token WHERE expires_at > ?";
+    private static final String SELECT_CREATED_SINCE = "SELECT token_hash, expires_at FROM revoked_token " +
+            "WHERE created_at > ? AND expires_at > ?";
+    private static final String DELETE_EXPIRED = "DELETE FROM revoked_token WHERE expires_at <= ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final InvalidatedTokensHolder invalidatedTokensHolder;
+    private final long lookBackMillis;
+    private Timestamp lastPolled;
+
+    public JdbcRevocationStore(JdbcTemplate jdbcTemplate, InvalidatedTokensHolder invalidatedTokensHolder,
+                               @Value("${app.access.jwt.revocation.store.look-back.ms}") long lookBackMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.invalidatedTokensHolder = invalidatedTokensHolder;
+        this.lookBackMillis = lookBackMillis;
+    }
+
+    @Override
+    public void revoke(TokenId id, Date expireDate) {
+        jdbcTemplate.update(INSERT, id.toBytes(), new Timestamp(expireDate.getTime()), new Timestamp(System.currentTimeMillis()));
+        invalidatedTokensHolder.invalidate(id, expireDate);
+    }
+
+    @Override
+    public boolean isRevoked(TokenId id, Date expireDate) {
+        return invalidatedTokensHolder.isInvalidated(id, expireDate);
+    }
+
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${app.access.jwt.revocation.store.poll.ms}")
+    synchronized void poll() {
+        final var pollStarted = new Timestamp(System.currentTimeMillis());
+        if (lastPolled == null) {
+            jdbcTemplate.query(SELECT_UNEXPIRED, this::readRow, pollStarted);
+        } else {
+            final var since = new Timestamp(lastPolled.getTime() - lookBackMillis);
+            jdbcTemplate.query(SELECT_CREATED_SINCE, this::readRow, since, pollStarted);
+        }
+        lastPolled = pollStarted;
+    }
+
+    private void readRow(ResultSet rs) throws SQLException {
+        final var expireDate = new Date(rs.getTimestamp("expires_at").getTime());
+        invalidatedTokensHolder.invalidate(TokenId.of(rs.getBytes("token_hash")), expireDate);
+    }
+
+    @Scheduled(cron = "${cron.expression.once_per_day_at_3am}")
+    void removeExpiredTokens() {
+        final var removed = jdbcTemplate.update(DELETE_EXPIRED, new Timestamp(System.currentTimeMillis()));
+        log.info("{} expired revoked tokens are removed", removed);
+    }
+}
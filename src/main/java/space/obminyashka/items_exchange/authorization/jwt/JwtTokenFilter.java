@@ -3,7 +3,6 @@ package space.obminyashka.items_exchange.authorization.jwt;
 import lombok.NonNull;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
-import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.filter.OncePerRequestFilter;
 
@@ -22,16 +21,11 @@ public class JwtTokenFilter extends OncePerRequestFilter {
     public void doFilterInternal(@NonNull HttpServletRequest req, @NonNull HttpServletResponse res, @NonNull FilterChain filterChain)
             throws IOException, ServletException {
         String token = jwtTokenProvider.getTokenFromHeader(req, HttpHeaders.AUTHORIZATION);
-        if (isTokenValid(req, token)) {
-            Authentication auth = jwtTokenProvider.getAuthentication(token);
-            if (auth != null) {
-                SecurityContextHolder.getContext().setAuthentication(auth);
-            }
+        if (!token.isEmpty()) {
+            jwtTokenProvider.getValidAccessTokenClaims(token, req)
+                    .map(jwtTokenProvider::getAuthentication)
+                    .ifPresent(auth -> SecurityContextHolder.getContext().setAuthentication(auth));
         }
         filterChain.doFilter(req, res);
     }
-
-    private boolean isTokenValid(HttpServletRequest req, String token) {
-        return !token.isEmpty() && jwtTokenProvider.validateAccessToken(token, req);
-    }
 }
@@ -8,18 +8,23 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Component;
-import space.obminyashka.items_exchange.model.Role;
+import space.obminyashka.items_exchange.authorization.AuthenticatedUserHolder;
+import space.obminyashka.items_exchange.dto.UserAuthDto;
+import space.obminyashka.items_exchange.model.User;
+import space.obminyashka.items_exchange.model.enums.Status;
 
 import javax.annotation.PostConstruct;
 import javax.servlet.http.HttpServletRequest;
+import java.security.SecureRandom;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Base64;
 import java.util.Date;
 import java.util.Optional;
-import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
 import static space.obminyashka.items_exchange.util.MessageSourceUtil.getMessageSource;
@@ -32,9 +37,17 @@ public class JwtTokenProvider {
     private static final String BEARER_PREFIX = "Bearer ";
     private static final String EMPTY_TOKEN = "";
     private static final String DATE_FORMAT = "yyyy-MM-dd HH:mm:ss";
-
-    private final UserDetailsService userDetailsService;
-    private final InvalidatedTokensHolder invalidatedTokensHolder;
+    private static final String ROLE_CLAIM = "role";
+    private static final String USER_ID_CLAIM = "uid";
+    private static final String STATUS_CLAIM = "status";
+    private static final String UPDATED_CLAIM = "updated";
+    private static final int REFRESH_TOKEN_BYTES = 32;
+
+    private final AuthenticatedUserHolder authenticatedUserHolder;
+    private final RevocationStore revocationStore;
+    private final TokenRevocationCache tokenRevocationCache;
+    private final VerifiedTokensCache verifiedTokensCache;
+    private final SecureRandom secureRandom = new SecureRandom();
 
     @Value("${app.jwt.secret}")
     private String secret;
@@ -42,15 +55,26 @@ public class JwtTokenProvider {
     private long jwtAccessTokenExpirationMillis;
     @Value("${app.refresh.jwt.expiration.time.seconds}")
     private long jwtRefreshTokenExpirationSeconds;
+    @Value("${app.access.jwt.stateless}")
+    private boolean statelessAuthentication;
 
     @PostConstruct
     protected void init() {
         secret = Base64.getEncoder().encodeToString(secret.getBytes());
     }
 
-    public String createAccessToken(String username, Role role) {
-        Claims claims = Jwts.claims().setSubject(username);
-        claims.put("role", role.getName());
+    public String createAccessToken(User user) {
+        return createAccessToken(new UserAuthDto(user.getId(), user.getUsername(), user.getFirstName(),
+                user.getLastName(), user.getEmail(), user.getPassword(), user.getRole().getName(), user.getStatus(),
+                user.getUpdated()));
+    }
+
+    public String createAccessToken(UserAuthDto user) {
+        Claims claims = Jwts.claims().setSubject(user.username());
+        claims.put(ROLE_CLAIM, user.role());
+        claims.put(USER_ID_CLAIM, user.id());
+        claims.put(STATUS_CLAIM, user.status().name());
+        claims.put(UPDATED_CLAIM, toEpochMilli(user.updated()));
 
         Date now = new Date();
         Date validity = new Date(now.getTime() + jwtAccessTokenExpirationMillis);
@@ -63,44 +87,107 @@ public class JwtTokenProvider {
                 .compact();
     }
 
-    public Authentication getAuthentication(String token) {
-        UserDetails userDetails = this.userDetailsService.loadUserByUsername(getUsername(token));
+    public Authentication getAuthentication(Claims claims) {
+        final var username = claims.getSubject();
+        final var credentials = isTrustedStateless(claims) ?
+                authenticatedUserHolder.useCredentials(readCredentials(claims)) :
+                authenticatedUserHolder.findCredentials(username)
+                        .orElseThrow(() -> new UsernameNotFoundException("User with username: " + username + " not found"));
+        UserDetails userDetails = JwtUser.of(credentials);
         return new UsernamePasswordAuthenticationToken(userDetails, "", userDetails.getAuthorities());
     }
 
-    private String getUsername(String token) {
-        return Jwts.parser().setSigningKey(secret).parseClaimsJws(token).getBody().getSubject();
+    private boolean isTrustedStateless(Claims claims) {
+        // tokens issued before the claims were added are authenticated by the user stored in DB
+        return statelessAuthentication && claims.containsKey(USER_ID_CLAIM);
+    }
+
+    private static UserAuthDto readCredentials(Claims claims) {
+        return new UserAuthDto(
+                claims.get(USER_ID_CLAIM, Number.class).longValue(),
+                claims.getSubject(),
+                null,
+                null,
+                null,
+                "",
+                claims.get(ROLE_CLAIM, String.class),
+                Status.valueOf(claims.get(STATUS_CLAIM, String.class)),
+                Optional.ofNullable(claims.get(UPDATED_CLAIM, Number.class))
+                        .map(updated -> LocalDateTime.ofInstant(Instant.ofEpochMilli(updated.longValue()), ZoneId.systemDefault()))
+                        .orElse(null));
+    }
+
+    private static Long toEpochMilli(LocalDateTime localDateTime) {
+        return localDateTime == null ? null : localDateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 
-    public boolean validateAccessToken(String token, HttpServletRequest req) {
+    /**
+     * Verify the access token once and check that it's neither expired, nor invalidated or revoked
+     * @param token access token without the 'Bearer ' prefix
+     * @param req current request, which gets the 'detailedError' attribute when the token isn't valid
+     * @return {@link Optional} with verified claims of the valid token
+     */
+    public Optional<Claims> getValidAccessTokenClaims(String token, HttpServletRequest req) {
         try {
-            Jws<Claims> claims = Jwts.parser().setSigningKey(secret).parseClaimsJws(token);
-            return !claims.getBody().getExpiration().before(new Date())
-                    && !invalidatedTokensHolder.isInvalidated(token);
+            // the token is hashed once for both the verified tokens cache and the revocation store
+            final var id = TokenId.of(token);
+            final var claims = verify(token, id);
+            return !claims.getExpiration().before(new Date())
+                    && !revocationStore.isRevoked(id, claims.getExpiration())
+                    && !isRevoked(claims, req) ? Optional.of(claims) : Optional.empty();
         } catch (JwtException e) {
             log.error("Unauthorized: {}", e.getMessage());
             req.setAttribute("detailedError", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private Claims verify(String token, TokenId id) {
+        return verifiedTokensCache.get(id).orElseGet(() -> {
+            final var claims = Jwts.parser().setSigningKey(secret).parseClaimsJws(token).getBody();
+            verifiedTokensCache.put(id, claims);
+            return claims;
+        });
+    }
+
+    private boolean isRevoked(Claims claims, HttpServletRequest req) {
+        if (!isTrustedStateless(claims)
+                || !tokenRevocationCache.isRevoked(claims.get(USER_ID_CLAIM, Number.class).longValue(), claims.getIssuedAt())) {
             return false;
         }
+        final var revokedTokenMessage = getMessageSource("access.token.revoked");
+        log.error("Unauthorized: {}", revokedTokenMessage);
+        req.setAttribute("detailedError", revokedTokenMessage);
+        return true;
     }
 
     public void invalidateAccessToken(String token) {
-        final Date expirationDate = getAccessTokenExpirationDate(token)
+        final var id = TokenId.of(token);
+        final Date expirationDate = getAccessTokenExpirationDate(token, id)
                 .orElseThrow(() -> new JwtException(getMessageSource("invalid.token")));
-        invalidatedTokensHolder.invalidate(token, expirationDate);
+        revocationStore.revoke(id, expirationDate);
     }
 
     public Optional<Date> getAccessTokenExpirationDate(String token) {
+        return getAccessTokenExpirationDate(token, TokenId.of(token));
+    }
+
+    private Optional<Date> getAccessTokenExpirationDate(String token, TokenId id) {
         try {
-            return Optional.ofNullable(Jwts.parser().setSigningKey(secret).parseClaimsJws(token).getBody().getExpiration());
+            return Optional.ofNullable(verify(token, id).getExpiration());
         } catch (JwtException exception) {
             log.error("Token parsing error {}", exception.getMessage());
             return Optional.empty();
         }
     }
 
-    public String generateRefreshToken(String username) {
-        return String.format("%s%s", username, UUID.randomUUID());
+    /**
+     * @return 256 random bits, which neither reveal nor depend on the user
+     */
+    public String generateRefreshToken() {
+        final var token = new byte[REFRESH_TOKEN_BYTES];
+        secureRandom.nextBytes(token);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(token);
     }
 
     public LocalDateTime generateRefreshTokenExpirationTime() {
@@ -2,10 +2,13 @@ package space.obminyashka.items_exchange.authorization.jwt;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import space.obminyashka.items_exchange.dto.UserAuthDto;
 
 import java.time.LocalDateTime;
 import java.util.Collection;
+import java.util.List;
 
 public record JwtUser(
         @JsonIgnore Long id,
@@ -18,6 +21,20 @@ public record JwtUser(
         boolean enabled,
         @JsonIgnore LocalDateTime lastPasswordResetDate) implements UserDetails {
 
+    public static JwtUser of(UserAuthDto user) {
+        return new JwtUser(
+                user.id(),
+                user.username(),
+                user.firstName(),
+                user.lastName(),
+                user.email(),
+                user.password(),
+                List.of(new SimpleGrantedAuthority(user.role())),
+                user.isEnabled(),
+                user.updated()
+        );
+    }
+
     @Override
     public String getUsername() {
         return username;
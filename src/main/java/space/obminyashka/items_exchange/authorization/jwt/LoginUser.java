@@ -0,0 +1,55 @@
+package space.obminyashka.items_exchange.authorization.jwt;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import space.obminyashka.items_exchange.dto.UserLoginDetailsDto;
+import space.obminyashka.items_exchange.model.enums.Status;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Principal authenticated by a login, which carries everything both tokens and the login response are made of
+ */
+public record LoginUser(UserLoginDetailsDto details) implements UserDetails {
+
+    public LoginUser withPassword(String password) {
+        return new LoginUser(details.withPassword(password));
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority(details.role()));
+    }
+
+    @Override
+    public String getPassword() {
+        return details.password();
+    }
+
+    @Override
+    public String getUsername() {
+        return details.username();
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return details.status() == Status.ACTIVE;
+    }
+}
@@ -0,0 +1,25 @@
+package space.obminyashka.items_exchange.authorization.jwt;
+
+import java.util.Date;
+
+/**
+ * Storage of access tokens revoked by logout, which keeps them until they expire
+ */
+public interface RevocationStore {
+
+    /**
+     * Revoke the token, so it's rejected until it expires
+     * @param id hash of the access token
+     * @param expireDate expiration date of the token
+     */
+    void revoke(TokenId id, Date expireDate);
+
+    /**
+     * Check whether the token is revoked. It's called on every authenticated request, so implementations answer
+     * it from memory
+     * @param id hash of the access token
+     * @param expireDate expiration date of the token
+     * @return true when the token was revoked
+     */
+    boolean isRevoked(TokenId id, Date expireDate);
+}
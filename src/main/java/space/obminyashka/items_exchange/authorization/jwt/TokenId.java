@@ -0,0 +1,32 @@
+package space.obminyashka.items_exchange.authorization.jwt;
+
+import space.obminyashka.items_exchange.util.Sha256Util;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 128-bit prefix of the SHA-256 hash of an access token. It's calculated once per request and identifies the token
+ * in {@link VerifiedTokensCache} and {@link RevocationStore}, so neither of them keeps the token itself
+ */
+public record TokenId(long high, long low) {
+    static final int BYTES = 2 * Long.BYTES;
+
+    /**
+     * @param token access token without the 'Bearer ' prefix
+     */
+    public static TokenId of(String token) {
+        return of(Sha256Util.hash(token));
+    }
+
+    static TokenId of(byte[] hash) {
+        final var buffer = ByteBuffer.wrap(hash);
+        return new TokenId(buffer.getLong(), buffer.getLong());
+    }
+
+    byte[] toBytes() {
+        return ByteBuffer.allocate(BYTES)
+                .putLong(high)
+                .putLong(low)
+                .array();
+    }
+}
@@ -0,0 +1,79 @@
+package space.obminyashka.items_exchange.authorization.jwt;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import space.obminyashka.items_exchange.dao.UserRepository;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches for a short time since when access tokens of each user are valid, so tokens revoked by a password
+ * or status change are rejected without reading the user on every request
+ */
+@Component
+public class TokenRevocationCache {
+
+    private final Map<Long, ValidAfter> data = new ConcurrentHashMap<>();
+    private final UserRepository userRepository;
+    private final long ttlMillis;
+
+    public TokenRevocationCache(UserRepository userRepository,
+                                @Value("${app.access.jwt.revocation.cache.ttl.ms}") long ttlMillis) {
+        this.userRepository = userRepository;
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Check whether the token of the user was issued before its tokens were revoked or the user was removed
+     * @param userId ID of the token's user
+     * @param issuedAt issue time of the token, which has a precision of seconds
+     * @return true when the token mustn't be trusted anymore
+     */
+    public boolean isRevoked(long userId, Date issuedAt) {
+        var validAfter = data.get(userId);
+        if (validAfter == null || validAfter.isExpired(System.currentTimeMillis())) {
+            validAfter = load(userId);
+            data.put(userId, validAfter);
+        }
+        return validAfter.time() == null || issuedAt.toInstant().isBefore(validAfter.time());
+    }
+
+    /**
+     * Forget the cached time of the user, so tokens revoked by this instance are rejected at once
+     * @param userId ID of the user whose tokens were revoked
+     */
+    public void evict(long userId) {
+        data.remove(userId);
+    }
+
+    private ValidAfter load(long userId) {
+        final Instant time = userRepository.findTokensValidAfterById(userId)
+                .map(validAfter -> toInstant(validAfter).truncatedTo(ChronoUnit.SECONDS))
+                .orElse(null);
+        return new ValidAfter(time, System.currentTimeMillis() + ttlMillis);
+    }
+
+    private static Instant toInstant(LocalDateTime localDateTime) {
+        return localDateTime.atZone(ZoneId.systemDefault()).toInstant();
+    }
+
+    @Scheduled(fixedDelayString = "${app.access.jwt.revocation.cache.ttl.ms}")
+    private void removeExpired() {
+        final var now = System.currentTimeMillis();
+        data.values().removeIf(validAfter -> validAfter.isExpired(now));
+    }
+
+    private record ValidAfter(Instant time, long expiresAt) {
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package space.obminyashka.items_exchange.authorization.jwt;
+
+import io.jsonwebtoken.Claims;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded cache of recently verified access tokens and their claims, so requests of active clients skip the
+ * signature check and decoding of their token. Tokens are kept under their {@link TokenId} only and until they expire.
+ * Lookups take no lock. Eviction is approximate LRU: once the capacity is exceeded, a single thread removes
+ * about a tenth of the entries, the least recently used ones according to a sample of their usage times
+ */
+@Component
+public class VerifiedTokensCache {
+
+    private static final int EVICTION_SAMPLE_SIZE = 64;
+
+    private final Map<TokenId, Entry> data = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final int capacity;
+    private final int sizeAfterEviction;
+
+    public VerifiedTokensCache(@Value("${app.access.jwt.verified-tokens.cache.size}") int capacity) {
+        this.capacity = capacity;
+        this.sizeAfterEviction = capacity - capacity / 10;
+    }
+
+    /**
+     * Get claims of the token verified before
+     * @param id hash of the access token
+     * @return {@link Optional} with the claims of the token, which is empty when it wasn't verified or has expired
+     */
+    public Optional<Claims> get(TokenId id) {
+        final var entry = data.get(id);
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.claims.getExpiration().before(new Date())) {
+            data.remove(id, entry);
+            return Optional.empty();
+        }
+        entry.lastUsed = System.nanoTime();
+        return Optional.of(entry.claims);
+    }
+
+    /**
+     * Keep claims of the token whose signature is verified
+     * @param id hash of the access token
+     * @param claims verified claims of the token, which must have an expiration date
+     */
+    public void put(TokenId id, Claims claims) {
+        if (capacity == 0) {
+            return;
+        }
+        data.put(id, new Entry(claims));
+        // threads coming while another one evicts don't wait for it, the cache may exceed its capacity meanwhile,
+        // so the evicting thread checks the size once again after it's done
+        while (data.size() > capacity && evictionLock.tryLock()) {
+            try {
+                evict();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    int size() {
+        return data.size();
+    }
+
+    private void evict() {
+        final int size = data.size();
+        final int excess = size - sizeAfterEviction;
+        if (excess <= 0) {
+            return;
+        }
+        // iteration order of the map depends on hashes of tokens only, so its first entries are a random sample
+        final long[] sample = data.values().stream()
+                .limit(EVICTION_SAMPLE_SIZE)
+                .mapToLong(entry -> entry.lastUsed)
+                .sorted()
+                .toArray();
+        if (sample.length == 0) {
+            return;
+        }
+        final int evictedFromSample = (int) Math.min(sample.length, Math.ceil((double) excess * sample.length / size));
+        final long lastUsedThreshold = sample[evictedFromSample - 1];
+        final var now = new Date();
+        data.values().removeIf(entry -> entry.lastUsed - lastUsedThreshold <= 0 || entry.claims.getExpiration().before(now));
+    }
+
+    private static final class Entry {
+        private final Claims claims;
+        private volatile long lastUsed = System.nanoTime();
+
+        private Entry(Claims claims) {
+            this.claims = claims;
+        }
+    }
+}
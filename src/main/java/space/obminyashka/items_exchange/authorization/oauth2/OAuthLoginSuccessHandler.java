@@ -28,7 +28,7 @@ public class OAuthLoginSuccessHandler extends SavedRequestAwareAuthenticationSuc
 
         final var oauth2User = (DefaultOidcUser) authentication.getPrincipal();
         final var accessToken = Optional.ofNullable(userService.loginUserWithOAuth2(oauth2User))
-                .map(user -> jwtTokenProvider.createAccessToken(user.getUsername(), user.getRole()))
+                .map(jwtTokenProvider::createAccessToken)
                 .orElse("");
         response.sendRedirect("/oauth-success?code=" + accessToken);
         super.onAuthenticationSuccess(request, response, authentication);
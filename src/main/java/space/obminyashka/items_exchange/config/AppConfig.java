@@ -1,6 +1,7 @@
 package space.obminyashka.items_exchange.config;
 
 import org.modelmapper.ModelMapper;
+import org.modelmapper.convention.MatchingStrategies;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.MessageSource;
 import org.springframework.context.annotation.Bean;
@@ -10,10 +11,11 @@ import org.springframework.data.jpa.repository.config.EnableJpaAuditing;
 import org.springframework.http.MediaType;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.scheduling.annotation.EnableScheduling;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
 import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
 import org.springframework.web.servlet.LocaleResolver;
 import org.springframework.web.servlet.i18n.AcceptHeaderLocaleResolver;
+import space.obminyashka.items_exchange.dto.AdvertisementModificationDto;
+import space.obminyashka.items_exchange.model.Advertisement;
 
 import java.util.List;
 
@@ -25,7 +27,13 @@ public class AppConfig {
 
     @Bean
     public ModelMapper modelMapper() {
-        return new ModelMapper();
+        final var modelMapper = new ModelMapper();
+        // loose matching takes the owner's avatar for the IDs of pending images, which loads the avatar on every
+        // mapped advertisement, while they are set only by the controller creating the advertisement
+        modelMapper.createTypeMap(Advertisement.class, AdvertisementModificationDto.class,
+                        modelMapper.getConfiguration().copy().setMatchingStrategy(MatchingStrategies.LOOSE))
+                .addMappings(mapper -> mapper.skip(AdvertisementModificationDto::setPendingImageIds));
+        return modelMapper;
     }
 
     @Bean
@@ -48,11 +56,6 @@ public class AppConfig {
         return new AcceptHeaderLocaleResolver();
     }
 
-    @Bean
-    public BCryptPasswordEncoder bCryptPasswordEncoder() {
-        return new BCryptPasswordEncoder();
-    }
-
     /**
      * Method fixes HttpMediaTypeNotSupportedException: Content type 'application/octet-stream' not supported error
      * that connected with Swagger-UI and prevent getting multipart requests
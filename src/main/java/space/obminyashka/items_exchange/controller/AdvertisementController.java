@@ -5,26 +5,32 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
-import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import space.obminyashka.items_exchange.api.ApiKey;
+import space.obminyashka.items_exchange.authorization.CurrentUser;
 import space.obminyashka.items_exchange.dto.AdvertisementDisplayDto;
 import space.obminyashka.items_exchange.dto.AdvertisementFilterDto;
 import space.obminyashka.items_exchange.dto.AdvertisementModificationDto;
 import space.obminyashka.items_exchange.dto.AdvertisementTitleDto;
+import space.obminyashka.items_exchange.dto.AdvertisementTitleSliceDto;
 import space.obminyashka.items_exchange.exception.BadRequestException;
 import space.obminyashka.items_exchange.exception.IllegalIdentifierException;
 import space.obminyashka.items_exchange.exception.IllegalOperationException;
+import space.obminyashka.items_exchange.exception.ImageProcessingOverloadedException;
+import space.obminyashka.items_exchange.exception.UnsupportedMediaTypeException;
+import space.obminyashka.items_exchange.mapper.UtilMapper;
 import space.obminyashka.items_exchange.mapper.transfer.Exist;
 import space.obminyashka.items_exchange.mapper.transfer.New;
+import space.obminyashka.items_exchange.model.Advertisement;
+import space.obminyashka.items_exchange.model.Image;
 import space.obminyashka.items_exchange.model.User;
 import space.obminyashka.items_exchange.service.*;
+import space.obminyashka.items_exchange.util.PageCursor;
 import springfox.documentation.annotations.ApiIgnore;
 
 import javax.validation.Valid;
@@ -32,7 +38,7 @@ import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.PositiveOrZero;
 import javax.validation.constraints.Size;
-import java.security.Principal;
+import java.io.IOException;
 import java.util.List;
 
 import static space.obminyashka.items_exchange.util.MessageSourceUtil.getExceptionMessageSourceWithId;
@@ -47,8 +53,7 @@ import static space.obminyashka.items_exchange.util.MessageSourceUtil.getMessage
 public class AdvertisementController {
 
     private final AdvertisementService advertisementService;
-    private final ImageService imageService;
-    private final UserService userService;
+    private final ImageProcessingService imageProcessingService;
     private final SubcategoryService subcategoryService;
     private final LocationService locationService;
 
@@ -69,6 +74,24 @@ public class AdvertisementController {
                 new ResponseEntity<>(dtoList, HttpStatus.OK);
     }
 
+    @GetMapping("/thumbnail/feed")
+    @ApiOperation(value = "Find requested quantity of the advertisement as thumbnails from the newest to the oldest, " +
+            "starting right after the cursor, and return them with the cursor of the next portion")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "BAD REQUEST"),
+            @ApiResponse(code = 404, message = "NOT FOUND")})
+    public ResponseEntity<AdvertisementTitleSliceDto> findThumbnailsFeed(
+            @ApiParam(value = "Cursor received with the previous portion. Skip it to retrieve the first portion")
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @ApiParam(value = "Number of records per portion. Default value: 12")
+            @RequestParam(value = "size", required = false, defaultValue = "12") @Positive int size) throws BadRequestException {
+        final var slice = advertisementService.findThumbnailsAfter(decodeCursor(cursor), size);
+        return slice.content().isEmpty() ?
+                new ResponseEntity<>(HttpStatus.NOT_FOUND) :
+                new ResponseEntity<>(slice, HttpStatus.OK);
+    }
+
     @GetMapping("/thumbnail/random")
     @ApiOperation(value = "Find 12 random advertisement as thumbnails and return them as a result")
     @ApiResponses(value = {
@@ -106,7 +129,7 @@ public class AdvertisementController {
     }
 
     @GetMapping("/search/{keyword}")
-    @ApiOperation(value = "Find advertisements by keyword")
+    @ApiOperation(value = "Find advertisements by keyword and return them ordered by relevance")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "OK"),
             @ApiResponse(code = 400, message = "BAD REQUEST"),
@@ -115,46 +138,84 @@ public class AdvertisementController {
             @PathVariable @NotEmpty String keyword,
             @ApiParam(value = "Results page you want to retrieve (0..N). Default value: 0")
             @RequestParam(value = "page", required = false, defaultValue = "0") @PositiveOrZero int page,
-            @ApiParam(value = "Number of records per page. Default value: 12")
+            @ApiParam(value = "Number of records per page, up to " + AdvertisementService.MAX_SEARCH_PAGE_SIZE + ". Default value: 12")
             @RequestParam(value = "size", required = false, defaultValue = "12") @PositiveOrZero int size){
-        Page<AdvertisementTitleDto> allByKeyword = advertisementService.findByKeyword(keyword, PageRequest.of(page, size, Sort.by("topic")));
+        Page<AdvertisementTitleDto> allByKeyword = advertisementService.findByKeyword(keyword, PageRequest.of(page, size));
         return allByKeyword.isEmpty() ?
                 new ResponseEntity<>(HttpStatus.NOT_FOUND) :
                 new ResponseEntity<>(allByKeyword, HttpStatus.OK);
     }
 
+    @GetMapping("/search/{keyword}/feed")
+    @ApiOperation(value = "Find advertisements by keyword ordered by relevance, starting right after the cursor, " +
+            "and return them with the cursor of the next portion")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 400, message = "BAD REQUEST"),
+            @ApiResponse(code = 404, message = "NOT FOUND")})
+    public ResponseEntity<AdvertisementTitleSliceDto> findFeedByKeyword(
+            @PathVariable @NotEmpty String keyword,
+            @ApiParam(value = "Cursor received with the previous portion. Skip it to retrieve the first portion")
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @ApiParam(value = "Number of records per portion, up to " + AdvertisementService.MAX_SEARCH_PAGE_SIZE + ". Default value: 12")
+            @RequestParam(value = "size", required = false, defaultValue = "12") @Positive int size) throws BadRequestException {
+        final var slice = advertisementService.findByKeywordAfter(keyword, decodeCursor(cursor), size);
+        return slice.content().isEmpty() ?
+                new ResponseEntity<>(HttpStatus.NOT_FOUND) :
+                new ResponseEntity<>(slice, HttpStatus.OK);
+    }
+
     @PostMapping("/filter")
-    @ApiOperation(value = "Filter advertisements by multiple params and return up to 10 results.\n" +
-            "Fill only needed parameters.")
+    @ApiOperation(value = "Filter advertisements by multiple params and return them from the newest to the oldest " +
+            "as a page result.\nFill only needed parameters.")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "OK"),
             @ApiResponse(code = 400, message = "BAD REQUEST"),
             @ApiResponse(code = 404, message = "NOT FOUND")})
-    public ResponseEntity<List<AdvertisementTitleDto>> getFirst10BySearchParameters(@Valid @RequestBody AdvertisementFilterDto filterDto) {
-        List<AdvertisementTitleDto> advertisementsByMultipleParams = advertisementService.findFirst10ByFilter(filterDto);
+    public ResponseEntity<List<AdvertisementTitleDto>> getPageOfAdvertisementsByFilter(
+            @Valid @RequestBody AdvertisementFilterDto filterDto,
+            @ApiParam(value = "Results page you want to retrieve (0..N). Default value: 0")
+            @RequestParam(value = "page", required = false, defaultValue = "0") @PositiveOrZero int page,
+            @ApiParam(value = "Number of records per page, up to " + AdvertisementService.MAX_FILTER_PAGE_SIZE + ". Default value: 10")
+            @RequestParam(value = "size", required = false, defaultValue = "10") @Positive int size) {
+        List<AdvertisementTitleDto> advertisementsByMultipleParams = advertisementService.findByFilter(filterDto, PageRequest.of(page, size));
         return advertisementsByMultipleParams.isEmpty() ?
                 new ResponseEntity<>(HttpStatus.NOT_FOUND) :
                 new ResponseEntity<>(advertisementsByMultipleParams, HttpStatus.OK);
     }
 
     @PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.MULTIPART_FORM_DATA_VALUE, MediaType.APPLICATION_OCTET_STREAM_VALUE})
-    @ApiOperation(value = "Create a new advertisement")
+    @ApiOperation(value = "Create a new advertisement. Its images are compressed in background, see the images' status")
     @ApiResponses(value = {
             @ApiResponse(code = 201, message = "CREATED"),
             @ApiResponse(code = 400, message = "BAD REQUEST"),
-            @ApiResponse(code = 403, message = "FORBIDDEN")})
+            @ApiResponse(code = 403, message = "FORBIDDEN"),
+            @ApiResponse(code = 415, message = "UNSUPPORTED MEDIA TYPE"),
+            @ApiResponse(code = 503, message = "SERVICE UNAVAILABLE")})
     @ResponseStatus(HttpStatus.CREATED)
     public AdvertisementModificationDto createAdvertisement(
             @Validated(New.class) @Valid @RequestPart AdvertisementModificationDto dto,
             @RequestPart(value = "image") @Size(min = 1, max = 10) List<MultipartFile> images,
-            @ApiIgnore Principal principal) throws IllegalIdentifierException {
+            @ApiIgnore @CurrentUser User owner) throws IllegalIdentifierException, UnsupportedMediaTypeException,
+            ImageProcessingOverloadedException, IOException {
 
         validateInternalEntityIds(dto.getSubcategoryId(), dto.getLocationId());
-        final var owner = getUser(principal.getName());
-        final var compressedImages = images.parallelStream()
-                .map(imageService::compress)
+        // images are submitted first, so an overloaded pool rejects the request before anything is saved
+        final var processing = imageProcessingService.submit(images, true);
+        final Advertisement advertisement;
+        try {
+            advertisement = advertisementService.createAdvertisement(dto, owner, images.size());
+        } catch (RuntimeException e) {
+            imageProcessingService.cancel(processing);
+            throw e;
+        }
+        final var pendingImageIds = advertisement.getImages().stream()
+                .map(Image::getId)
                 .toList();
-        return advertisementService.createAdvertisement(dto, owner, compressedImages);
+        imageProcessingService.completeWhenProcessed(pendingImageIds, processing);
+        final var createdAdvertisement = UtilMapper.convertTo(advertisement, AdvertisementModificationDto.class);
+        createdAdvertisement.setPendingImageIds(pendingImageIds);
+        return createdAdvertisement;
     }
 
     @PutMapping
@@ -167,10 +228,10 @@ public class AdvertisementController {
     @ResponseStatus(HttpStatus.ACCEPTED)
     public AdvertisementModificationDto updateAdvertisement(@Validated(Exist.class)
                                                             @Valid @RequestBody AdvertisementModificationDto dto,
-                                                            @ApiIgnore Principal principal)
+                                                            @ApiIgnore @CurrentUser User owner)
             throws IllegalIdentifierException, IllegalOperationException {
 
-        validateAdvertisementOwner(dto.getId(), getUser(principal.getName()));
+        validateAdvertisementOwner(dto.getId(), owner);
         validateInternalEntityIds(dto.getSubcategoryId(), dto.getLocationId());
         return advertisementService.updateAdvertisement(dto);
     }
@@ -183,10 +244,9 @@ public class AdvertisementController {
             @ApiResponse(code = 403, message = "FORBIDDEN")})
     @ResponseStatus(HttpStatus.OK)
     public void deleteAdvertisement(@PathVariable("advertisement_id") @Positive(message = "{invalid.exist.id}") long id,
-                                    @ApiIgnore Principal principal)
+                                    @ApiIgnore @CurrentUser User owner)
             throws IllegalOperationException {
 
-        User owner = getUser(principal.getName());
         validateAdvertisementOwner(id, owner);
         advertisementService.remove(id);
     }
@@ -203,8 +263,7 @@ public class AdvertisementController {
             @PathVariable @PositiveOrZero(message = "{invalid.id}") Long advertisementId,
             @ApiParam(value = "ID of existed image")
             @PathVariable @PositiveOrZero(message = "{invalid.id}") Long imageId,
-            @ApiIgnore Principal principal) throws BadRequestException {
-        User owner = getUser(principal.getName());
+            @ApiIgnore @CurrentUser User owner) throws BadRequestException {
         if (!advertisementService.isUserHasAdvertisementAndItHasImageWithId(advertisementId, imageId, owner)) {
             throw new BadRequestException(getMessageSource("exception.advertisement-image.id.not-found"));
         }
@@ -214,6 +273,17 @@ public class AdvertisementController {
                 .ifPresent(adv -> advertisementService.setDefaultImage(adv, imageId));
     }
 
+    private PageCursor decodeCursor(String cursor) throws BadRequestException {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            return PageCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException(getMessageSource("invalid.cursor"));
+        }
+    }
+
     private void validateAdvertisementOwner(long advertisementId, User owner) throws IllegalOperationException {
         if (!advertisementService.isUserHasAdvertisementWithId(advertisementId, owner)) {
             throw new IllegalOperationException(getMessageSource("user.not-owner"));
@@ -232,9 +302,4 @@ public class AdvertisementController {
             throw new IllegalIdentifierException(exceptionMessage);
         }
     }
-
-    private User getUser(String userNameOrEmail) {
-        return userService.findByUsernameOrEmail(userNameOrEmail)
-                .orElseThrow(() -> new UsernameNotFoundException(getMessageSource("exception.user.not-found")));
-    }
 }
@@ -18,6 +18,7 @@ import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import space.obminyashka.items_exchange.api.ApiKey;
 import space.obminyashka.items_exchange.authorization.jwt.JwtTokenProvider;
+import space.obminyashka.items_exchange.authorization.jwt.LoginUser;
 import space.obminyashka.items_exchange.dto.RefreshTokenResponseDto;
 import space.obminyashka.items_exchange.dto.UserLoginDto;
 import space.obminyashka.items_exchange.dto.UserLoginResponseDto;
@@ -59,8 +60,10 @@ public class AuthController {
 
         try {
             final var username = escapeHtml(userLoginDto.getUsernameOrEmail());
-            authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(username, userLoginDto.getPassword()));
-            return ResponseEntity.of(authService.createUserLoginResponseDto(username));
+            final var authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(username, userLoginDto.getPassword()));
+            // the principal carries the whole user, so the user isn't read again to build the response
+            return ResponseEntity.ok(authService.createUserLoginResponseDto((LoginUser) authentication.getPrincipal()));
         } catch (AuthenticationException e) {
             throw new BadCredentialsException(getMessageSource("invalid.username-or-password"));
         }
@@ -110,9 +113,7 @@ public class AuthController {
     @ResponseStatus(HttpStatus.OK)
     public RefreshTokenResponseDto refreshToken(@ApiParam(required = true)
                                                 @RequestHeader(OAuth2ParameterNames.REFRESH_TOKEN) String refreshToken) throws RefreshTokenException {
-        final var resolvedToken = JwtTokenProvider.resolveToken(refreshToken);
-        userService.updatePreferableLanguage(resolvedToken);
-        return authService.renewAccessTokenByRefresh(resolvedToken);
+        return authService.renewAccessTokenByRefresh(JwtTokenProvider.resolveToken(refreshToken));
     }
 
     @PostMapping(value = "/oauth2/success", produces = MediaType.APPLICATION_JSON_VALUE)
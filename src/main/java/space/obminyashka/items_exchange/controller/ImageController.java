@@ -4,7 +4,11 @@ import io.swagger.annotations.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
@@ -12,19 +16,30 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import space.obminyashka.items_exchange.api.ApiKey;
 import space.obminyashka.items_exchange.dto.ImageDto;
+import space.obminyashka.items_exchange.dto.ImageStatusDto;
 import space.obminyashka.items_exchange.exception.ElementsNumberExceedException;
 import space.obminyashka.items_exchange.exception.IllegalIdentifierException;
 import space.obminyashka.items_exchange.exception.IllegalOperationException;
+import space.obminyashka.items_exchange.exception.ImageProcessingOverloadedException;
+import space.obminyashka.items_exchange.exception.UnsupportedMediaTypeException;
 import space.obminyashka.items_exchange.model.Advertisement;
 import space.obminyashka.items_exchange.model.Image;
 import space.obminyashka.items_exchange.service.AdvertisementService;
+import space.obminyashka.items_exchange.service.ImageProcessingService;
 import space.obminyashka.items_exchange.service.ImageService;
 import springfox.documentation.annotations.ApiIgnore;
 
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.Size;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
 import java.security.Principal;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import static space.obminyashka.items_exchange.util.MessageSourceUtil.getMessageSource;
 import static space.obminyashka.items_exchange.util.MessageSourceUtil.getParametrizedMessageSource;
@@ -37,8 +52,16 @@ import static space.obminyashka.items_exchange.util.MessageSourceUtil.getParamet
 @Slf4j
 public class ImageController {
     private final ImageService imageService;
+    private final ImageProcessingService imageProcessingService;
     private final AdvertisementService advertisementService;
 
+    private static final String IMMUTABLE_CACHE_CONTROL =
+            CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().getHeaderValue() + ", immutable";
+    private static final MediaType IMAGE_WEBP = MediaType.parseMediaType("image/webp");
+    private static final int WEBP_SIGNATURE_LENGTH = 12;
+    private static final String RIFF = "RIFF";
+    private static final String WEBP = "WEBP";
+
     @Value("${max.images.amount}")
     private int maxImagesAmount;
 
@@ -50,13 +73,53 @@ public class ImageController {
             @ApiResponse(code = 404, message = "NOT FOUND")})
     public ResponseEntity<List<byte[]>> getImagesResource(@ApiParam(value = "ID of the Advertisement for getting all the images", required = true)
                                                           @PathVariable("advertisement_id")
-                                                          @Positive(message = "{invalid.not-positive.id}") long id) {
-        List<byte[]> imagesResource = imageService.getImagesResourceByAdvertisementId(id);
+                                                          @Positive(message = "{invalid.not-positive.id}") long id,
+                                                          @ApiParam(value = "Width in pixels the images are displayed with, the closest wider rendition is returned")
+                                                          @RequestParam(value = "w", required = false)
+                                                          @Positive(message = "{invalid.not-positive.width}") Integer width) {
+        List<byte[]> imagesResource = imageService.getImagesResourceByAdvertisementId(id, width);
         return imagesResource.isEmpty()
                 ? new ResponseEntity<>(HttpStatus.NOT_FOUND)
                 : new ResponseEntity<>(imagesResource, HttpStatus.OK);
     }
 
+    @GetMapping("/{advertisement_id}/{image_id:\\d+}")
+    @ApiOperation(value = "Stream the binary content of an image. Supports conditional and range requests. " +
+            "An additional format like WebP is returned when the Accept header lists it explicitly")
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "OK"),
+            @ApiResponse(code = 206, message = "PARTIAL CONTENT"),
+            @ApiResponse(code = 304, message = "NOT MODIFIED"),
+            @ApiResponse(code = 400, message = "BAD REQUEST"),
+            @ApiResponse(code = 404, message = "NOT FOUND")})
+    public ResponseEntity<Resource> getImage(@ApiParam(value = "ID of the Advertisement the image belongs to", required = true)
+                                             @PathVariable("advertisement_id")
+                                             @Positive(message = "{invalid.not-positive.id}") long advertisementId,
+                                             @ApiParam(value = "ID of the image", required = true)
+                                             @PathVariable("image_id")
+                                             @Positive(message = "{invalid.not-positive.id}") long imageId,
+                                             @ApiParam(value = "Width in pixels the image is displayed with, the closest wider rendition is returned")
+                                             @RequestParam(value = "w", required = false)
+                                             @Positive(message = "{invalid.not-positive.width}") Integer width,
+                                             @ApiIgnore @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) throws IOException {
+        final var image = imageService.findResource(advertisementId, imageId, width, parseAcceptedTypes(accept));
+        if (image.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        final var content = image.get().content();
+        // the content is addressed by its hash, so it never changes for the same ETag
+        final var response = ResponseEntity.ok()
+                .contentType(detectMediaType(content))
+                .eTag(image.get().key())
+                .varyBy(HttpHeaders.ACCEPT)
+                .header(HttpHeaders.CACHE_CONTROL, IMMUTABLE_CACHE_CONTROL);
+        if (content.isFile()) {
+            // images not moved to the blob store yet are read from the database row, which has no modification time
+            response.lastModified(content.lastModified());
+        }
+        return response.body(content);
+    }
+
     @GetMapping("/{advertisement_id}")
     @ApiOperation(value = "Find all images for an existed advertisement by its ID")
     @ApiResponses(value = {
@@ -87,24 +150,42 @@ public class ImageController {
         return ResponseEntity.ok(imageService.countImagesForAdvertisement(id));
     }
 
-    @PostMapping(value = "/{advertisement_id}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
-    @ApiOperation(value = "Compress up to 10 images and add to an existed advertisement by its ID")
+    @GetMapping("/{advertisement_id}/status")
+    @ApiOperation(value = "Find processing statuses of all images for an existed advertisement by its ID")
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "OK"),
             @ApiResponse(code = 400, message = "BAD REQUEST"),
+            @ApiResponse(code = 404, message = "NOT FOUND")})
+    public ResponseEntity<List<ImageStatusDto>> getImagesStatus(@ApiParam(value = "ID of the Advertisement for getting the images' statuses", required = true)
+                                                                @PathVariable("advertisement_id")
+                                                                @Positive(message = "{invalid.not-positive.id}") long id) {
+        if (!advertisementService.existById(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(imageService.getStatuses(id));
+    }
+
+    @PostMapping(value = "/{advertisement_id}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @ApiOperation(value = "Add up to 10 images to an existed advertisement by its ID. " +
+            "Images are compressed in background, returned IDs are pending until then")
+    @ApiResponses(value = {
+            @ApiResponse(code = 202, message = "ACCEPTED"),
+            @ApiResponse(code = 400, message = "BAD REQUEST"),
             @ApiResponse(code = 403, message = "FORBIDDEN"),
             @ApiResponse(code = 404, message = "Advertisement Not Found with such ID"),
             @ApiResponse(code = 406, message = "NOT ACCEPTABLE"),
-            @ApiResponse(code = 415, message = "UNSUPPORTED MEDIA TYPE")})
-    public ResponseEntity<String> addImagesToAdvertisement(@ApiParam(value = "ID of the Advertisement for adding the image(s)", required = true)
+            @ApiResponse(code = 415, message = "UNSUPPORTED MEDIA TYPE"),
+            @ApiResponse(code = 503, message = "SERVICE UNAVAILABLE")})
+    public ResponseEntity<List<Long>> addImagesToAdvertisement(@ApiParam(value = "ID of the Advertisement for adding the image(s)", required = true)
                                                            @PathVariable("advertisement_id") @Positive(message = "{invalid.not-positive.id}") long advertisementId,
                                                            @ApiParam(value = "Select the image to Upload", required = true)
                                                            @RequestPart(value = "image") @Size(min = 1, max = 10) List<MultipartFile> images,
                                                            @ApiIgnore Principal principal)
-            throws ElementsNumberExceedException, IllegalOperationException {
+            throws ElementsNumberExceedException, IllegalOperationException, UnsupportedMediaTypeException,
+            ImageProcessingOverloadedException, IOException {
 
         if (!advertisementService.existById(advertisementId)) {
-            return new ResponseEntity<>(HttpStatus.NOT_FOUND.getReasonPhrase(), HttpStatus.NOT_FOUND);
+            return ResponseEntity.notFound().build();
         }
         final Advertisement advToSaveImages = advertisementService.findByIdAndOwnerUsername(advertisementId, principal.getName())
                 .orElseThrow(() -> new IllegalOperationException(getMessageSource("user.not-owner")));
@@ -112,11 +193,16 @@ public class ImageController {
             throw new ElementsNumberExceedException(
                     getParametrizedMessageSource("exception.exceed.images.number", maxImagesAmount));
         }
-        List<byte[]> compressedImages = images.parallelStream()
-                .map(imageService::compress)
-                .toList();
-        imageService.saveToAdvertisement(advToSaveImages, compressedImages);
-        return ResponseEntity.ok("Images added successfully");
+        final var processing = imageProcessingService.submit(images, false);
+        final List<Long> pendingImageIds;
+        try {
+            pendingImageIds = imageService.savePendingToAdvertisement(advToSaveImages, images.size());
+        } catch (RuntimeException e) {
+            imageProcessingService.cancel(processing);
+            throw e;
+        }
+        imageProcessingService.completeWhenProcessed(pendingImageIds, processing);
+        return ResponseEntity.accepted().body(pendingImageIds);
     }
 
     @DeleteMapping("/{advertisement_id}")
@@ -147,4 +233,29 @@ public class ImageController {
             throw new IllegalIdentifierException(getParametrizedMessageSource("exception.image.not-existed-id", imageIdList));
         }
     }
+
+    private List<MediaType> parseAcceptedTypes(String accept) {
+        try {
+            return MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            log.debug("Ignoring the malformed Accept header: {}", accept);
+            return List.of();
+        }
+    }
+
+    private MediaType detectMediaType(Resource content) throws IOException {
+        try (InputStream is = new BufferedInputStream(content.getInputStream())) {
+            // WebP is a RIFF container, which isn't recognized by URLConnection
+            is.mark(WEBP_SIGNATURE_LENGTH);
+            final var head = is.readNBytes(WEBP_SIGNATURE_LENGTH);
+            if (head.length == WEBP_SIGNATURE_LENGTH && RIFF.equals(new String(head, 0, 4, StandardCharsets.US_ASCII))
+                    && WEBP.equals(new String(head, 8, 4, StandardCharsets.US_ASCII))) {
+                return IMAGE_WEBP;
+            }
+            is.reset();
+            return Optional.ofNullable(URLConnection.guessContentTypeFromStream(is))
+                    .map(MediaType::parseMediaType)
+                    .orElse(MediaType.APPLICATION_OCTET_STREAM);
+        }
+    }
 }
@@ -10,11 +10,11 @@ import org.hibernate.boot.model.naming.IllegalIdentifierException;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 import space.obminyashka.items_exchange.api.ApiKey;
+import space.obminyashka.items_exchange.authorization.CurrentUser;
 import space.obminyashka.items_exchange.dto.*;
 import space.obminyashka.items_exchange.exception.DataConflictException;
 import space.obminyashka.items_exchange.exception.ElementsNumberExceedException;
@@ -73,8 +73,8 @@ public class UserController {
             @ApiResponse(code = 400, message = "BAD REQUEST"),
             @ApiResponse(code = 403, message = "FORBIDDEN")})
     @ResponseStatus(HttpStatus.ACCEPTED)
-    public String updateUserInfo(@Valid @RequestBody UserUpdateDto userUpdateDto, @ApiIgnore Principal principal) {
-        return userService.update(userUpdateDto, getUser(principal.getName()));
+    public String updateUserInfo(@Valid @RequestBody UserUpdateDto userUpdateDto, @ApiIgnore @CurrentUser User user) {
+        return userService.update(userUpdateDto, user);
     }
 
     @GetMapping("/my-adv")
@@ -98,18 +98,16 @@ public class UserController {
             @ApiResponse(code = 403, message = "FORBIDDEN")})
     @ResponseStatus(HttpStatus.ACCEPTED)
     public String updateUserPassword(@Valid @RequestBody UserChangePasswordDto userChangePasswordDto,
-                                     Principal principal) throws InvalidDtoException {
-        User user = findUserByValidCredentials(principal, userChangePasswordDto.getOldPassword());
+                                     @ApiIgnore @CurrentUser User user) throws InvalidDtoException {
+        validatePassword(user, userChangePasswordDto.getOldPassword());
 
         return userService.updateUserPassword(userChangePasswordDto, user);
     }
 
-    private User findUserByValidCredentials(Principal principal, String password) throws InvalidDtoException {
-        User user = getUser(principal.getName());
+    private void validatePassword(User user, String password) throws InvalidDtoException {
         if (!userService.isPasswordMatches(user, password)) {
             throw new InvalidDtoException(getMessageSource(incorrectPassword));
         }
-        return user;
     }
 
     @PutMapping("/service/email")
@@ -120,9 +118,8 @@ public class UserController {
             @ApiResponse(code = 403, message = "FORBIDDEN"),
             @ApiResponse(code = 409, message = "CONFLICT")})
     @ResponseStatus(HttpStatus.ACCEPTED)
-    public String updateUserEmail(@Valid @RequestBody UserChangeEmailDto userChangeEmailDto, Principal principal)
-            throws DataConflictException {
-        User user = getUser(principal.getName());
+    public String updateUserEmail(@Valid @RequestBody UserChangeEmailDto userChangeEmailDto,
+                                  @ApiIgnore @CurrentUser User user) throws DataConflictException {
         if (user.getEmail().equals(userChangeEmailDto.getNewEmail())) {
             throw new DataConflictException(getMessageSource("exception.email.old"));
         }
@@ -140,12 +137,12 @@ public class UserController {
             @ApiResponse(code = 400, message = "BAD REQUEST"),
             @ApiResponse(code = 403, message = "FORBIDDEN")})
     @ResponseStatus(HttpStatus.ACCEPTED)
-    public String selfDeleteRequest(@Valid @RequestBody UserDeleteFlowDto userDeleteFlowDto, Principal principal)
-            throws InvalidDtoException {
-        User user = findUserByValidCredentials(principal, userDeleteFlowDto.getPassword());
+    public String selfDeleteRequest(@Valid @RequestBody UserDeleteFlowDto userDeleteFlowDto,
+                                    @ApiIgnore @CurrentUser User user) throws InvalidDtoException {
+        validatePassword(user, userDeleteFlowDto.getPassword());
         userService.selfDeleteRequest(user);
 
-        return getParametrizedMessageSource("account.self.delete.request", userService.getDaysBeforeDeletion(user));
+        return getParametrizedMessageSource("account.self.delete.request", userService.getDaysBeforeDeletion(user.getUpdated()));
     }
 
     @PutMapping("/service/restore")
@@ -155,9 +152,10 @@ public class UserController {
             @ApiResponse(code = 400, message = "BAD REQUEST"),
             @ApiResponse(code = 403, message = "FORBIDDEN")})
     @ResponseStatus(HttpStatus.ACCEPTED)
-    public String makeAccountActiveAgain(@Valid @RequestBody UserDeleteFlowDto userDeleteFlowDto, Principal principal)
+    public String makeAccountActiveAgain(@Valid @RequestBody UserDeleteFlowDto userDeleteFlowDto,
+                                         @ApiIgnore @CurrentUser User user)
             throws InvalidDtoException, IllegalOperationException {
-        User user = findUserByValidCredentials(principal, userDeleteFlowDto.getPassword());
+        validatePassword(user, userDeleteFlowDto.getPassword());
         if (!user.getStatus().equals(DELETED)) {
             throw new IllegalOperationException(getMessageSource("exception.illegal.operation"));
         }
@@ -171,8 +169,8 @@ public class UserController {
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "OK"),
             @ApiResponse(code = 404, message = "NOT FOUND")})
-    public ResponseEntity<List<ChildDto>> getChildren(Principal principal) {
-        List<ChildDto> children = userService.getChildren(getUser(principal.getName()));
+    public ResponseEntity<List<ChildDto>> getChildren(@ApiIgnore @CurrentUser User user) {
+        List<ChildDto> children = userService.getChildren(user);
         return children.isEmpty() ?
                 new ResponseEntity<>(HttpStatus.NOT_FOUND) :
                 new ResponseEntity<>(children, HttpStatus.OK);
@@ -188,8 +186,8 @@ public class UserController {
     @ResponseStatus(HttpStatus.OK)
     @Validated({Default.class, New.class})
     public List<ChildDto> addChildren(@RequestBody @Size(min = 1, max = 10, message = "{exception.invalid.dto}")
-                                              List<@Valid ChildDto> childrenDto, Principal principal) throws ElementsNumberExceedException {
-        User user = getUser(principal.getName());
+                                              List<@Valid ChildDto> childrenDto, @ApiIgnore @CurrentUser User user)
+            throws ElementsNumberExceedException {
         int amountOfChildren = childrenDto.size() + user.getChildren().size();
         if (amountOfChildren > maxChildrenAmount) {
             throw new ElementsNumberExceedException(getParametrizedMessageSource(
@@ -206,8 +204,7 @@ public class UserController {
             @ApiResponse(code = 403, message = "FORBIDDEN")})
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void removeChildren(@PathVariable("id") @Size(min = 1, message = "{exception.invalid.dto}")
-                                       List<@NotNull Long> childrenIdToRemove, Principal principal) {
-        final User user = getUser(principal.getName());
+                                       List<@NotNull Long> childrenIdToRemove, @ApiIgnore @CurrentUser User user) {
         if (isNotAllIdPresent(user, childrenIdToRemove)) {
             throw new IllegalIdentifierException(
                     getMessageSource("exception.invalid.dto"));
@@ -223,8 +220,7 @@ public class UserController {
             @ApiResponse(code = 403, message = "FORBIDDEN")})
     @ResponseStatus(HttpStatus.OK)
     public List<ChildDto> updateChildren(@RequestBody @Size(min = 1, message = "{exception.invalid.dto}")
-                                                 List<@Valid ChildDto> childrenDto, Principal principal) {
-        final User user = getUser(principal.getName());
+                                                 List<@Valid ChildDto> childrenDto, @ApiIgnore @CurrentUser User user) {
         if (isNotAllIdPresent(user, UtilMapper.mapBy(childrenDto, ChildDto::getId))) {
             throw new IllegalIdentifierException(
                     getExceptionMessageSourceWithAdditionalInfo(
@@ -242,8 +238,7 @@ public class UserController {
             @ApiResponse(code = 406, message = "NOT ACCEPTABLE"),
             @ApiResponse(code = 415, message = "UNSUPPORTED MEDIA TYPE")})
     @ResponseStatus(HttpStatus.OK)
-    public void updateUserAvatar(@RequestParam(value = "file") MultipartFile image, Principal principal) {
-        User user = getUser(principal.getName());
+    public void updateUserAvatar(@RequestParam(value = "file") MultipartFile image, @ApiIgnore @CurrentUser User user) {
         byte[] newAvatarImage = imageService.compress(image);
         userService.setUserAvatar(newAvatarImage, user);
     }
@@ -252,9 +247,4 @@ public class UserController {
         final List<Long> userChildrenId = UtilMapper.mapBy(parent.getChildren(), Child::getId);
         return !userChildrenId.containsAll(childrenId);
     }
-
-    private User getUser(String username) {
-        return userService.findByUsernameOrEmail(username).orElseThrow(() -> new UsernameNotFoundException(
-                getMessageSource("exception.user.not-found")));
-    }
 }
@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.apache.logging.log4j.Level;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.AccessDeniedException;
@@ -26,6 +27,7 @@ import java.util.stream.Collectors;
 @Log4j2
 @AllArgsConstructor
 public class GlobalExceptionHandler {
+    private static final int RETRY_AFTER_OVERLOAD_SECONDS = 5;
 
     @ExceptionHandler({UsernameNotFoundException.class, EntityNotFoundException.class})
     @ResponseStatus(HttpStatus.NOT_FOUND)
@@ -84,6 +86,19 @@ public class GlobalExceptionHandler {
         return logAndGetErrorMessage(request, ex, Level.ERROR);
     }
 
+    @ExceptionHandler(UnsupportedMediaTypeException.class)
+    @ResponseStatus(HttpStatus.UNSUPPORTED_MEDIA_TYPE)
+    public ErrorMessage handleUnsupportedMediaTypeException(UnsupportedMediaTypeException e, ServletWebRequest request) {
+        return logAndGetErrorMessage(request, e, Level.WARN);
+    }
+
+    @ExceptionHandler({ImageProcessingOverloadedException.class, PasswordHashingOverloadedException.class})
+    public ResponseEntity<ErrorMessage> handleOverloadedExceptions(Exception e, ServletWebRequest request) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(RETRY_AFTER_OVERLOAD_SECONDS))
+                .body(logAndGetErrorMessage(request, e, Level.WARN));
+    }
+
     @ExceptionHandler(UndeclaredThrowableException.class)
     public ResponseEntity<ErrorMessage> handleSneakyThrownException(UndeclaredThrowableException ex, ServletWebRequest request){
         final var cause = ex.getCause();
@@ -0,0 +1,25 @@
+package space.obminyashka.items_exchange.dao;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import space.obminyashka.items_exchange.model.AdvertisementEvent;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface AdvertisementEventRepository extends JpaRepository<AdvertisementEvent, Long> {
+
+    List<AdvertisementEvent> findByCreatedAfterAndIdGreaterThanOrderById(LocalDateTime since, long lastId,
+                                                                        Pageable pageable);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM AdvertisementEvent e WHERE e.created < :before")
+    int deleteByCreatedBefore(@Param("before") LocalDateTime before);
+}
@@ -0,0 +1,18 @@
+package space.obminyashka.items_exchange.dao;
+
+import org.springframework.data.domain.Pageable;
+import space.obminyashka.items_exchange.dto.AdvertisementFilterDto;
+import space.obminyashka.items_exchange.dto.AdvertisementTitleDto;
+
+import java.util.List;
+
+public interface AdvertisementFilterRepository {
+
+    /**
+     * Find advertisements as thumbnails from the newest to the oldest, matched by every filled parameter of the filter
+     * @param filter parameters to match, empty ones are skipped
+     * @param pageable see {@link Pageable} for more details, its sorting is ignored
+     * @return found advertisements of the requested page
+     */
+    List<AdvertisementTitleDto> findTitlesByFilter(AdvertisementFilterDto filter, Pageable pageable);
+}
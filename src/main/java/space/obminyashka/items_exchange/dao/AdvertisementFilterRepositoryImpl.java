@@ -0,0 +1,45 @@
+package space.obminyashka.items_exchange.dao;
+
+import org.springframework.data.domain.Pageable;
+import space.obminyashka.items_exchange.dto.AdvertisementFilterDto;
+import space.obminyashka.items_exchange.dto.AdvertisementTitleDto;
+import space.obminyashka.items_exchange.model.Advertisement;
+import space.obminyashka.items_exchange.model.AdvertisementThumbnail;
+import space.obminyashka.items_exchange.model.Location;
+import space.obminyashka.items_exchange.model.User;
+import space.obminyashka.items_exchange.model.UserAvatar;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import java.util.List;
+
+public class AdvertisementFilterRepositoryImpl implements AdvertisementFilterRepository {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<AdvertisementTitleDto> findTitlesByFilter(AdvertisementFilterDto filter, Pageable pageable) {
+        final var criteriaBuilder = entityManager.getCriteriaBuilder();
+        final var query = criteriaBuilder.createQuery(AdvertisementTitleDto.class);
+        final var advertisement = query.from(Advertisement.class);
+        final Join<Advertisement, AdvertisementThumbnail> thumbnail = advertisement.join("thumbnail", JoinType.LEFT);
+        final Join<Advertisement, Location> location = advertisement.join("location", JoinType.LEFT);
+        final Join<Advertisement, User> user = advertisement.join("user");
+        final Join<User, UserAvatar> avatar = user.join("avatar");
+
+        query.select(criteriaBuilder.construct(AdvertisementTitleDto.class,
+                        advertisement.get("id"), thumbnail.get("content"), advertisement.get("topic"),
+                        location.get("id"), location.get("area"), location.get("district"), location.get("city"),
+                        location.get("i18n"), user.get("username"), avatar.get("content")))
+                .where(new AdvertisementFilterSpecification(filter).toPredicate(advertisement, query, criteriaBuilder))
+                .orderBy(criteriaBuilder.desc(advertisement.get("id")));
+
+        return entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+    }
+}
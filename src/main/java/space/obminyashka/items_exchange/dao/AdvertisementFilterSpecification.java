@@ -0,0 +1,46 @@
+package space.obminyashka.items_exchange.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.jpa.domain.Specification;
+import space.obminyashka.items_exchange.dto.AdvertisementFilterDto;
+import space.obminyashka.items_exchange.model.Advertisement;
+
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Matches advertisements by the filled parameters of {@link AdvertisementFilterDto} only, so the database gets
+ * plain equality conditions it can serve from the composite filter index
+ */
+@RequiredArgsConstructor
+public class AdvertisementFilterSpecification implements Specification<Advertisement> {
+
+    private final transient AdvertisementFilterDto filter;
+
+    @Override
+    public Predicate toPredicate(Root<Advertisement> advertisement, CriteriaQuery<?> query, CriteriaBuilder criteriaBuilder) {
+        final List<Predicate> predicates = new ArrayList<>();
+        addEqual(predicates, criteriaBuilder, advertisement.get("subcategory").get("id"), filter.getSubcategoryId());
+        addEqual(predicates, criteriaBuilder, advertisement.get("location").get("id"), filter.getLocationId());
+        addEqual(predicates, criteriaBuilder, advertisement.get("age"), filter.getAge());
+        addEqual(predicates, criteriaBuilder, advertisement.get("gender"), filter.getGender());
+        addEqual(predicates, criteriaBuilder, advertisement.get("season"), filter.getSeason());
+        addEqual(predicates, criteriaBuilder, advertisement.get("size"), filter.getSize());
+        if (filter.getCategoryId() != null) {
+            addEqual(predicates, criteriaBuilder,
+                    advertisement.join("subcategory").get("category").get("id"), filter.getCategoryId());
+        }
+        return criteriaBuilder.and(predicates.toArray(Predicate[]::new));
+    }
+
+    private static void addEqual(List<Predicate> predicates, CriteriaBuilder criteriaBuilder, Path<?> path, Object value) {
+        if (value != null) {
+            predicates.add(criteriaBuilder.equal(path, value));
+        }
+    }
+}
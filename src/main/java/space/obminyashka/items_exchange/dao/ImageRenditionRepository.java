@@ -0,0 +1,13 @@
+package space.obminyashka.items_exchange.dao;
+
+public interface ImageRenditionRepository {
+
+    /**
+     * Store a rendition of an image unless a rendition of the same width is already stored, e.g. by a concurrent request
+     * @param imageId ID of the image
+     * @param width width of the rendition in pixels
+     * @param blobKey key of the rendition's content in the blob store
+     * @return whether the rendition was stored
+     */
+    boolean saveRenditionIfAbsent(long imageId, int width, String blobKey);
+}
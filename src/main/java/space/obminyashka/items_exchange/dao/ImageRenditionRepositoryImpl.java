@@ -0,0 +1,24 @@
+package space.obminyashka.items_exchange.dao;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@RequiredArgsConstructor
+public class ImageRenditionRepositoryImpl implements ImageRenditionRepository {
+
+    private static final String INSERT = "INSERT INTO image_rendition (image_id, width, blob_key) VALUES (?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public boolean saveRenditionIfAbsent(long imageId, int width, String blobKey) {
+        // a check before the insert can't see a rendition being stored concurrently, so the primary key decides.
+        // Unlike a failed JPA query, a failed JDBC statement doesn't mark the surrounding transaction for rollback
+        try {
+            return jdbcTemplate.update(INSERT, imageId, width, blobKey) > 0;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+}
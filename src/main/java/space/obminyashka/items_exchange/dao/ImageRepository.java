@@ -1,19 +1,54 @@
 package space.obminyashka.items_exchange.dao;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import space.obminyashka.items_exchange.dto.ImageStatusDto;
 import space.obminyashka.items_exchange.model.Image;
+import space.obminyashka.items_exchange.model.enums.ImageStatus;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
-public interface ImageRepository extends JpaRepository<Image, Long> {
+public interface ImageRepository extends JpaRepository<Image, Long>, ImageRenditionRepository {
 
     List<Image> findByAdvertisementId(Long id);
 
-    void deleteAllByIdIn(List<Long> id);
+    List<Image> deleteAllByIdIn(List<Long> id);
 
     boolean existsAllByIdInAndAdvertisement_Id(List<Long> id, Long advertisementId);
 
     int countImageByAdvertisement_Id(long id);
+
+    Optional<Image> findFirstByUploadHashAndStatus(String uploadHash, ImageStatus status);
+
+    @Modifying
+    @Query("UPDATE Image i SET i.status = :status WHERE i.status = :previousStatus AND i.created < :before")
+    int updateStatusOfCreatedBefore(@Param("previousStatus") ImageStatus previousStatus,
+                                    @Param("status") ImageStatus status,
+                                    @Param("before") LocalDateTime before);
+
+    @Query(value = "SELECT resource FROM image WHERE id = :id AND advertisement_id = :advertisementId", nativeQuery = true)
+    Optional<byte[]> findStoredResource(@Param("id") long id, @Param("advertisementId") long advertisementId);
+
+    @Query("SELECT new space.obminyashka.items_exchange.dto.ImageStatusDto(i.id, i.status) FROM Image i " +
+            "WHERE i.advertisement.id = :advertisementId ORDER BY i.id")
+    List<ImageStatusDto> findStatusesByAdvertisementId(@Param("advertisementId") long advertisementId);
+
+    @Query("SELECT i.id FROM Image i WHERE i.advertisement.id = :advertisementId AND i.status = :status ORDER BY i.id")
+    List<Long> findIdsByAdvertisementIdAndStatus(@Param("advertisementId") long advertisementId, @Param("status") ImageStatus status);
+
+    @Query(value = "SELECT r.blob_key FROM image_rendition r JOIN image i ON i.id = r.image_id " +
+            "WHERE i.id = :id AND i.advertisement_id = :advertisementId AND r.width = :width", nativeQuery = true)
+    Optional<String> findRenditionKey(@Param("id") long id, @Param("advertisementId") long advertisementId, @Param("width") int width);
+
+    @Query(value = "SELECT v.blob_key FROM image_variant v JOIN image i ON i.id = v.image_id " +
+            "WHERE i.id = :id AND i.advertisement_id = :advertisementId AND v.width = :width AND v.media_type = :mediaType",
+            nativeQuery = true)
+    Optional<String> findVariantKey(@Param("id") long id, @Param("advertisementId") long advertisementId,
+                                    @Param("width") int width, @Param("mediaType") String mediaType);
 }
\ No newline at end of file
@@ -10,5 +10,5 @@ import java.util.List;
 public interface LocationRepository extends JpaRepository<Location, Long> {
     List<Location> findByIdIn(List<Long> ids);
 
-    List<Location> findByI18nIgnoreCase(String i18n);
+    List<Location> findByI18n(String i18n);
 }
@@ -1,13 +1,42 @@
 package space.obminyashka.items_exchange.dao;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 import space.obminyashka.items_exchange.model.RefreshToken;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Long> {
 
-    Optional<RefreshToken> findByToken(String token);
+    @Query("SELECT t FROM refresh_token t JOIN FETCH t.user u JOIN FETCH u.role WHERE t.tokenHash = :tokenHash")
+    Optional<RefreshToken> findWithUserByTokenHash(@Param("tokenHash") String tokenHash);
+
+    /**
+     * Replaces the token with a new one unless it was already replaced by a concurrent request
+     * @return 1 when the token was replaced, 0 otherwise
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE refresh_token t SET t.tokenHash = :newTokenHash, t.previousTokenHash = :tokenHash, " +
+            "t.expiryDate = :expiryDate WHERE t.id = :id AND t.tokenHash = :tokenHash")
+    int rotate(@Param("id") long id,
+               @Param("tokenHash") String tokenHash,
+               @Param("newTokenHash") String newTokenHash,
+               @Param("expiryDate") LocalDateTime expiryDate);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM refresh_token t WHERE t.previousTokenHash = :tokenHash")
+    int deleteByPreviousTokenHash(@Param("tokenHash") String tokenHash);
+
+    @Query("SELECT t.id FROM refresh_token t WHERE t.expiryDate < :now")
+    List<Long> findExpiredIds(@Param("now") LocalDateTime now, Pageable pageable);
 
     void deleteByUserUsername(String username);
 }
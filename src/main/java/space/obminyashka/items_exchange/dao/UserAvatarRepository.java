@@ -0,0 +1,21 @@
+package space.obminyashka.items_exchange.dao;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import space.obminyashka.items_exchange.model.UserAvatar;
+
+@Repository
+public interface UserAvatarRepository extends JpaRepository<UserAvatar, Long> {
+
+    /**
+     * Replaces the avatar without reading the previous one
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE UserAvatar a SET a.content = :content WHERE a.id = :id")
+    int updateContent(@Param("id") long id, @Param("content") byte[] content);
+}
@@ -1,21 +1,61 @@
 package space.obminyashka.items_exchange.dao;
 
+import space.obminyashka.items_exchange.dto.UserAuthDto;
+import space.obminyashka.items_exchange.dto.UserLoginDetailsDto;
 import space.obminyashka.items_exchange.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
 public interface UserRepository extends JpaRepository<User, Long> {
 
-    Optional<User> findByEmailOrUsername(String username, String email);
+    String SELECT_AUTH = "SELECT new space.obminyashka.items_exchange.dto.UserAuthDto(" +
+            "u.id, u.username, u.firstName, u.lastName, u.email, u.password, r.name, u.status, u.updated) " +
+            "FROM User u JOIN u.role r";
+
+    String SELECT_LOGIN = "SELECT new space.obminyashka.items_exchange.dto.UserLoginDetailsDto(" +
+            "u.id, u.username, u.firstName, u.lastName, u.email, u.password, r.name, u.status, u.updated, " +
+            "u.language, av.content) FROM User u JOIN u.role r JOIN u.avatar av";
+
+    @Query(SELECT_AUTH + " WHERE u.username = :username")
+    Optional<UserAuthDto> findAuthByUsername(@Param("username") String username);
+
+    @Query(SELECT_AUTH + " WHERE u.email = :email")
+    Optional<UserAuthDto> findAuthByEmail(@Param("email") String email);
+
+    @Query(SELECT_LOGIN + " WHERE u.username = :username")
+    Optional<UserLoginDetailsDto> findLoginDetailsByUsername(@Param("username") String username);
+
+    @Query(SELECT_LOGIN + " WHERE u.email = :email")
+    Optional<UserLoginDetailsDto> findLoginDetailsByEmail(@Param("email") String email);
+
+    /**
+     * Find the time since which access tokens of the user are valid
+     * @return creation time of the user when no token was revoked yet or empty result for a removed user
+     */
+    @Query("SELECT COALESCE(u.tokensValidAfter, u.created) FROM User u WHERE u.id = :id")
+    Optional<LocalDateTime> findTokensValidAfterById(@Param("id") long id);
+
+    Optional<User> findByEmail(String email);
 
     boolean existsByEmail(String email);
 
-    boolean existsByUsernameOrEmail(String username, String email);
+    boolean existsByUsername(String username);
 
     Optional<User> findByUsername(String username);
 
-    Optional<User> findByRefreshToken_Token(String token);
+    /**
+     * Replaces the password without reading the user and changing its update time
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.password = :password WHERE u.username = :username")
+    int updatePassword(@Param("username") String username, @Param("password") String password);
 }
@@ -14,13 +14,14 @@ import javax.validation.constraints.NotEmpty;
 import javax.validation.constraints.NotNull;
 import javax.validation.constraints.Positive;
 import javax.validation.constraints.Size;
+import java.util.List;
 
 @Getter
 @Setter
 @Builder
 @NoArgsConstructor
 @AllArgsConstructor
-@EqualsAndHashCode(exclude = {"id"})
+@EqualsAndHashCode(exclude = {"id", "pendingImageIds"})
 public class AdvertisementModificationDto {
 
     @Positive(groups = Exist.class, message = "{invalid.exist.id}")
@@ -61,4 +62,7 @@ public class AdvertisementModificationDto {
 
     private long subcategoryId;
     private long locationId;
+
+    @ApiModelProperty(value = "IDs of images of a created advertisement which are being processed, their statuses have to be polled", readOnly = true)
+    private List<Long> pendingImageIds;
 }
@@ -2,6 +2,8 @@ package space.obminyashka.items_exchange.dto;
 
 import lombok.*;
 
+import java.util.Objects;
+
 @Getter
 @Setter
 @NoArgsConstructor
@@ -15,4 +17,18 @@ public class AdvertisementTitleDto {
     private LocationDto location;
     private String ownerName;
     private byte[] ownerAvatar;
+
+    /**
+     * Constructor for JPQL projections, so thumbnails can be selected without loading whole entities
+     */
+    public AdvertisementTitleDto(long advertisementId, byte[] image, String title,
+                                 Long locationId, String area, String district, String city, String i18n,
+                                 String ownerName, byte[] ownerAvatar) {
+        this.advertisementId = advertisementId;
+        this.image = Objects.requireNonNullElseGet(image, () -> new byte[0]);
+        this.title = title;
+        this.location = locationId == null ? null : new LocationDto(locationId, area, district, city, i18n);
+        this.ownerName = ownerName;
+        this.ownerAvatar = ownerAvatar;
+    }
 }
@@ -0,0 +1,11 @@
+package space.obminyashka.items_exchange.dto;
+
+import java.util.List;
+
+/**
+ * A portion of a keyset paginated advertisements feed
+ * @param content advertisements of the portion
+ * @param nextCursor cursor for requesting the next portion, {@code null} when there is nothing left
+ */
+public record AdvertisementTitleSliceDto(List<AdvertisementTitleDto> content, String nextCursor) {
+}
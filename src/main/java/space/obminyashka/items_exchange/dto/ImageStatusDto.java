@@ -0,0 +1,6 @@
+package space.obminyashka.items_exchange.dto;
+
+import space.obminyashka.items_exchange.model.enums.ImageStatus;
+
+public record ImageStatusDto(long id, ImageStatus status) {
+}
@@ -0,0 +1,24 @@
+package space.obminyashka.items_exchange.dto;
+
+import space.obminyashka.items_exchange.model.enums.Status;
+
+import java.time.LocalDateTime;
+
+/**
+ * Fields of a user which are required to authenticate requests. Selected by JPQL projections, so neither
+ * the avatar nor any collection of the user is loaded
+ */
+public record UserAuthDto(long id,
+                          String username,
+                          String firstName,
+                          String lastName,
+                          String email,
+                          String password,
+                          String role,
+                          Status status,
+                          LocalDateTime updated) {
+
+    public boolean isEnabled() {
+        return status == Status.ACTIVE;
+    }
+}
@@ -0,0 +1,32 @@
+package space.obminyashka.items_exchange.dto;
+
+import space.obminyashka.items_exchange.model.enums.Status;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * Fields of a user which are required to log in and to build the login response. Selected by a single JPQL
+ * projection, so a login reads the user once
+ */
+public record UserLoginDetailsDto(long id,
+                                  String username,
+                                  String firstName,
+                                  String lastName,
+                                  String email,
+                                  String password,
+                                  String role,
+                                  Status status,
+                                  LocalDateTime updated,
+                                  Locale language,
+                                  byte[] avatarImage) {
+
+    public UserAuthDto toAuthDto() {
+        return new UserAuthDto(id, username, firstName, lastName, email, password, role, status, updated);
+    }
+
+    public UserLoginDetailsDto withPassword(String password) {
+        return new UserLoginDetailsDto(id, username, firstName, lastName, email, password, role, status, updated,
+                language, avatarImage);
+    }
+}
@@ -0,0 +1,8 @@
+package space.obminyashka.items_exchange.exception;
+
+public class ImageProcessingOverloadedException extends Exception {
+
+    public ImageProcessingOverloadedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package space.obminyashka.items_exchange.exception;
+
+/**
+ * Unchecked, since it's thrown through {@link org.springframework.security.crypto.password.PasswordEncoder} methods
+ */
+public class PasswordHashingOverloadedException extends RuntimeException {
+
+    public PasswordHashingOverloadedException(String message) {
+        super(message);
+    }
+}
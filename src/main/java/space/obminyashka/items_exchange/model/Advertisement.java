@@ -7,18 +7,19 @@ import lombok.*;
 import javax.persistence.*;
 import java.util.Set;
 
-import org.hibernate.annotations.Type;
+import org.hibernate.annotations.DynamicUpdate;
 import space.obminyashka.items_exchange.model.enums.AgeRange;
 import space.obminyashka.items_exchange.model.enums.DealType;
 import space.obminyashka.items_exchange.model.enums.Gender;
 import space.obminyashka.items_exchange.model.enums.Season;
 
 @Entity
+@DynamicUpdate
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
 @Setter
-@EqualsAndHashCode(callSuper = true, exclude = {"defaultPhoto", "user", "subcategory", "location", "images", "chats"})
+@EqualsAndHashCode(callSuper = true, exclude = {"thumbnail", "user", "subcategory", "location", "images", "chats"})
 public class Advertisement extends BaseEntity {
 
     private String topic;
@@ -47,10 +48,9 @@ public class Advertisement extends BaseEntity {
     @Column(name = "wishes_to_exchange")
     private String wishesToExchange;
 
-    @Lob
-    @Type(type="org.hibernate.type.BinaryType")
-    @Column(name = "default_photo")
-    private byte[] defaultPhoto;
+    @OneToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    @JoinColumn(name = "thumbnail_id")
+    private AdvertisementThumbnail thumbnail;
 
     @ManyToOne(cascade = {CascadeType.MERGE, CascadeType.PERSIST})
     @JoinColumn(name = "subcategory_id")
@@ -70,6 +70,18 @@ public class Advertisement extends BaseEntity {
     @OneToMany(cascade = CascadeType.ALL, mappedBy = "advertisement")
     private Set<Chat> chats;
 
+    /**
+     * Set the content of the advertisement's thumbnail, creating the thumbnail if it has none
+     * @param content scaled default image
+     */
+    public void updateThumbnail(byte[] content) {
+        if (thumbnail == null) {
+            thumbnail = new AdvertisementThumbnail(0, content);
+        } else {
+            thumbnail.setContent(content);
+        }
+    }
+
     @PrePersist
     private void addAdvertisementReferences() {
         if(images != null) {
@@ -0,0 +1,43 @@
+package space.obminyashka.items_exchange.model;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+import space.obminyashka.items_exchange.model.enums.AdvertisementEventType;
+
+import javax.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Outbox record of an advertisement change. It is stored in the same transaction as the change itself,
+ * so derived data (search index, caches) of every instance can be caught up by replaying recent records.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@EntityListeners(AuditingEntityListener.class)
+public class AdvertisementEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Column(name = "advertisement_id", nullable = false)
+    private long advertisementId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false)
+    private AdvertisementEventType type;
+
+    @Column(name = "created", nullable = false, updatable = false)
+    @CreatedDate
+    private LocalDateTime created;
+
+    public AdvertisementEvent(long advertisementId, AdvertisementEventType type) {
+        this.advertisementId = advertisementId;
+        this.type = type;
+    }
+}
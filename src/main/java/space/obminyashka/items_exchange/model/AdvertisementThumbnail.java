@@ -0,0 +1,27 @@
+package space.obminyashka.items_exchange.model;
+
+import lombok.*;
+import space.obminyashka.items_exchange.storage.BlobReferenceConverter;
+
+import javax.persistence.*;
+
+/**
+ * Scaled default image of an advertisement. It's kept apart from the advertisement, so loading and updating
+ * advertisements never reads or writes its bytes
+ */
+@Entity
+@Table(name = "advertisement_thumbnail")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@EqualsAndHashCode(exclude = "id")
+public class AdvertisementThumbnail {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private long id;
+
+    @Convert(converter = BlobReferenceConverter.class)
+    private byte[] content;
+}
@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import space.obminyashka.items_exchange.storage.BlobReferenceConverter;
 
 import javax.persistence.*;
 
@@ -21,5 +22,6 @@ public class Attachment {
     private Message message;
     private String type;
     @Column(name = "file_content")
+    @Convert(converter = BlobReferenceConverter.class)
     private byte[] fileContent;
 }
@@ -1,27 +1,79 @@
 package space.obminyashka.items_exchange.model;
 
 import lombok.*;
-import org.hibernate.annotations.Type;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+import space.obminyashka.items_exchange.model.enums.ImageStatus;
+import space.obminyashka.items_exchange.storage.BlobReferenceConverter;
+import space.obminyashka.items_exchange.storage.ImageBlobListener;
 
 import javax.persistence.*;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
 
 @Entity
+@EntityListeners({ImageBlobListener.class, AuditingEntityListener.class})
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
 @Setter
-@EqualsAndHashCode(exclude = {"id", "advertisement"})
+@EqualsAndHashCode(exclude = {"id", "advertisement", "status", "renditions", "variants", "uploadHash", "created"})
 public class Image {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private long id;
 
-    @Lob
-    @Type(type="org.hibernate.type.BinaryType")
+    @Convert(converter = BlobReferenceConverter.class)
     private byte[] resource;
 
     @ManyToOne(cascade = CascadeType.PERSIST)
     @JoinColumn(name = "advertisement_id", referencedColumnName = "id")
     private Advertisement advertisement;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status")
+    private ImageStatus status = ImageStatus.READY;
+
+    /**
+     * Blob store keys of downscaled copies of the image by their width in pixels
+     */
+    @ElementCollection
+    @CollectionTable(name = "image_rendition", joinColumns = @JoinColumn(name = "image_id"))
+    @MapKeyColumn(name = "width")
+    @Column(name = "blob_key")
+    private Map<Integer, String> renditions = new HashMap<>();
+
+    @ElementCollection
+    @CollectionTable(name = "image_variant", joinColumns = @JoinColumn(name = "image_id"))
+    private Set<ImageVariant> variants = new HashSet<>();
+
+    /**
+     * Blob store key of the uploaded file before its processing, so the same file uploaded again isn't processed twice
+     */
+    @Column(name = "upload_hash")
+    private String uploadHash;
+
+    /**
+     * Creation time, a pending image whose processing takes much longer than usual is considered lost
+     */
+    @Column(name = "created", nullable = false, updatable = false)
+    @CreatedDate
+    private LocalDateTime created;
+
+    public Image(long id, byte[] resource, Advertisement advertisement) {
+        this(id, resource, advertisement, ImageStatus.READY, new HashMap<>(), new HashSet<>(), null, null);
+    }
+
+    /**
+     * Create an image without content, which is filled in once the uploaded image is processed
+     * @param advertisement advertisement to link the image with
+     * @return image in {@link ImageStatus#PENDING} status
+     */
+    public static Image pending(Advertisement advertisement) {
+        return new Image(0, new byte[0], advertisement, ImageStatus.PENDING, new HashMap<>(), new HashSet<>(), null, null);
+    }
 }
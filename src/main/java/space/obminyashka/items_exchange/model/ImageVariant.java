@@ -0,0 +1,32 @@
+package space.obminyashka.items_exchange.model;
+
+import lombok.*;
+
+import javax.persistence.Column;
+import javax.persistence.Embeddable;
+
+/**
+ * Additional encoding of an image, or of one of its renditions, in another format than the source one
+ */
+@Embeddable
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@EqualsAndHashCode
+public class ImageVariant {
+
+    /**
+     * Width of the encoded rendition, or {@link #FULL_SIZE} for the image itself
+     */
+    public static final int FULL_SIZE = 0;
+
+    @Column(name = "width")
+    private int width;
+
+    @Column(name = "media_type")
+    private String mediaType;
+
+    @Column(name = "blob_key")
+    private String blobKey;
+}
@@ -5,6 +5,7 @@ import lombok.*;
 
 import javax.persistence.*;
 import java.util.List;
+import java.util.Locale;
 
 @Entity
 @NoArgsConstructor
@@ -26,4 +27,15 @@ public class Location {
 
     @OneToMany(mappedBy = "location")
     private List<Advertisement> advertisements;
+
+    /**
+     * Locations are looked up by the upper-cased language, so the lookup is served by the index on it
+     */
+    @PrePersist
+    @PreUpdate
+    private void upperCaseI18n() {
+        if (i18n != null) {
+            i18n = i18n.toUpperCase(Locale.ROOT);
+        }
+    }
 }
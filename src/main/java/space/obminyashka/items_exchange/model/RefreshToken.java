@@ -9,6 +9,9 @@ import org.springframework.data.jpa.domain.support.AuditingEntityListener;
 import javax.persistence.*;
 import java.time.LocalDateTime;
 
+/**
+ * Refresh token of a user, which is kept as a hash only and replaced by a new one on every use
+ */
 @Entity(name = "refresh_token")
 @Getter
 @Setter
@@ -24,8 +27,14 @@ public class RefreshToken {
     @JoinColumn(name = "user_id", referencedColumnName = "id")
     private User user;
 
-    @Column(nullable = false, unique = true)
-    private String token;
+    @Column(name = "token_hash", nullable = false, unique = true, length = 44)
+    private String tokenHash;
+
+    /**
+     * Hash of the token replaced by the current one, it's presented again only when the token was stolen
+     */
+    @Column(name = "previous_token_hash", length = 44)
+    private String previousTokenHash;
 
     @Column(name = "expiry_date", columnDefinition = "DATE", nullable = false)
     private LocalDateTime expiryDate;
@@ -34,9 +43,9 @@ public class RefreshToken {
     @CreatedDate
     private LocalDateTime created;
 
-    public RefreshToken(User user, String token, LocalDateTime expiryDate) {
+    public RefreshToken(User user, String tokenHash, LocalDateTime expiryDate) {
         this.user = user;
-        this.token = token;
+        this.tokenHash = tokenHash;
         this.expiryDate = expiryDate;
     }
 }
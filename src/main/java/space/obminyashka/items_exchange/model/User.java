@@ -2,6 +2,7 @@ package space.obminyashka.items_exchange.model;
 
 import space.obminyashka.items_exchange.model.enums.Status;
 import lombok.*;
+import org.hibernate.annotations.DynamicUpdate;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -11,6 +12,7 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 @Entity
+@DynamicUpdate
 @Getter
 @Setter
 @NoArgsConstructor
@@ -31,12 +33,20 @@ public class User extends BaseEntity implements UserDetails {
     @Column(name = "last_name")
     private String lastName;
 
-    @Column(name = "avatar_image")
-    private byte[] avatarImage;
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "id", insertable = false, updatable = false,
+            foreignKey = @ForeignKey(ConstraintMode.NO_CONSTRAINT))
+    private UserAvatar avatar;
 
     @Column(name = "last_online_time", columnDefinition = "TIMESTAMP", nullable = false)
     private LocalDateTime lastOnlineTime;
 
+    /**
+     * Access tokens issued before the time are revoked. It's moved forward when the password or the status is changed
+     */
+    @Column(name = "tokens_valid_after", columnDefinition = "TIMESTAMP")
+    private LocalDateTime tokensValidAfter;
+
     private Locale language;
 
     @ManyToOne(cascade = CascadeType.MERGE)
@@ -64,7 +74,7 @@ public class User extends BaseEntity implements UserDetails {
             inverseJoinColumns = @JoinColumn(name = "chat_id", referencedColumnName = "id"))
     private Set<Chat> chats;
 
-    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.EAGER, orphanRemoval = true)
+    @OneToMany(mappedBy = "user", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Message> messages;
 
     @ManyToMany
@@ -76,6 +86,13 @@ public class User extends BaseEntity implements UserDetails {
     @OneToOne(mappedBy = "user")
     private RefreshToken refreshToken;
 
+    /**
+     * @return content of the avatar, which is read from DB on the first call only
+     */
+    public byte[] getAvatarImage() {
+        return avatar == null ? null : avatar.getContent();
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
         return Collections.singletonList(new SimpleGrantedAuthority(getRole().getName()));
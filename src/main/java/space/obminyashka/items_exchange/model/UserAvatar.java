@@ -0,0 +1,27 @@
+package space.obminyashka.items_exchange.model;
+
+import lombok.*;
+import space.obminyashka.items_exchange.storage.BlobReferenceConverter;
+
+import javax.persistence.*;
+
+/**
+ * Avatar image of a user. It's mapped onto the user's own row, but as a separate entity, so loading users
+ * for authentication and ownership checks never reads its bytes
+ */
+@Entity
+@Table(name = "user")
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@EqualsAndHashCode(exclude = "id")
+public class UserAvatar {
+
+    @Id
+    private long id;
+
+    @Column(name = "avatar_image")
+    @Convert(converter = BlobReferenceConverter.class)
+    private byte[] content;
+}
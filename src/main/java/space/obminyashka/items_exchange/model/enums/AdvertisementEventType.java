@@ -0,0 +1,5 @@
+package space.obminyashka.items_exchange.model.enums;
+
+public enum AdvertisementEventType {
+    CREATED, UPDATED, DELETED, IMAGES_CHANGED
+}
@@ -0,0 +1,5 @@
+package space.obminyashka.items_exchange.model.enums;
+
+public enum ImageStatus {
+    PENDING, READY, FAILED
+}
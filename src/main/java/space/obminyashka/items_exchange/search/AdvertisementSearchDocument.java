@@ -0,0 +1,10 @@
+package space.obminyashka.items_exchange.search;
+
+/**
+ * Searchable part of an advertisement, selected without loading the whole entity
+ * @param id advertisement ID
+ * @param topic advertisement topic
+ * @param description advertisement description
+ */
+public record AdvertisementSearchDocument(long id, String topic, String description) {
+}
@@ -0,0 +1,242 @@
+package space.obminyashka.items_exchange.search;
+
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * In-memory inverted index over advertisements' topics and descriptions.
+ * Terms and their suffixes are kept sorted, so both prefix and infix lookups are range scans instead of a table scan.
+ * A rebuild fills a separate segment and swaps it in, searches never see a half-built index.
+ */
+@Component
+public class AdvertisementSearchIndex {
+
+    private static final Pattern APOSTROPHES = Pattern.compile("['’ʼ`]");
+    private static final Pattern TERM_DELIMITERS = Pattern.compile("[^\\p{L}\\p{N}]+");
+    private static final int TOPIC_WEIGHT = 3;
+    private static final int DESCRIPTION_WEIGHT = 1;
+    private static final double EXACT_MATCH_BOOST = 2;
+    private static final double PREFIX_MATCH_BOOST = 1;
+    private static final double INFIX_MATCH_BOOST = 0.5;
+
+    private volatile Segment live = new Segment();
+    private Segment rebuilding;
+
+    public void index(AdvertisementSearchDocument document) {
+        index(document.id(), document.topic(), document.description());
+    }
+
+    public synchronized void index(long advertisementId, String topic, String description) {
+        live.index(advertisementId, topic, description);
+        if (rebuilding != null) {
+            rebuilding.index(advertisementId, topic, description);
+            rebuilding.updatedIds.add(advertisementId);
+        }
+    }
+
+    public synchronized void remove(long advertisementId) {
+        live.remove(advertisementId);
+        if (rebuilding != null) {
+            rebuilding.remove(advertisementId);
+            rebuilding.updatedIds.add(advertisementId);
+        }
+    }
+
+    public synchronized void clear() {
+        live = new Segment();
+    }
+
+    /**
+     * Start filling a new index while searches keep being served by the current one.
+     * Changes made meanwhile go to both, so {@link Rebuild#complete()} doesn't lose them.
+     * @return rebuild to feed with every advertisement and complete
+     */
+    public synchronized Rebuild startRebuild() {
+        rebuilding = new Segment();
+        return new Rebuild(rebuilding);
+    }
+
+    /**
+     * Find advertisements containing every term of the query, either as a whole word or as a part of a word
+     * @param query text to search
+     * @param offset amount of the most relevant hits to skip
+     * @param limit maximum amount of hits to return
+     * @return the requested part of the matched advertisements ordered by relevance, see {@link SearchHit#RELEVANCE_ORDER},
+     * and the amount of all of them
+     */
+    public SearchResult search(String query, int offset, int limit) {
+        final var scores = score(query);
+        final var top = selectTop(scores, hit -> true, offset + limit);
+        return new SearchResult(top.subList(Math.min(offset, top.size()), top.size()), scores.size());
+    }
+
+    /**
+     * Find advertisements like {@link #search(String, int, int)} does, continuing after a previously returned hit
+     * @param query text to search
+     * @param lastSeen the last hit of the previous slice or {@literal null} for the first slice
+     * @param limit maximum amount of hits to return
+     * @return matched advertisements following the last seen hit ordered by relevance
+     */
+    public List<SearchHit> searchAfter(String query, SearchHit lastSeen, int limit) {
+        return selectTop(score(query), hit -> lastSeen == null || SearchHit.RELEVANCE_ORDER.compare(hit, lastSeen) > 0, limit);
+    }
+
+    private Map<Long, Double> score(String query) {
+        final var queryTerms = tokenize(query).distinct().toList();
+        if (queryTerms.isEmpty()) {
+            return Map.of();
+        }
+        final var segment = live;
+        Map<Long, Double> scores = segment.scoreByInfix(queryTerms.get(0));
+        for (int i = 1; i < queryTerms.size() && !scores.isEmpty(); i++) {
+            final var termScores = segment.scoreByInfix(queryTerms.get(i));
+            scores.keySet().retainAll(termScores.keySet());
+            scores.replaceAll((advertisementId, score) -> score + termScores.get(advertisementId));
+        }
+        return scores;
+    }
+
+    /**
+     * Keep only the best hits in a heap while walking the matches, instead of sorting all of them,
+     * as a page is usually a small part of the matched advertisements
+     */
+    private static List<SearchHit> selectTop(Map<Long, Double> scores, Predicate<SearchHit> filter, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+        final var worstFirst = SearchHit.RELEVANCE_ORDER.reversed();
+        final var top = new PriorityQueue<SearchHit>(Math.min(limit, scores.size()) + 1, worstFirst);
+        scores.forEach((advertisementId, score) -> {
+            final var hit = new SearchHit(advertisementId, score);
+            if (filter.test(hit) && (top.size() < limit || worstFirst.compare(hit, top.peek()) > 0)) {
+                top.add(hit);
+                if (top.size() > limit) {
+                    top.poll();
+                }
+            }
+        });
+        final var hits = new ArrayList<>(top);
+        hits.sort(SearchHit.RELEVANCE_ORDER);
+        return hits;
+    }
+
+    public int size() {
+        return live.documentTerms.size();
+    }
+
+    /**
+     * Index being filled off to the side, replaces the searchable one at once when completed
+     */
+    public final class Rebuild {
+
+        private final Segment segment;
+
+        private Rebuild(Segment segment) {
+            this.segment = segment;
+        }
+
+        /**
+         * Add an advertisement unless it was changed after the rebuild had started, that state is newer
+         * @param document advertisement as read from the DB
+         */
+        public void add(AdvertisementSearchDocument document) {
+            synchronized (AdvertisementSearchIndex.this) {
+                if (!segment.updatedIds.contains(document.id())) {
+                    segment.index(document.id(), document.topic(), document.description());
+                }
+            }
+        }
+
+        public void complete() {
+            synchronized (AdvertisementSearchIndex.this) {
+                if (rebuilding == segment) {
+                    segment.updatedIds.clear();
+                    live = segment;
+                    rebuilding = null;
+                }
+            }
+        }
+    }
+
+    private static class Segment {
+        private final NavigableMap<String, Map<Long, Integer>> postings = new ConcurrentSkipListMap<>();
+        private final NavigableMap<String, Set<String>> termsBySuffix = new ConcurrentSkipListMap<>();
+        private final Map<Long, Set<String>> documentTerms = new ConcurrentHashMap<>();
+        private final Set<Long> updatedIds = new HashSet<>();
+
+        private void index(long advertisementId, String topic, String description) {
+            remove(advertisementId);
+            final Map<String, Integer> termWeights = new HashMap<>();
+            tokenize(topic).forEach(term -> termWeights.merge(term, TOPIC_WEIGHT, Integer::sum));
+            tokenize(description).forEach(term -> termWeights.merge(term, DESCRIPTION_WEIGHT, Integer::sum));
+            termWeights.forEach((term, weight) -> postings.computeIfAbsent(term, t -> {
+                forEachSuffix(term, suffix -> termsBySuffix.computeIfAbsent(suffix, x -> ConcurrentHashMap.newKeySet()).add(term));
+                return new ConcurrentHashMap<>();
+            }).put(advertisementId, weight));
+            documentTerms.put(advertisementId, termWeights.keySet());
+        }
+
+        private void remove(long advertisementId) {
+            final var terms = documentTerms.remove(advertisementId);
+            if (terms != null) {
+                terms.forEach(term -> postings.computeIfPresent(term, (t, documents) -> {
+                    documents.remove(advertisementId);
+                    if (!documents.isEmpty()) {
+                        return documents;
+                    }
+                    forEachSuffix(term, suffix -> termsBySuffix.computeIfPresent(suffix, (x, suffixTerms) -> {
+                        suffixTerms.remove(term);
+                        return suffixTerms.isEmpty() ? null : suffixTerms;
+                    }));
+                    return null;
+                }));
+            }
+        }
+
+        /**
+         * A query term is a part of a word when it's a prefix of one of the word's suffixes
+         */
+        private Map<Long, Double> scoreByInfix(String queryTerm) {
+            final Map<Long, Double> scores = new HashMap<>();
+            final double documentsTotal = Math.max(documentTerms.size(), 1);
+            final Set<String> matchedTerms = new HashSet<>();
+            termsBySuffix.subMap(queryTerm, true, queryTerm + Character.MAX_VALUE, false).values()
+                    .forEach(matchedTerms::addAll);
+            matchedTerms.forEach(term -> {
+                final var documents = postings.get(term);
+                if (documents == null || documents.isEmpty()) {
+                    return;
+                }
+                final double inverseFrequency = 1 + Math.log(documentsTotal / documents.size());
+                final double boost = term.equals(queryTerm) ? EXACT_MATCH_BOOST
+                        : term.startsWith(queryTerm) ? PREFIX_MATCH_BOOST : INFIX_MATCH_BOOST;
+                documents.forEach((advertisementId, weight) ->
+                        scores.merge(advertisementId, weight * inverseFrequency * boost, Math::max));
+            });
+            return scores;
+        }
+
+        private static void forEachSuffix(String term, Consumer<String> action) {
+            for (int start = 0; start < term.length(); start++) {
+                action.accept(term.substring(start));
+            }
+        }
+    }
+
+    static Stream<String> tokenize(String text) {
+        if (text == null || text.isBlank()) {
+            return Stream.empty();
+        }
+        final var normalized = APOSTROPHES.matcher(text.toLowerCase(Locale.ROOT)).replaceAll("")
+                .replace('ё', 'е')
+                .replace('ґ', 'г');
+        return TERM_DELIMITERS.splitAsStream(normalized).filter(term -> !term.isEmpty());
+    }
+}
@@ -0,0 +1,45 @@
+package space.obminyashka.items_exchange.search;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import space.obminyashka.items_exchange.dao.AdvertisementRepository;
+import space.obminyashka.items_exchange.model.AdvertisementEvent;
+import space.obminyashka.items_exchange.model.enums.AdvertisementEventType;
+import space.obminyashka.items_exchange.service.AdvertisementEventConsumer;
+
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * Re-indexes advertisements mentioned in a batch of events using their current state from the DB,
+ * so the result doesn't depend on events' order or on how many times they are delivered
+ */
+@Component
+@RequiredArgsConstructor
+public class AdvertisementSearchIndexUpdater implements AdvertisementEventConsumer {
+
+    private final AdvertisementRepository advertisementRepository;
+    private final AdvertisementSearchIndex searchIndex;
+
+    @Override
+    public void consume(List<AdvertisementEvent> events) {
+        final Set<Long> changedIds = events.stream()
+                .filter(event -> event.getType() != AdvertisementEventType.IMAGES_CHANGED)
+                .map(AdvertisementEvent::getAdvertisementId)
+                .collect(Collectors.toSet());
+        if (changedIds.isEmpty()) {
+            return;
+        }
+        final var documents = advertisementRepository.findSearchDocumentsByIdIn(changedIds);
+        documents.forEach(searchIndex::index);
+
+        final var existingIds = documents.stream()
+                .map(AdvertisementSearchDocument::id)
+                .collect(Collectors.toSet());
+        changedIds.stream()
+                .filter(Predicate.not(existingIds::contains))
+                .forEach(searchIndex::remove);
+    }
+}
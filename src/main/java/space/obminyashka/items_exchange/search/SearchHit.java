@@ -0,0 +1,18 @@
+package space.obminyashka.items_exchange.search;
+
+import java.util.Comparator;
+
+/**
+ * Advertisement matched by a search query
+ * @param advertisementId ID of the matched advertisement
+ * @param score relevance of the advertisement to the query, the higher the better
+ */
+public record SearchHit(long advertisementId, double score) {
+
+    /**
+     * The most relevant hits go first, newer advertisements win a tie. Hits are never equal as IDs are unique,
+     * so the order is total and a (score, ID) pair is a stable keyset cursor position
+     */
+    public static final Comparator<SearchHit> RELEVANCE_ORDER = Comparator.comparingDouble(SearchHit::score).reversed()
+            .thenComparing(Comparator.comparingLong(SearchHit::advertisementId).reversed());
+}
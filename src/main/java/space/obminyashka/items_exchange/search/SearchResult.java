@@ -0,0 +1,11 @@
+package space.obminyashka.items_exchange.search;
+
+import java.util.List;
+
+/**
+ * Requested part of the advertisements matched by a search query
+ * @param hits matched advertisements of the requested part ordered by relevance
+ * @param total amount of all matched advertisements
+ */
+public record SearchResult(List<SearchHit> hits, int total) {
+}
@@ -0,0 +1,18 @@
+package space.obminyashka.items_exchange.service;
+
+import space.obminyashka.items_exchange.model.AdvertisementEvent;
+
+import java.util.List;
+
+/**
+ * Keeps data derived from advertisements (indexes, caches) in sync with committed changes.
+ * The same event may be delivered more than once (e.g. replayed after a crash), so consuming has to be idempotent.
+ */
+public interface AdvertisementEventConsumer {
+
+    /**
+     * Apply a batch of committed advertisement changes
+     * @param events changes ordered by their occurrence
+     */
+    void consume(List<AdvertisementEvent> events);
+}
@@ -0,0 +1,25 @@
+package space.obminyashka.items_exchange.service;
+
+import space.obminyashka.items_exchange.model.enums.AdvertisementEventType;
+
+public interface AdvertisementEventService {
+
+    /**
+     * Store an event into the outbox within the current transaction and pass it to all
+     * {@link AdvertisementEventConsumer}s right after the transaction is committed
+     * @param advertisementId ID of the changed advertisement
+     * @param type kind of the change
+     */
+    void publish(long advertisementId, AdvertisementEventType type);
+
+    /**
+     * Pass recently stored events which weren't dispatched by this instance yet (e.g. published by another instance
+     * or failed to be consumed) to the consumers in batches
+     */
+    void replayUnprocessed();
+
+    /**
+     * Remove events older than 'app.advertisement.events.retention.days', they are never replayed anymore
+     */
+    void removeOutdated();
+}
@@ -6,14 +6,20 @@ import space.obminyashka.items_exchange.dto.AdvertisementDisplayDto;
 import space.obminyashka.items_exchange.dto.AdvertisementFilterDto;
 import space.obminyashka.items_exchange.dto.AdvertisementModificationDto;
 import space.obminyashka.items_exchange.dto.AdvertisementTitleDto;
+import space.obminyashka.items_exchange.dto.AdvertisementTitleSliceDto;
 import space.obminyashka.items_exchange.model.Advertisement;
+import space.obminyashka.items_exchange.model.Image;
 import space.obminyashka.items_exchange.model.User;
+import space.obminyashka.items_exchange.util.PageCursor;
 
 import java.util.List;
 import java.util.Optional;
 
 public interface AdvertisementService {
 
+    int MAX_FILTER_PAGE_SIZE = 50;
+    int MAX_SEARCH_PAGE_SIZE = 50;
+
     /**
      * Find all advertisements as thumbnails and return them by requested quantity (size) and page
      * @param pageable see {@link Pageable} for more details
@@ -21,6 +27,14 @@ public interface AdvertisementService {
      */
     List<AdvertisementTitleDto> findAllThumbnails(Pageable pageable);
 
+    /**
+     * Find advertisements as thumbnails from the newest to the oldest, starting right after the cursor position
+     * @param cursor position of the last seen advertisement, {@code null} for the first portion
+     * @param size maximum quantity of advertisements to return
+     * @return found advertisements and the cursor of the next portion
+     */
+    AdvertisementTitleSliceDto findThumbnailsAfter(PageCursor cursor, int size);
+
     /**
      * Find 12 random advertisements as thumbnails
      * @return random 12 advertisement
@@ -35,13 +49,29 @@ public interface AdvertisementService {
     List<AdvertisementTitleDto> findAllByUsername(String username);
 
     /**
-     * Find advertisements having requested keyword
-     * @param keyword - searched word
-     * @param pageable see {@link Pageable} for more details
+     * Find advertisements which topic or description contain every word of the keyword, either whole or as a prefix
+     * @param keyword - searched word(s)
+     * @param pageable see {@link Pageable} for more details, its sorting is ignored as results are ordered by relevance,
+     *                 the page size is limited to {@value MAX_SEARCH_PAGE_SIZE}
      * @return result of the request
      */
     Page<AdvertisementTitleDto> findByKeyword(String keyword, Pageable pageable);
 
+    /**
+     * Find advertisements by keyword ordered by relevance, starting right after the cursor position.
+     * Advertisements of equal relevance are ordered by ID, so none of them is skipped or repeated between portions
+     * @param keyword searched word(s)
+     * @param cursor relevance and ID of the last seen search result, {@code null} for the first portion
+     * @param size maximum quantity of advertisements to return, limited to {@value MAX_SEARCH_PAGE_SIZE}
+     * @return found advertisements and the cursor of the next portion
+     */
+    AdvertisementTitleSliceDto findByKeywordAfter(String keyword, PageCursor cursor, int size);
+
+    /**
+     * Drop the search index and fill it again with all stored advertisements
+     */
+    void rebuildSearchIndex();
+
     /**
      * Find an advertisement with additional owner check
      * @param advertisementId ID of an advertisement
@@ -58,11 +88,12 @@ public interface AdvertisementService {
     Optional<AdvertisementDisplayDto> findDtoById(long id);
 
     /**
-     * Find first 10 matched advertisements by one of received parameters of the request DTO
+     * Find advertisements matched by every filled parameter of the request DTO, from the newest to the oldest
      * @param dto an object that contains all parameters to search
+     * @param pageable see {@link Pageable} for more details, the page size is limited to {@value MAX_FILTER_PAGE_SIZE}
      * @return result of the request
      */
-    List<AdvertisementTitleDto> findFirst10ByFilter(AdvertisementFilterDto dto);
+    List<AdvertisementTitleDto> findByFilter(AdvertisementFilterDto dto, Pageable pageable);
 
     /**
      * Check whenever user has an advertisement with selected id
@@ -73,13 +104,14 @@ public interface AdvertisementService {
     boolean isUserHasAdvertisementWithId(long id, User user);
 
     /**
-     * Create a new advertisement
+     * Create a new advertisement with pending images, which get their content and the default photo once they are processed
      * @param modificationDto DTO for converting and saving
      * @param user owner of a new advertisement
-     * @param compressedImages images related to an advertisement
-     * @return saved advertisement DTO with updated id
+     * @param imagesAmount quantity of images related to an advertisement
+     * @return saved advertisement with updated id and its pending images
+     * @see Image#pending(Advertisement)
      */
-    AdvertisementModificationDto createAdvertisement(AdvertisementModificationDto modificationDto, User user, List<byte[]> compressedImages);
+    Advertisement createAdvertisement(AdvertisementModificationDto modificationDto, User user, int imagesAmount);
 
     /**
      * Update existed advertisement
@@ -1,5 +1,6 @@
 package space.obminyashka.items_exchange.service;
 
+import space.obminyashka.items_exchange.authorization.jwt.LoginUser;
 import space.obminyashka.items_exchange.dto.RefreshTokenResponseDto;
 import space.obminyashka.items_exchange.dto.UserLoginResponseDto;
 import space.obminyashka.items_exchange.exception.RefreshTokenException;
@@ -16,6 +17,14 @@ public interface AuthService {
      */
     Optional<UserLoginResponseDto> createUserLoginResponseDto(String username);
 
+    /**
+     * Creates {@link UserLoginResponseDto} from the principal authenticated by a login, without reading the user again
+     *
+     * @param user principal returned by the authentication of the login request
+     * @return response on /login endpoint represented as {@link UserLoginResponseDto}
+     */
+    UserLoginResponseDto createUserLoginResponseDto(LoginUser user);
+
     /**
      * Invalidate access and refresh tokens for selected user
      * @param accessToken non expired access token
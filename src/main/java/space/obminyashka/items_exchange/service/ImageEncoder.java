@@ -0,0 +1,32 @@
+package space.obminyashka.items_exchange.service;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Strategy encoding decoded images into one format. Every available encoder bean is picked up by {@link ImageService}:
+ * JPEG and PNG ones re-encode uploads in their source format, others make additional variants of the images
+ * which are served to clients accepting them
+ */
+public interface ImageEncoder {
+
+    /**
+     * @return media type of the produced encoding, e.g. image/webp
+     */
+    String getMediaType();
+
+    /**
+     * Check whether the encoder can be used, e.g. its ImageIO plugin is on the classpath
+     * @return {@literal true} if the encoder is usable
+     */
+    boolean isAvailable();
+
+    /**
+     * Encode an image with the best quality fitting the budget. Lossless encoders ignore the budget
+     * @param image decoded image
+     * @param byteBudget preferred maximum size of the encoding in bytes
+     * @return encoded image's bytes, which may be bigger than the budget when even the lowest quality doesn't fit it
+     * @throws IOException when the image can't be encoded
+     */
+    byte[] encode(BufferedImage image, int byteBudget) throws IOException;
+}
@@ -0,0 +1,53 @@
+package space.obminyashka.items_exchange.service;
+
+import org.springframework.web.multipart.MultipartFile;
+import space.obminyashka.items_exchange.exception.ImageProcessingOverloadedException;
+import space.obminyashka.items_exchange.exception.UnsupportedMediaTypeException;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+public interface ImageProcessingService {
+
+    /**
+     * Start processing of received images on the dedicated image processing pool
+     * @param images images to compress
+     * @param withThumbnail whether a thumbnail should be made from the first image
+     * @return processing in progress in the order of received images
+     * @throws UnsupportedMediaTypeException in case receiving unsupported types
+     * @throws ImageProcessingOverloadedException when the pool has no room for all the images, none of them is submitted then
+     * @throws IOException when it's impossible to read some of received images
+     */
+    List<CompletableFuture<ProcessedImage>> submit(List<MultipartFile> images, boolean withThumbnail)
+            throws UnsupportedMediaTypeException, ImageProcessingOverloadedException, IOException;
+
+    /**
+     * Store results of the processing into pending images as soon as each of them is ready
+     * @param pendingImageIds IDs of pending images in the order of the processing
+     * @param processing processing started by {@link #submit(List, boolean)}
+     * @see ImageService#savePendingToAdvertisement(space.obminyashka.items_exchange.model.Advertisement, int)
+     */
+    void completeWhenProcessed(List<Long> pendingImageIds, List<CompletableFuture<ProcessedImage>> processing);
+
+    /**
+     * Cancel processing whose results can't be stored, e.g. because saving their pending images failed.
+     * Images still waiting for a thread are dropped without processing, images being processed are finished and discarded
+     * @param processing processing started by {@link #submit(List, boolean)}
+     */
+    void cancel(List<CompletableFuture<ProcessedImage>> processing);
+
+    /**
+     * Result of an image processing
+     * @param image compressed image's bytes
+     * @param thumbnail scaled image's bytes or {@literal null} when it wasn't requested
+     * @param renditions downscaled copies of the compressed image by their width
+     * @param variants encodings of the image and its renditions in additional formats by media type,
+     *                 grouped by the rendition width or {@link space.obminyashka.items_exchange.model.ImageVariant#FULL_SIZE}
+     * @param uploadHash blob store key of the uploaded file, the same file uploaded again reuses the result
+     */
+    record ProcessedImage(byte[] image, byte[] thumbnail, Map<Integer, byte[]> renditions,
+                          Map<Integer, Map<String, byte[]>> variants, String uploadHash) {
+    }
+}
@@ -1,14 +1,21 @@
 package space.obminyashka.items_exchange.service;
 
 import lombok.SneakyThrows;
+import org.springframework.http.MediaType;
 import org.springframework.web.multipart.MultipartFile;
 import space.obminyashka.items_exchange.dto.ImageDto;
+import space.obminyashka.items_exchange.dto.ImageStatusDto;
 import space.obminyashka.items_exchange.exception.UnsupportedMediaTypeException;
 import space.obminyashka.items_exchange.model.Advertisement;
 import space.obminyashka.items_exchange.model.Image;
+import space.obminyashka.items_exchange.storage.StoredBlob;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 
 public interface ImageService {
     /**
@@ -18,6 +25,15 @@ public interface ImageService {
      */
     List<byte[]> getImagesResourceByAdvertisementId(long advertisementId);
 
+    /**
+     * Return byte representative of images for received Advertisement ID in the rendition fitting the requested width
+     * @param advertisementId Advertisement ID
+     * @param width requested width in pixels or {@literal null} for original images
+     * @return all processed images that are linked to the Advertisement
+     * @see #findResource(long, long, Integer) rendition selection
+     */
+    List<byte[]> getImagesResourceByAdvertisementId(long advertisementId, Integer width);
+
     /**
      * Return all Image DTO for received Advertisement ID
      * @param advertisementId Advertisement ID
@@ -26,7 +42,37 @@ public interface ImageService {
     List<ImageDto> getByAdvertisementId(long advertisementId);
 
     /**
-     * Make in-memory compressing (20% of basic quality) only for supported types of images
+     * Find stored content of an image to stream it
+     * @param advertisementId ID of the advertisement the image belongs to
+     * @param imageId ID of the image
+     * @return the content or empty {@link Optional} if there is no such image in the advertisement
+     */
+    Optional<StoredBlob> findResource(long advertisementId, long imageId);
+
+    /**
+     * Find stored content of an image in the smallest rendition which is not narrower than the requested width.
+     * The original is returned when no rendition is wide enough. Missing renditions of images uploaded before
+     * they were introduced are made and stored on the first request
+     * @param advertisementId ID of the advertisement the image belongs to
+     * @param imageId ID of the image
+     * @param width requested width in pixels or {@literal null} for the original image
+     * @return the content or empty {@link Optional} if there is no such image in the advertisement
+     */
+    Optional<StoredBlob> findResource(long advertisementId, long imageId, Integer width);
+
+    /**
+     * Find stored content of an image like {@link #findResource(long, long, Integer)} does, preferring its variant
+     * in one of the configured additional formats when the client explicitly accepts it
+     * @param advertisementId ID of the advertisement the image belongs to
+     * @param imageId ID of the image
+     * @param width requested width in pixels or {@literal null} for the original image
+     * @param acceptedTypes media types from the Accept header of the request
+     * @return the content or empty {@link Optional} if there is no such image in the advertisement
+     */
+    Optional<StoredBlob> findResource(long advertisementId, long imageId, Integer width, List<MediaType> acceptedTypes);
+
+    /**
+     * Make in-memory compressing with the best quality fitting the configured byte budget only for supported types of images
      * @param images list of images for further compression
      * @return compressed images' bytes
      * @throws UnsupportedMediaTypeException in case receiving unsupported types
@@ -37,7 +83,7 @@ public interface ImageService {
     List<byte[]> compress(List<MultipartFile> images) throws UnsupportedMediaTypeException;
 
     /**
-     * Make in-memory compressing (30% of basic quality) only for supported types of images
+     * Make in-memory compressing with the best quality fitting the configured byte budget only for supported types of images
      * @param image image for further compression
      * @return compresses image's bytes
      * @apiNote throw {@link IOException} in cases when received image is corrupted, or it's impossible to read it properly AND
@@ -47,6 +93,50 @@ public interface ImageService {
     @SneakyThrows({IOException.class, UnsupportedMediaTypeException.class})
     byte[] compress(MultipartFile image);
 
+    /**
+     * Make in-memory compressing of already received image bytes with the best quality fitting the configured byte budget.
+     * The image's type is taken from its content and GIF images are kept as is. The image is never made bigger than received
+     * @param image bytes of the image for further compression
+     * @return compressed image's bytes
+     * @apiNote throw {@link IOException} in cases when received image is corrupted, or it's impossible to read it properly
+     */
+    @SneakyThrows(IOException.class)
+    byte[] compress(byte[] image);
+
+    /**
+     * Make compressing of an image saved to a file like {@link #compress(byte[])} does. The file is decoded as it's read,
+     * and its bytes are loaded into memory only when the image is kept as is
+     * @param image file of the image for further compression
+     * @return compressed image's bytes
+     * @apiNote throw {@link IOException} in cases when the image is corrupted, or it's impossible to read the file properly
+     */
+    @SneakyThrows(IOException.class)
+    byte[] compress(Path image);
+
+    /**
+     * Make downscaled copies of an image for every configured rendition width, keeping its aspect ratio.
+     * Images which are already narrower than a rendition are used as the rendition as is
+     * @param image bytes of the image
+     * @return renditions' bytes by their width
+     */
+    Map<Integer, byte[]> makeRenditions(byte[] image);
+
+    /**
+     * Encode an image in every configured additional format with an available {@link ImageEncoder}.
+     * Encodings which aren't smaller than the image itself are skipped, GIF images are never encoded to keep their animation
+     * @param image bytes of the image
+     * @return encodings' bytes by their media type
+     */
+    Map<String, byte[]> makeVariants(byte[] image);
+
+    /**
+     * Check whether all received images have supported types
+     * @param images images to check
+     * @throws UnsupportedMediaTypeException in case receiving unsupported types
+     * @see SupportedMediaTypes supported media types
+     */
+    void validateTypes(List<MultipartFile> images) throws UnsupportedMediaTypeException;
+
     /**
      * Create new entity for each received image, link them to the Advertisement using its ID and store them to the DB
      * @see Image entity as representation of all images
@@ -62,6 +152,51 @@ public interface ImageService {
      */
     void saveToAdvertisement(Advertisement advertisement, byte[] image);
 
+    /**
+     * Create pending images without content and link them to the Advertisement, so their IDs are known before processing
+     * @param advertisement to link images with
+     * @param amount quantity of images to create
+     * @return IDs of created images in the order of creation
+     */
+    List<Long> savePendingToAdvertisement(Advertisement advertisement, int amount);
+
+    /**
+     * Put processed content into a pending image and mark it as ready. The thumbnail, if any, is set as the
+     * advertisement's default photo
+     * @param imageId ID of the pending image
+     * @param processed the image, its renditions and variants
+     */
+    void completeProcessing(long imageId, ImageProcessingService.ProcessedImage processed);
+
+    /**
+     * Find the result of a previous processing of the same uploaded file
+     * @param uploadHash blob store key of the uploaded file
+     * @return the image, its renditions and variants without a thumbnail, or empty {@link Optional} if the file
+     * wasn't processed before
+     */
+    Optional<ImageProcessingService.ProcessedImage> findProcessed(String uploadHash);
+
+    /**
+     * Mark a pending image as failed to be processed
+     * @param imageId ID of the pending image
+     */
+    void failProcessing(long imageId);
+
+    /**
+     * Mark images pending since before the received time as failed to be processed. Their processing is lost
+     * when the application stops before it completes, and nothing would change their status otherwise
+     * @param pendingBefore creation time pending images are considered lost before
+     * @return amount of images marked as failed
+     */
+    int failStaleProcessing(LocalDateTime pendingBefore);
+
+    /**
+     * Return processing statuses of all images of an advertisement
+     * @param advertisementId Advertisement ID
+     * @return statuses ordered by image ID
+     */
+    List<ImageStatusDto> getStatuses(long advertisementId);
+
     /**
      * Check whether all images with gained IDs received into an advertisement
      * @param ids images IDs to check
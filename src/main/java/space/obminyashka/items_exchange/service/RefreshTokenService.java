@@ -2,17 +2,18 @@ package space.obminyashka.items_exchange.service;
 
 import space.obminyashka.items_exchange.model.RefreshToken;
 
+import java.util.Locale;
 import java.util.Optional;
 
 public interface RefreshTokenService {
 
     /**
-     * Creates a {@link RefreshToken} by logged-in User`s username
+     * Creates a {@link RefreshToken} by logged-in User`s ID without reading the User
      *
-     * @param username is a username of the logged-in User
-     * @return the created {@link RefreshToken}
+     * @param userId is an ID of the logged-in User
+     * @return value of the created token, which isn't stored anywhere except the response
      */
-    RefreshToken createRefreshToken(String username);
+    String createRefreshToken(long userId);
 
     /**
      * Removes a {@link RefreshToken} by logged-in User`s username
@@ -22,11 +23,27 @@ public interface RefreshTokenService {
     void deleteByUsername(String username);
 
     /**
-     * Regenerates a new Access JWT Token by Refresh token
+     * Regenerates a new Access JWT Token by Refresh token and replaces the Refresh token with a new one.
+     * A replaced Refresh token presented again means it was stolen, so the new one is removed as well
+     * and the User has to log in again
      *
-     * @param refreshToken is a value of {@link RefreshToken#getToken()}
-     * @return an Optional {@link String} as a new Access JWT Token
-     * if Refresh Token exists in the database and not expired, {@link Optional#empty()} otherwise
+     * @param refreshToken is a value returned by {@link #createRefreshToken(long)} or by a previous renewal
+     * @param language is a language of the request, which is stored as the User`s preferable one
+     * @return an Optional {@link RenewedTokens} if Refresh Token exists in the database and not expired,
+     * {@link Optional#empty()} otherwise
+     */
+    Optional<RenewedTokens> renewAccessTokenByRefresh(String refreshToken, Locale language);
+
+    /**
+     * Removes expired Refresh tokens in small batches, so the table is never locked for long
+     */
+    void removeExpiredTokens();
+
+    /**
+     * Tokens issued by a renewal
+     * @param accessToken new Access JWT Token
+     * @param refreshToken new Refresh token, which replaced the presented one
      */
-    Optional<String> renewAccessTokenByRefresh(String refreshToken);
+    record RenewedTokens(String accessToken, String refreshToken) {
+    }
 }
@@ -5,6 +5,7 @@ import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
 import space.obminyashka.items_exchange.dto.*;
 import space.obminyashka.items_exchange.model.User;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -17,6 +18,20 @@ public interface UserService {
      */
     Optional<User> findByUsernameOrEmail(String usernameOrEmail);
 
+    /**
+     * Find only the fields of a user which are required for authentication by either username or email
+     * @param usernameOrEmail login or email of the user
+     * @return {@link Optional} with the user's authentication fields as the result
+     */
+    Optional<UserAuthDto> findAuthByUsernameOrEmail(String usernameOrEmail);
+
+    /**
+     * Find the fields of a user which are required to log in and to build the login response by either username or email
+     * @param usernameOrEmail login or email of the user
+     * @return {@link Optional} with the user's login fields as the result
+     */
+    Optional<UserLoginDetailsDto> findLoginDetailsByUsernameOrEmail(String usernameOrEmail);
+
     /**
      * Find a user into DB by checking gained username and convert it into DTO
      * @param username login of the user
@@ -63,10 +78,10 @@ public interface UserService {
 
     /**
      * Getting days which is/are left for the user before removing from DB
-     * @param user the requested user
+     * @param deletionRequested date of the user's self-removing request, which is the date of the last update
      * @return quantity of days that is/are left
      */
-    long getDaysBeforeDeletion(User user);
+    long getDaysBeforeDeletion(LocalDateTime deletionRequested);
 
     /**
      * Scheduled job which checks users that needs to be removed from DB after exhaustion of the grace period
@@ -139,13 +154,6 @@ public interface UserService {
      */
     void setUserAvatar(byte[] newAvatarImage, User user);
 
-    /**
-     * Get {@link org.springframework.http.HttpHeaders#ACCEPT_LANGUAGE} and compare with stored language setting
-     * and update if they aren't equals
-     * @param refreshToken token linked with stored user in the DB
-     */
-    void updatePreferableLanguage(String refreshToken);
-
     /**
      * Find {@link User} from OAuth2User credentials, register if user is new
      * @param oauth2User instance of {@link DefaultOidcUser} with the required credentials for user login/registration
@@ -0,0 +1,96 @@
+package space.obminyashka.items_exchange.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import space.obminyashka.items_exchange.dao.AdvertisementEventRepository;
+import space.obminyashka.items_exchange.model.AdvertisementEvent;
+import space.obminyashka.items_exchange.model.enums.AdvertisementEventType;
+import space.obminyashka.items_exchange.service.AdvertisementEventConsumer;
+import space.obminyashka.items_exchange.service.AdvertisementEventService;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Consumers keep their data in memory, so every instance tracks on its own which events it has dispatched.
+ * Events are re-read by their creation time rather than by ID: an event with a lower ID may be committed later
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AdvertisementEventServiceImpl implements AdvertisementEventService {
+
+    private static final int REPLAY_BATCH_SIZE = 100;
+
+    private final AdvertisementEventRepository advertisementEventRepository;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final List<AdvertisementEventConsumer> consumers;
+    private final Map<Long, LocalDateTime> dispatchedEvents = new ConcurrentHashMap<>();
+    private LocalDateTime lastReplayed = LocalDateTime.now();
+
+    @Value("${app.advertisement.events.look-back.ms}")
+    private long lookBackMillis;
+
+    @Value("${app.advertisement.events.retention.days}")
+    private long retentionDays;
+
+    @Override
+    public void publish(long advertisementId, AdvertisementEventType type) {
+        final var event = advertisementEventRepository.save(new AdvertisementEvent(advertisementId, type));
+        applicationEventPublisher.publishEvent(event);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCommitted(AdvertisementEvent event) {
+        dispatch(List.of(event));
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.advertisement.events.poll.ms}")
+    public synchronized void replayUnprocessed() {
+        final var replayStarted = LocalDateTime.now();
+        final var since = lastReplayed.minus(lookBackMillis, ChronoUnit.MILLIS);
+        long lastId = 0;
+        List<AdvertisementEvent> batch;
+        do {
+            batch = advertisementEventRepository.findByCreatedAfterAndIdGreaterThanOrderById(since, lastId,
+                    PageRequest.of(0, REPLAY_BATCH_SIZE));
+            final var undispatched = batch.stream()
+                    .filter(event -> !dispatchedEvents.containsKey(event.getId()))
+                    .toList();
+            if (!undispatched.isEmpty()) {
+                log.info("Replaying {} advertisement events not dispatched by this instance", undispatched.size());
+                dispatch(undispatched);
+            }
+            lastId = batch.isEmpty() ? lastId : batch.get(batch.size() - 1).getId();
+        } while (batch.size() == REPLAY_BATCH_SIZE);
+        // events created before 'since' are never read again, so there is nothing to skip among them
+        dispatchedEvents.values().removeIf(created -> created.isBefore(since));
+        lastReplayed = replayStarted;
+    }
+
+    @Override
+    @Scheduled(cron = "${cron.expression.once_per_day_at_3am}")
+    public void removeOutdated() {
+        final var removed = advertisementEventRepository.deleteByCreatedBefore(LocalDateTime.now().minusDays(retentionDays));
+        log.info("{} outdated advertisement events are removed", removed);
+    }
+
+    private void dispatch(List<AdvertisementEvent> events) {
+        try {
+            consumers.forEach(consumer -> consumer.consume(events));
+            events.forEach(event -> dispatchedEvents.put(event.getId(), event.getCreated()));
+        } catch (RuntimeException e) {
+            log.error("Advertisement events are left for replay as they weren't consumed", e);
+        }
+    }
+}
@@ -1,13 +1,16 @@
 package space.obminyashka.items_exchange.service.impl;
 
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.cache.annotation.CacheConfig;
-import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -17,29 +20,46 @@ import space.obminyashka.items_exchange.mapper.UtilMapper;
 import space.obminyashka.items_exchange.model.Advertisement;
 import space.obminyashka.items_exchange.model.Image;
 import space.obminyashka.items_exchange.model.User;
+import space.obminyashka.items_exchange.model.enums.AdvertisementEventType;
 import space.obminyashka.items_exchange.model.enums.AgeRange;
 import space.obminyashka.items_exchange.model.enums.Status;
+import space.obminyashka.items_exchange.search.AdvertisementSearchDocument;
+import space.obminyashka.items_exchange.search.AdvertisementSearchIndex;
+import space.obminyashka.items_exchange.search.SearchHit;
+import space.obminyashka.items_exchange.service.AdvertisementEventService;
 import space.obminyashka.items_exchange.service.AdvertisementService;
 import space.obminyashka.items_exchange.service.ImageService;
 import space.obminyashka.items_exchange.service.LocationService;
 import space.obminyashka.items_exchange.service.SubcategoryService;
+import space.obminyashka.items_exchange.storage.BlobStore;
+import space.obminyashka.items_exchange.util.PageCursor;
 
 import javax.persistence.EntityNotFoundException;
+import javax.transaction.Transactional;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static space.obminyashka.items_exchange.mapper.UtilMapper.convertTo;
 
+@Slf4j
 @CacheConfig(cacheNames = "titles")
 @Service
 @RequiredArgsConstructor
 public class AdvertisementServiceImpl implements AdvertisementService {
 
+    private static final int SEARCH_INDEX_BATCH_SIZE = 1000;
+
     private final ModelMapper modelMapper;
     private final AdvertisementRepository advertisementRepository;
     private final SubcategoryService subcategoryService;
     private final LocationService locationService;
     private final ImageService imageService;
+    private final AdvertisementSearchIndex searchIndex;
+    private final AdvertisementEventService advertisementEventService;
+    private final BlobStore blobStore;
     private final Random random = new Random();
 
     @Value("${display.adv.date.format}")
@@ -48,8 +68,19 @@ public class AdvertisementServiceImpl implements AdvertisementService {
     @Override
     @Cacheable(key = "#pageable.pageNumber")
     public List<AdvertisementTitleDto> findAllThumbnails(Pageable pageable) {
-        List<Advertisement> content = advertisementRepository.findAll(pageable).getContent();
-        return mapAdvertisementsToTitleDto(content);
+        return readImages(advertisementRepository.findAllTitles(pageable));
+    }
+
+    @Override
+    public AdvertisementTitleSliceDto findThumbnailsAfter(PageCursor cursor, int size) {
+        final var lastId = cursor == null ? Long.MAX_VALUE : cursor.lastId();
+        final var titles = readImages(advertisementRepository.findTitlesBefore(lastId, PageRequest.of(0, size + 1)));
+        if (titles.size() <= size) {
+            return new AdvertisementTitleSliceDto(titles, null);
+        }
+        final var content = titles.subList(0, size);
+        final var nextCursor = PageCursor.of(content.get(size - 1).getAdvertisementId());
+        return new AdvertisementTitleSliceDto(content, nextCursor.encode());
     }
 
     @Override
@@ -65,22 +96,73 @@ public class AdvertisementServiceImpl implements AdvertisementService {
     @Cacheable
     @Override
     public List<AdvertisementTitleDto> findAllByUsername(String username) {
-        final var allForUser = advertisementRepository.findAllByUserUsername(username);
-        return mapAdvertisementsToTitleDto(allForUser);
+        return readImages(advertisementRepository.findAllTitlesByUserUsername(username));
     }
 
-    @Cacheable(key = "#keyword")
     @Override
     public Page<AdvertisementTitleDto> findByKeyword(String keyword, Pageable pageable) {
-        final var wholeStringSearchResult = advertisementRepository.search(keyword, pageable);
-        if (!wholeStringSearchResult.isEmpty()) {
-            return wholeStringSearchResult.map(this::buildAdvertisementTitle);
+        final var pageRequest = PageRequest.of(pageable.getPageNumber(), Math.min(pageable.getPageSize(), MAX_SEARCH_PAGE_SIZE));
+        final var offset = (int) Math.min(pageRequest.getOffset(), Integer.MAX_VALUE - pageRequest.getPageSize());
+        final var result = searchIndex.search(keyword, offset, pageRequest.getPageSize());
+        final var pageIds = result.hits().stream()
+                .map(SearchHit::advertisementId)
+                .toList();
+        return new PageImpl<>(findTitlesKeepingOrder(pageIds), pageRequest, result.total());
+    }
+
+    /**
+     * Seek by the (score, ID) pair rather than by the score alone: many advertisements share the same score
+     */
+    @Override
+    public AdvertisementTitleSliceDto findByKeywordAfter(String keyword, PageCursor cursor, int size) {
+        final var limit = Math.min(size, MAX_SEARCH_PAGE_SIZE);
+        final var lastSeen = cursor == null ? null : new SearchHit(cursor.lastId(), cursor.score());
+        final var hits = searchIndex.searchAfter(keyword, lastSeen, limit + 1);
+        final var pageHits = hits.subList(0, Math.min(limit, hits.size()));
+        final var content = findTitlesKeepingOrder(pageHits.stream().map(SearchHit::advertisementId).toList());
+        if (hits.size() <= limit) {
+            return new AdvertisementTitleSliceDto(content, null);
         }
-        final var keywords = Set.of(keyword.split(" "));
-        if (!keywords.isEmpty()){
-            return advertisementRepository.search(keywords, pageable).map(this::buildAdvertisementTitle);
+        final var lastHit = pageHits.get(pageHits.size() - 1);
+        return new AdvertisementTitleSliceDto(content, new PageCursor(lastHit.advertisementId(), lastHit.score()).encode());
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildSearchIndex() {
+        final var rebuild = searchIndex.startRebuild();
+        long lastId = 0;
+        List<AdvertisementSearchDocument> batch;
+        do {
+            batch = advertisementRepository.findSearchDocumentsAfter(lastId, PageRequest.of(0, SEARCH_INDEX_BATCH_SIZE));
+            batch.forEach(rebuild::add);
+            lastId = batch.isEmpty() ? lastId : batch.get(batch.size() - 1).id();
+        } while (batch.size() == SEARCH_INDEX_BATCH_SIZE);
+        rebuild.complete();
+        log.info("Search index is rebuilt with {} advertisements", searchIndex.size());
+    }
+
+    /**
+     * Titles are selected with references to the images, the images themselves are read only for the returned titles
+     */
+    private List<AdvertisementTitleDto> readImages(List<AdvertisementTitleDto> titles) {
+        titles.forEach(title -> {
+            title.setImage(blobStore.read(title.getImage()));
+            title.setOwnerAvatar(blobStore.read(title.getOwnerAvatar()));
+        });
+        return titles;
+    }
+
+    private List<AdvertisementTitleDto> findTitlesKeepingOrder(List<Long> advertisementIds) {
+        if (advertisementIds.isEmpty()) {
+            return List.of();
         }
-        return Page.empty();
+        final var titlesById = readImages(advertisementRepository.findTitlesByIdIn(advertisementIds)).stream()
+                .collect(Collectors.toMap(AdvertisementTitleDto::getAdvertisementId, Function.identity()));
+        return advertisementIds.stream()
+                .map(titlesById::get)
+                .filter(Objects::nonNull)
+                .toList();
     }
 
     @Override
@@ -94,16 +176,9 @@ public class AdvertisementServiceImpl implements AdvertisementService {
     }
 
     @Override
-    public List<AdvertisementTitleDto> findFirst10ByFilter(AdvertisementFilterDto dto) {
-        return mapAdvertisementsToTitleDto(
-                (Collection<Advertisement>) advertisementRepository.findFirst10ByParams(
-                        dto.getAge(),
-                        dto.getGender(),
-                        dto.getSize(),
-                        dto.getSeason(),
-                        dto.getSubcategoryId(),
-                        dto.getCategoryId(),
-                        dto.getLocationId()));
+    public List<AdvertisementTitleDto> findByFilter(AdvertisementFilterDto dto, Pageable pageable) {
+        final var pageSize = Math.min(pageable.getPageSize(), MAX_FILTER_PAGE_SIZE);
+        return readImages(advertisementRepository.findTitlesByFilter(dto, PageRequest.of(pageable.getPageNumber(), pageSize)));
     }
 
     @Override
@@ -112,18 +187,21 @@ public class AdvertisementServiceImpl implements AdvertisementService {
     }
 
     @Override
-    public AdvertisementModificationDto createAdvertisement(AdvertisementModificationDto dto, User owner, List<byte[]> compressedImages) {
+    @Transactional
+    public Advertisement createAdvertisement(AdvertisementModificationDto dto, User owner, int imagesAmount) {
         Advertisement adv = UtilMapper.convertTo(dto, Advertisement.class);
         adv.setUser(owner);
         adv.setStatus(Status.NEW);
-        adv.setImages(compressedImages.stream().map(image -> new Image(0L, image, adv)).toList());
-        adv.setDefaultPhoto(imageService.scale(compressedImages.get(0)));
+        adv.setImages(Stream.generate(() -> Image.pending(adv)).limit(imagesAmount).toList());
         updateSubcategory(adv, dto.getSubcategoryId());
         updateLocation(adv, dto.getLocationId());
-        return UtilMapper.convertTo(advertisementRepository.save(adv), AdvertisementModificationDto.class);
+        final var savedAdvertisement = advertisementRepository.save(adv);
+        advertisementEventService.publish(savedAdvertisement.getId(), AdvertisementEventType.CREATED);
+        return savedAdvertisement;
     }
 
     @Override
+    @Transactional
     public AdvertisementModificationDto updateAdvertisement(AdvertisementModificationDto dto) {
         Advertisement toUpdate = UtilMapper.convertTo(dto, Advertisement.class);
         Advertisement fromDB = advertisementRepository.findById(dto.getId())
@@ -134,6 +212,7 @@ public class AdvertisementServiceImpl implements AdvertisementService {
         updateLocation(fromDB, toUpdate.getLocation().getId());
         fromDB.setStatus(Status.UPDATED);
         Advertisement updatedAdvertisement = advertisementRepository.saveAndFlush(fromDB);
+        advertisementEventService.publish(updatedAdvertisement.getId(), AdvertisementEventType.UPDATED);
         return UtilMapper.convertTo(updatedAdvertisement, AdvertisementModificationDto.class);
     }
 
@@ -144,7 +223,7 @@ public class AdvertisementServiceImpl implements AdvertisementService {
 
     private void updateAdvertisement(Advertisement toUpdate, Advertisement fromDB) {
         if (!fromDB.equals(toUpdate)) {
-            BeanUtils.copyProperties(toUpdate, fromDB, "created", "updated", "status", "location", "user", "subcategory", "images", "chats");
+            BeanUtils.copyProperties(toUpdate, fromDB, "created", "updated", "status", "location", "user", "subcategory", "images", "chats", "thumbnail");
         }
     }
 
@@ -159,26 +238,25 @@ public class AdvertisementServiceImpl implements AdvertisementService {
     }
 
     @Override
-    @CacheEvict(key = "#id")
+    @Transactional
     public void remove(long id) {
         advertisementRepository.deleteById(id);
         advertisementRepository.flush();
+        advertisementEventService.publish(id, AdvertisementEventType.DELETED);
     }
 
     @Override
+    @Transactional
     public void setDefaultImage(Advertisement advertisement, Long imageId) {
         advertisement.getImages().stream()
                 .filter(img -> img.getId() == imageId)
                 .findFirst()
                 .map(Image::getResource)
                 .map(imageService::scale)
-                .ifPresent(advertisement::setDefaultPhoto);
+                .ifPresent(advertisement::updateThumbnail);
 
         advertisementRepository.saveAndFlush(advertisement);
-    }
-
-    private List<AdvertisementTitleDto> mapAdvertisementsToTitleDto(Collection<Advertisement> advertisements) {
-        return advertisements.stream().map(this::buildAdvertisementTitle).toList();
+        advertisementEventService.publish(advertisement.getId(), AdvertisementEventType.IMAGES_CHANGED);
     }
 
     @Override
@@ -195,24 +273,13 @@ public class AdvertisementServiceImpl implements AdvertisementService {
         return advertisementRepository.count();
     }
 
-    private AdvertisementTitleDto buildAdvertisementTitle(Advertisement advertisement) {
-        return AdvertisementTitleDto.builder()
-                .advertisementId(advertisement.getId())
-                .image(getImage(advertisement))
-                .title(advertisement.getTopic())
-                .location(convertTo(advertisement.getLocation(), LocationDto.class))
-                .ownerName(advertisement.getUser().getUsername())
-                .ownerAvatar(advertisement.getUser().getAvatarImage())
-                .build();
-    }
-
     private AdvertisementDisplayDto buildAdvertisementDisplayDto(Advertisement advertisement) {
         String createdDate = advertisement.getCreated().format(DateTimeFormatter.ofPattern(dateFormat));
         String age = Optional.ofNullable(advertisement.getAge()).map(AgeRange::getValue).orElse("");
         AdvertisementDisplayDto displayDto = AdvertisementDisplayDto.builder()
                 .advertisementId(advertisement.getId())
                 .ownerName(getOwnerFullName(advertisement.getUser()))
-                .ownerAvatar(advertisement.getUser().getAvatarImage())
+                .ownerAvatar(blobStore.read(advertisement.getUser().getAvatarImage()))
                 .age(age)
                 .phone(getOwnerPhone(advertisement.getUser()))
                 .category(convertTo(advertisement.getSubcategory().getCategory(), CategoryNameDto.class))
@@ -233,14 +300,6 @@ public class AdvertisementServiceImpl implements AdvertisementService {
                 .orElse("");
     }
 
-    private byte[] getImage(Advertisement advertisement) {
-        return Optional.ofNullable(advertisement.getDefaultPhoto())
-                .orElseGet(() -> advertisement.getImages().stream()
-                        .findFirst()
-                        .map(Image::getResource)
-                        .orElse(new byte[0]));
-    }
-
     private String getOwnerFullName(User user) {
         String formatted = String.format("%s %s", user.getFirstName(), user.getLastName());
         return formatted.isBlank() ? user.getUsername() : formatted.trim();
@@ -0,0 +1,28 @@
+package space.obminyashka.items_exchange.service.impl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import space.obminyashka.items_exchange.model.AdvertisementEvent;
+import space.obminyashka.items_exchange.service.AdvertisementEventConsumer;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Drops cached advertisement thumbnails after any advertisement change, as a cached page may contain it
+ */
+@Component
+@RequiredArgsConstructor
+public class AdvertisementTitlesCacheConsumer implements AdvertisementEventConsumer {
+
+    private static final String TITLES_CACHE = "titles";
+
+    private final CacheManager cacheManager;
+
+    @Override
+    public void consume(List<AdvertisementEvent> events) {
+        Optional.ofNullable(cacheManager.getCache(TITLES_CACHE)).ifPresent(Cache::clear);
+    }
+}
@@ -3,19 +3,22 @@ package space.obminyashka.items_exchange.service.impl;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.modelmapper.ModelMapper;
+import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import space.obminyashka.items_exchange.authorization.jwt.JwtTokenProvider;
+import space.obminyashka.items_exchange.authorization.jwt.LoginUser;
 import space.obminyashka.items_exchange.dto.RefreshTokenResponseDto;
 import space.obminyashka.items_exchange.dto.UserLoginResponseDto;
 import space.obminyashka.items_exchange.exception.RefreshTokenException;
 import space.obminyashka.items_exchange.service.AuthService;
 import space.obminyashka.items_exchange.service.RefreshTokenService;
 import space.obminyashka.items_exchange.service.UserService;
+import space.obminyashka.items_exchange.storage.BlobStore;
 
 import java.time.LocalDateTime;
+import java.util.Objects;
 import java.util.Optional;
-import java.util.function.Predicate;
 
 import static space.obminyashka.items_exchange.util.MessageSourceUtil.getParametrizedMessageSource;
 
@@ -28,21 +31,42 @@ public class AuthServiceImpl implements AuthService {
     private final JwtTokenProvider jwtTokenProvider;
     private final UserService userService;
     private final ModelMapper modelMapper;
+    private final BlobStore blobStore;
 
     public Optional<UserLoginResponseDto> createUserLoginResponseDto(String username) throws UsernameNotFoundException {
         final var user = userService.findByUsernameOrEmail(username);
         if (user.isPresent()) {
             final var userLoginResponseDto = modelMapper.map(user.get(), UserLoginResponseDto.class);
-            userLoginResponseDto.setAccessToken(jwtTokenProvider.createAccessToken(username, user.get().getRole()));
-            userLoginResponseDto.setRefreshToken(refreshTokenService.createRefreshToken(username).getToken());
-            userLoginResponseDto.setAccessTokenExpirationDate(jwtTokenProvider.getAccessTokenExpiration(LocalDateTime.now()));
-            userLoginResponseDto.setRefreshTokenExpirationDate(jwtTokenProvider.getRefreshTokenExpiration(LocalDateTime.now()));
+            userLoginResponseDto.setAvatarImage(blobStore.read(user.get().getAvatarImage()));
+            setTokens(userLoginResponseDto, jwtTokenProvider.createAccessToken(user.get()), user.get().getId());
             log.info("User {} is successfully logged in", username);
             return Optional.of(userLoginResponseDto);
         }
         return Optional.empty();
     }
 
+    @Override
+    public UserLoginResponseDto createUserLoginResponseDto(LoginUser user) {
+        final var details = user.details();
+        final var userLoginResponseDto = new UserLoginResponseDto();
+        userLoginResponseDto.setEmail(details.email());
+        userLoginResponseDto.setUsername(details.username());
+        userLoginResponseDto.setFirstName(details.firstName());
+        userLoginResponseDto.setLastName(details.lastName());
+        userLoginResponseDto.setLanguage(Objects.toString(details.language(), null));
+        userLoginResponseDto.setAvatarImage(blobStore.read(details.avatarImage()));
+        setTokens(userLoginResponseDto, jwtTokenProvider.createAccessToken(details.toAuthDto()), details.id());
+        log.info("User {} is successfully logged in", details.username());
+        return userLoginResponseDto;
+    }
+
+    private void setTokens(UserLoginResponseDto userLoginResponseDto, String accessToken, long userId) {
+        userLoginResponseDto.setAccessToken(accessToken);
+        userLoginResponseDto.setRefreshToken(refreshTokenService.createRefreshToken(userId));
+        userLoginResponseDto.setAccessTokenExpirationDate(jwtTokenProvider.getAccessTokenExpiration(LocalDateTime.now()));
+        userLoginResponseDto.setRefreshTokenExpirationDate(jwtTokenProvider.getRefreshTokenExpiration(LocalDateTime.now()));
+    }
+
     @Override
     public boolean logout(String accessToken, String username) {
         final String token = JwtTokenProvider.resolveToken(accessToken);
@@ -56,9 +80,8 @@ public class AuthServiceImpl implements AuthService {
 
     @Override
     public RefreshTokenResponseDto renewAccessTokenByRefresh(String refreshToken) throws RefreshTokenException {
-        return refreshTokenService.renewAccessTokenByRefresh(refreshToken)
-                .filter(Predicate.not(String::isEmpty))
-                .map(accessToken -> new RefreshTokenResponseDto(accessToken, refreshToken,
+        return refreshTokenService.renewAccessTokenByRefresh(refreshToken, LocaleContextHolder.getLocale())
+                .map(tokens -> new RefreshTokenResponseDto(tokens.accessToken(), tokens.refreshToken(),
                         jwtTokenProvider.getAccessTokenExpiration(LocalDateTime.now()),
                         jwtTokenProvider.getRefreshTokenExpiration(LocalDateTime.now())))
                 .orElseThrow(() -> new RefreshTokenException(getParametrizedMessageSource("refresh.token.invalid", refreshToken)));
@@ -0,0 +1,219 @@
+package space.obminyashka.items_exchange.service.impl;
+
+import lombok.experimental.UtilityClass;
+import org.springframework.http.MediaType;
+
+import javax.imageio.*;
+import javax.imageio.stream.FileImageInputStream;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import javax.imageio.stream.MemoryCacheImageInputStream;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Decodes and encodes images in memory in a single pass over their bytes.
+ * Readers, writers and the output buffer are kept per thread and reused, since looking them up and growing
+ * a new buffer for every image costs more than the coding of small images itself
+ */
+@UtilityClass
+class ImageCodec {
+
+    private static final byte[] JPEG_SIGNATURE = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] GIF_SIGNATURE = {'G', 'I', 'F', '8'};
+    private static final int MAX_RETAINED_BUFFER_SIZE = 4 * 1024 * 1024;
+
+    private static final ThreadLocal<Map<String, ImageReader>> READERS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, ImageWriter>> WRITERS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<ByteArrayOutputStream> BUFFERS = ThreadLocal.withInitial(ByteArrayOutputStream::new);
+
+    /**
+     * Detect the type of an image by the signature in its first bytes
+     * @param image image's bytes
+     * @return JPEG, PNG or GIF media type, or {@literal null} for any other content
+     */
+    static String detectMediaType(byte[] image) {
+        if (startsWith(image, JPEG_SIGNATURE)) {
+            return MediaType.IMAGE_JPEG_VALUE;
+        }
+        if (startsWith(image, PNG_SIGNATURE)) {
+            return MediaType.IMAGE_PNG_VALUE;
+        }
+        if (startsWith(image, GIF_SIGNATURE)) {
+            return MediaType.IMAGE_GIF_VALUE;
+        }
+        return null;
+    }
+
+    /**
+     * Detect the type of an image file by the signature in its first bytes, without reading the rest of it
+     * @param image image's file
+     * @return JPEG, PNG or GIF media type, or {@literal null} for any other content
+     * @throws IOException when the file can't be read
+     */
+    static String detectMediaType(Path image) throws IOException {
+        try (InputStream input = Files.newInputStream(image)) {
+            return detectMediaType(input.readNBytes(PNG_SIGNATURE.length));
+        }
+    }
+
+    private static boolean startsWith(byte[] image, byte[] signature) {
+        if (image == null || image.length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (image[i] != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the size of an image from its header without decoding the pixels
+     * @param image image's bytes of a supported type
+     * @return the size or empty {@link Optional} if the type isn't supported
+     * @throws IOException when the image is corrupted
+     */
+    static Optional<Dimension> readSize(byte[] image) throws IOException {
+        final var mediaType = detectMediaType(image);
+        if (mediaType == null) {
+            return Optional.empty();
+        }
+        final var reader = reader(mediaType);
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(image))) {
+            reader.setInput(input, true, true);
+            return Optional.of(new Dimension(reader.getWidth(0), reader.getHeight(0)));
+        } finally {
+            reader.reset();
+        }
+    }
+
+    /**
+     * Decode an image. Images at least twice as big as the target are subsampled while decoding, so they are
+     * never kept in memory at their full size, yet they are still at least twice as big as the target afterwards
+     * @param image image's bytes of a supported type
+     * @param targetWidth width the image will be scaled to, or 0 to decode it at its full size
+     * @param targetHeight height the image will be scaled to, or 0 to decode it at its full size
+     * @return the decoded image or empty {@link Optional} if the type isn't supported
+     * @throws IOException when the image is corrupted
+     */
+    static Optional<BufferedImage> decode(byte[] image, int targetWidth, int targetHeight) throws IOException {
+        final var mediaType = detectMediaType(image);
+        if (mediaType == null) {
+            return Optional.empty();
+        }
+        try (ImageInputStream input = new MemoryCacheImageInputStream(new ByteArrayInputStream(image))) {
+            return Optional.of(decode(input, mediaType, targetWidth, targetHeight));
+        }
+    }
+
+    /**
+     * Decode an image file like {@link #decode(byte[], int, int)} does, reading the file as it's decoded
+     * instead of loading its bytes into memory first
+     * @param image image's file of a supported type
+     * @param targetWidth width the image will be scaled to, or 0 to decode it at its full size
+     * @param targetHeight height the image will be scaled to, or 0 to decode it at its full size
+     * @return the decoded image or empty {@link Optional} if the type isn't supported
+     * @throws IOException when the image is corrupted or the file can't be read
+     */
+    static Optional<BufferedImage> decode(Path image, int targetWidth, int targetHeight) throws IOException {
+        final var mediaType = detectMediaType(image);
+        if (mediaType == null) {
+            return Optional.empty();
+        }
+        try (ImageInputStream input = new FileImageInputStream(image.toFile())) {
+            return Optional.of(decode(input, mediaType, targetWidth, targetHeight));
+        }
+    }
+
+    private static BufferedImage decode(ImageInputStream input, String mediaType, int targetWidth, int targetHeight) throws IOException {
+        final var reader = reader(mediaType);
+        try {
+            reader.setInput(input, true, true);
+            final var param = reader.getDefaultReadParam();
+            if (targetWidth > 0 && targetHeight > 0) {
+                final int subsampling = Math.min(reader.getWidth(0) / (2 * targetWidth), reader.getHeight(0) / (2 * targetHeight));
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+            }
+            return reader.read(0, param);
+        } finally {
+            reader.reset();
+        }
+    }
+
+    /**
+     * Encode an image with the given quality
+     * @param image decoded image
+     * @param mediaType type to encode the image to
+     * @param quality compression quality from 0 to 1, or {@literal null} for the writer's default
+     * @return encoded image's bytes
+     * @throws IOException when the image can't be encoded to the type
+     */
+    static byte[] encode(BufferedImage image, String mediaType, Float quality) throws IOException {
+        final var writer = writer(mediaType);
+        final var buffer = BUFFERS.get();
+        try {
+            try (ImageOutputStream output = new MemoryCacheImageOutputStream(buffer)) {
+                writer.setOutput(output);
+                final var param = writer.getDefaultWriteParam();
+                if (quality != null && param.canWriteCompressed()) {
+                    param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                    // writers with several compression types (e.g. lossy and lossless WebP) require choosing one
+                    if (param.getCompressionType() == null && param.getCompressionTypes() != null) {
+                        param.setCompressionType(param.getCompressionTypes()[0]);
+                    }
+                    param.setCompressionQuality(quality);
+                }
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+            return buffer.toByteArray();
+        } finally {
+            writer.reset();
+            releaseBuffer(buffer);
+        }
+    }
+
+    private static void releaseBuffer(ByteArrayOutputStream buffer) {
+        if (buffer.size() > MAX_RETAINED_BUFFER_SIZE) {
+            BUFFERS.remove();
+        } else {
+            buffer.reset();
+        }
+    }
+
+    private static ImageReader reader(String mediaType) throws IOException {
+        final var reader = READERS.get().computeIfAbsent(mediaType, type -> {
+            final var readers = ImageIO.getImageReadersByMIMEType(type);
+            return readers.hasNext() ? readers.next() : null;
+        });
+        if (reader == null) {
+            throw new IOException("No image reader for " + mediaType);
+        }
+        return reader;
+    }
+
+    private static ImageWriter writer(String mediaType) throws IOException {
+        final var writer = WRITERS.get().computeIfAbsent(mediaType, type -> {
+            final var writers = ImageIO.getImageWritersByMIMEType(type);
+            return writers.hasNext() ? writers.next() : null;
+        });
+        if (writer == null) {
+            throw new IOException("No image writer for " + mediaType);
+        }
+        return writer;
+    }
+}
@@ -0,0 +1,269 @@
+package space.obminyashka.items_exchange.service.impl;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import space.obminyashka.items_exchange.exception.ImageProcessingOverloadedException;
+import space.obminyashka.items_exchange.exception.UnsupportedMediaTypeException;
+import space.obminyashka.items_exchange.model.ImageVariant;
+import space.obminyashka.items_exchange.service.ImageProcessingService;
+import space.obminyashka.items_exchange.service.ImageService;
+import space.obminyashka.items_exchange.storage.BlobStore;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+import static space.obminyashka.items_exchange.util.MessageSourceUtil.getMessageSource;
+
+/**
+ * Processes images on a fixed pool of threads instead of request threads or the common ForkJoinPool.
+ * The amount of images being processed or waiting for it is bounded, uploads beyond the bound are rejected as a whole.
+ * Waiting images are kept in the spool directory, so the heap holds only images being processed.
+ * A file uploaded before takes the result of its previous processing instead of being processed again, it's hashed
+ * as a stream and never read into memory then.
+ * Spooled images don't outlive the application, so images left pending by a restart are eventually marked as failed
+ */
+@Slf4j
+@Service
+public class ImageProcessingServiceImpl implements ImageProcessingService {
+    private static final String STAGE_TIMER = "image.processing.stage";
+    private static final String SPOOLED_IMAGE_PREFIX = "image";
+    private static final String SPOOLED_IMAGE_SUFFIX = ".upload";
+    private static final String SPOOLED_IMAGE_GLOB = SPOOLED_IMAGE_PREFIX + "*" + SPOOLED_IMAGE_SUFFIX;
+
+    private final ImageService imageService;
+    private final BlobStore blobStore;
+    private final Path spoolDirectory;
+    private final long staleAfterMillis;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore capacity;
+    private final int maxCapacity;
+    private final Timer queueTimer;
+    private final Timer compressTimer;
+    private final Timer thumbnailTimer;
+    private final Timer renditionsTimer;
+    private final Timer variantsTimer;
+    private final Timer storeTimer;
+    private final Counter reusedCounter;
+
+    public ImageProcessingServiceImpl(ImageService imageService,
+                                      BlobStore blobStore,
+                                      MeterRegistry meterRegistry,
+                                      @Value("${app.image.processing.threads}") int threads,
+                                      @Value("${app.image.processing.queue-capacity}") int queueCapacity,
+                                      @Value("${app.image.processing.spool-directory}") Path spoolDirectory,
+                                      @Value("${app.image.processing.stale-after.ms}") long staleAfterMillis) throws IOException {
+        this.imageService = imageService;
+        this.blobStore = blobStore;
+        this.spoolDirectory = Files.createDirectories(spoolDirectory.toAbsolutePath());
+        this.staleAfterMillis = staleAfterMillis;
+        deleteOrphanedSpooled();
+        // the queue itself is unbounded, the capacity semaphore limits it instead
+        // so a whole upload is either accepted or rejected
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), new CustomizableThreadFactory("image-processing-"));
+        this.maxCapacity = threads + queueCapacity;
+        this.capacity = new Semaphore(maxCapacity);
+
+        Gauge.builder("image.processing.queue.depth", executor, e -> e.getQueue().size())
+                .description("Images waiting for a free image processing thread")
+                .register(meterRegistry);
+        Gauge.builder("image.processing.in.flight", capacity, c -> maxCapacity - c.availablePermits())
+                .description("Images accepted for processing and not yet processed")
+                .register(meterRegistry);
+        this.queueTimer = stageTimer(meterRegistry, "queue");
+        this.compressTimer = stageTimer(meterRegistry, "compress");
+        this.thumbnailTimer = stageTimer(meterRegistry, "thumbnail");
+        this.renditionsTimer = stageTimer(meterRegistry, "renditions");
+        this.variantsTimer = stageTimer(meterRegistry, "variants");
+        this.storeTimer = stageTimer(meterRegistry, "store");
+        this.reusedCounter = Counter.builder("image.processing.reused")
+                .description("Uploaded images which took the result of a previous processing of the same file")
+                .register(meterRegistry);
+    }
+
+    private static Timer stageTimer(MeterRegistry meterRegistry, String stage) {
+        return Timer.builder(STAGE_TIMER)
+                .description("Time spent by an image in a processing stage")
+                .tag("stage", stage)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public List<CompletableFuture<ProcessedImage>> submit(List<MultipartFile> images, boolean withThumbnail)
+            throws UnsupportedMediaTypeException, ImageProcessingOverloadedException, IOException {
+        imageService.validateTypes(images);
+        if (!capacity.tryAcquire(images.size())) {
+            throw new ImageProcessingOverloadedException(getMessageSource("image.processing.overloaded"));
+        }
+        // multipart files are gone when the request completes, so they are moved to the spool directory
+        // and read one by one by processing threads, instead of keeping the whole upload in memory
+        final List<Path> spooledImages;
+        try {
+            spooledImages = spool(images);
+        } catch (IOException e) {
+            capacity.release(images.size());
+            throw e;
+        }
+        final List<CompletableFuture<ProcessedImage>> processing = new ArrayList<>(spooledImages.size());
+        for (int i = 0; i < spooledImages.size(); i++) {
+            final var spooledImage = spooledImages.get(i);
+            final var makeThumbnail = withThumbnail && i == 0;
+            final var submitted = System.nanoTime();
+            final var imageProcessing = new CompletableFuture<ProcessedImage>();
+            executor.execute(() -> {
+                if (imageProcessing.isCancelled()) {
+                    discard(spooledImage);
+                    return;
+                }
+                try {
+                    imageProcessing.complete(process(spooledImage, makeThumbnail, submitted));
+                } catch (Throwable e) {
+                    imageProcessing.completeExceptionally(e);
+                }
+            });
+            processing.add(imageProcessing);
+        }
+        return processing;
+    }
+
+    @Override
+    public void cancel(List<CompletableFuture<ProcessedImage>> processing) {
+        processing.forEach(imageProcessing -> imageProcessing.cancel(false));
+    }
+
+    private List<Path> spool(List<MultipartFile> images) throws IOException {
+        final List<Path> spooledImages = new ArrayList<>(images.size());
+        try {
+            for (MultipartFile image : images) {
+                final var spooledImage = Files.createTempFile(spoolDirectory, SPOOLED_IMAGE_PREFIX, SPOOLED_IMAGE_SUFFIX);
+                spooledImages.add(spooledImage);
+                image.transferTo(spooledImage);
+            }
+            return spooledImages;
+        } catch (IOException e) {
+            spooledImages.forEach(this::deleteSpooled);
+            throw e;
+        }
+    }
+
+    private ProcessedImage process(Path spooledImage, boolean makeThumbnail, long submitted) {
+        try {
+            queueTimer.record(System.nanoTime() - submitted, TimeUnit.NANOSECONDS);
+            final var uploadHash = hashSpooled(spooledImage);
+            final var processedBefore = imageService.findProcessed(uploadHash);
+            if (processedBefore.isPresent()) {
+                reusedCounter.increment();
+                final var previous = processedBefore.get();
+                final byte[] thumbnail = makeThumbnail ? thumbnailTimer.record(() -> imageService.scale(previous.image())) : null;
+                return new ProcessedImage(previous.image(), thumbnail, previous.renditions(), previous.variants(), uploadHash);
+            }
+            // the spooled file is decoded as it's read, so only the compressed image is held in memory besides the raster
+            final byte[] compressed = compressTimer.record(() -> imageService.compress(spooledImage));
+            final byte[] thumbnail = makeThumbnail ? thumbnailTimer.record(() -> imageService.scale(compressed)) : null;
+            final Map<Integer, byte[]> renditions = renditionsTimer.record(() -> imageService.makeRenditions(compressed));
+            final Map<Integer, Map<String, byte[]>> variants = variantsTimer.record(() -> makeVariants(compressed, renditions));
+            return new ProcessedImage(compressed, thumbnail, renditions, variants, uploadHash);
+        } finally {
+            discard(spooledImage);
+        }
+    }
+
+    private void discard(Path spooledImage) {
+        deleteSpooled(spooledImage);
+        capacity.release();
+    }
+
+    private String hashSpooled(Path spooledImage) {
+        try (InputStream content = Files.newInputStream(spooledImage)) {
+            return blobStore.keyOf(content);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the spooled image " + spooledImage, e);
+        }
+    }
+
+    private void deleteOrphanedSpooled() throws IOException {
+        // images spooled before a restart are never processed, their pending images are failed by the stale check.
+        // Recent files may belong to another instance sharing the directory, so only files as old as stale images are deleted
+        final var staleBefore = System.currentTimeMillis() - staleAfterMillis;
+        int deleted = 0;
+        try (var spooledImages = Files.newDirectoryStream(spoolDirectory, SPOOLED_IMAGE_GLOB)) {
+            for (Path spooledImage : spooledImages) {
+                if (Files.getLastModifiedTime(spooledImage).toMillis() < staleBefore && Files.deleteIfExists(spooledImage)) {
+                    deleted++;
+                }
+            }
+        }
+        if (deleted > 0) {
+            log.info("{} orphaned spooled images are deleted from {}", deleted, spoolDirectory);
+        }
+    }
+
+    private void deleteSpooled(Path spooledImage) {
+        try {
+            Files.deleteIfExists(spooledImage);
+        } catch (IOException e) {
+            log.warn("Unable to delete the spooled image {}", spooledImage, e);
+        }
+    }
+
+    private Map<Integer, Map<String, byte[]>> makeVariants(byte[] image, Map<Integer, byte[]> renditions) {
+        final Map<Integer, Map<String, byte[]>> variants = new HashMap<>();
+        final var fullSizeVariants = imageService.makeVariants(image);
+        variants.put(ImageVariant.FULL_SIZE, fullSizeVariants);
+        // images narrower than a rendition are the rendition themselves, so they aren't encoded twice
+        renditions.forEach((width, rendition) ->
+                variants.put(width, rendition == image ? fullSizeVariants : imageService.makeVariants(rendition)));
+        return variants;
+    }
+
+    @Override
+    public void completeWhenProcessed(List<Long> pendingImageIds, List<CompletableFuture<ProcessedImage>> processing) {
+        for (int i = 0; i < processing.size(); i++) {
+            final long imageId = pendingImageIds.get(i);
+            processing.get(i).whenComplete((processed, ex) -> {
+                try {
+                    if (ex != null) {
+                        log.warn("Image {} processing failed", imageId, ex);
+                        imageService.failProcessing(imageId);
+                    } else {
+                        storeTimer.record(() -> imageService.completeProcessing(imageId, processed));
+                    }
+                } catch (RuntimeException e) {
+                    log.error("Unable to store the result of image {} processing", imageId, e);
+                }
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.image.processing.stale-check.ms}")
+    public void failStaleProcessing() {
+        final var failed = imageService.failStaleProcessing(LocalDateTime.now().minus(staleAfterMillis, ChronoUnit.MILLIS));
+        if (failed > 0) {
+            log.warn("{} images pending for longer than {} ms are marked as failed", failed, staleAfterMillis);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,115 @@
+package space.obminyashka.items_exchange.service.impl;
+
+import lombok.experimental.UtilityClass;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+/**
+ * Downscales images into {@link BufferedImage#TYPE_INT_RGB} or {@link BufferedImage#TYPE_INT_ARGB} rasters,
+ * which Java2D scales with its native loops.
+ * Progressive algorithms halve the image until it is less than twice as big as the target, since a single
+ * bilinear or bicubic step skips source pixels and produces aliasing on big reductions
+ */
+@UtilityClass
+class ImageScaler {
+
+    enum Algorithm {
+        /**
+         * Halving steps with bilinear interpolation, the fastest one with a quality close to area averaging
+         */
+        PROGRESSIVE_BILINEAR(RenderingHints.VALUE_INTERPOLATION_BILINEAR),
+        /**
+         * Halving steps with bicubic interpolation, sharper than bilinear and several times slower
+         */
+        PROGRESSIVE_BICUBIC(RenderingHints.VALUE_INTERPOLATION_BICUBIC),
+        /**
+         * Area averaging of {@link java.awt.Image#SCALE_SMOOTH}, the slowest one
+         */
+        AREA_AVERAGING(null);
+
+        private final Object interpolation;
+
+        Algorithm(Object interpolation) {
+            this.interpolation = interpolation;
+        }
+    }
+
+    /**
+     * Calculate the size of an image downscaled to the target width, keeping its aspect ratio
+     * @param source size of the image
+     * @param width target width
+     * @return the downscaled size with the height rounded to the nearest pixel but not less than one,
+     * or the size of the image itself when it isn't wider than the target, since images are never upscaled
+     */
+    static Dimension fitToWidth(Dimension source, int width) {
+        if (source.width <= width) {
+            return new Dimension(source);
+        }
+        return new Dimension(width, roundSide(source.height, (double) width / source.width));
+    }
+
+    /**
+     * Calculate the size of an image downscaled to cover a square with the target edge, keeping its aspect ratio
+     * @param source size of the image
+     * @param edge target edge
+     * @return the downscaled size with the shorter side equal to the edge and the longer one rounded to the nearest pixel,
+     * or the size of the image itself when its shorter side isn't longer than the edge, since images are never upscaled
+     */
+    static Dimension coverEdge(Dimension source, int edge) {
+        final double ratio = Math.max((double) edge / source.width, (double) edge / source.height);
+        if (ratio >= 1) {
+            return new Dimension(source);
+        }
+        // a side equal to the edge is set exactly, floating point multiplication may make it one pixel shorter
+        final int width = source.width <= source.height ? edge : roundSide(source.width, ratio);
+        final int height = source.width <= source.height ? roundSide(source.height, ratio) : edge;
+        return new Dimension(width, height);
+    }
+
+    private static int roundSide(int side, double ratio) {
+        return (int) Math.max(1, Math.round(side * ratio));
+    }
+
+    /**
+     * Scale an image to the exact size
+     * @param source image to scale
+     * @param width target width
+     * @param height target height
+     * @param algorithm scaling algorithm
+     * @return scaled image, keeping the transparency of the source if it has one
+     */
+    static BufferedImage scale(BufferedImage source, int width, int height, Algorithm algorithm) {
+        final int imageType = source.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        if (algorithm == Algorithm.AREA_AVERAGING) {
+            return draw(source.getScaledInstance(width, height, java.awt.Image.SCALE_SMOOTH), width, height, imageType, null);
+        }
+
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        while (currentWidth >= width * 2 && currentHeight >= height * 2) {
+            currentWidth /= 2;
+            currentHeight /= 2;
+            current = draw(current, currentWidth, currentHeight, imageType, algorithm.interpolation);
+        }
+        if (currentWidth == width && currentHeight == height && current.getType() == imageType) {
+            return current;
+        }
+        return draw(current, width, height, imageType, algorithm.interpolation);
+    }
+
+    private static BufferedImage draw(java.awt.Image source, int width, int height, int imageType, Object interpolation) {
+        final var target = new BufferedImage(width, height, imageType);
+        final var graphics = target.createGraphics();
+        try {
+            if (interpolation != null) {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, interpolation);
+            }
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+}
@@ -3,73 +3,192 @@ package space.obminyashka.items_exchange.service.impl;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
-import org.modelmapper.ModelMapper;
-import org.modelmapper.TypeToken;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import space.obminyashka.items_exchange.dao.ImageRepository;
 import space.obminyashka.items_exchange.dto.ImageDto;
+import space.obminyashka.items_exchange.dto.ImageStatusDto;
 import space.obminyashka.items_exchange.exception.UnsupportedMediaTypeException;
 import space.obminyashka.items_exchange.model.Advertisement;
 import space.obminyashka.items_exchange.model.Image;
+import space.obminyashka.items_exchange.model.ImageVariant;
+import space.obminyashka.items_exchange.model.enums.AdvertisementEventType;
+import space.obminyashka.items_exchange.model.enums.ImageStatus;
+import space.obminyashka.items_exchange.service.AdvertisementEventService;
+import space.obminyashka.items_exchange.service.ImageEncoder;
+import space.obminyashka.items_exchange.service.ImageProcessingService;
 import space.obminyashka.items_exchange.service.ImageService;
 import space.obminyashka.items_exchange.service.SupportedMediaTypes;
+import space.obminyashka.items_exchange.storage.BlobReference;
+import space.obminyashka.items_exchange.storage.BlobReferenceCounter;
+import space.obminyashka.items_exchange.storage.BlobStore;
+import space.obminyashka.items_exchange.storage.StoredBlob;
 
-import javax.imageio.IIOImage;
-import javax.imageio.ImageIO;
-import javax.imageio.ImageWriteParam;
-import javax.imageio.ImageWriter;
-import javax.imageio.stream.ImageOutputStream;
 import javax.transaction.Transactional;
-import java.awt.*;
+import java.awt.Dimension;
 import java.awt.image.BufferedImage;
-import java.io.*;
-import java.net.URLConnection;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
-
-import static java.awt.Image.SCALE_REPLICATE;
-import static java.awt.Image.SCALE_SMOOTH;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 @Transactional
 @RequiredArgsConstructor
 public class ImageServiceImpl implements ImageService {
-    private final ModelMapper modelMapper;
     private final ImageRepository imageRepository;
+    private final AdvertisementEventService advertisementEventService;
+    private final BlobStore blobStore;
+    private final BlobReferenceCounter blobReferenceCounter;
+    private final List<ImageEncoder> imageEncoders;
     private final Set<String> supportedTypes = Arrays.stream(SupportedMediaTypes.values())
             .map(SupportedMediaTypes::getMediaType)
             .collect(Collectors.toSet());
+    private static final int MIN_BYTE_BUDGET = 4 * 1024;
     @Value("${app.image.thumbnail.edge.px}")
     private int thumbnailEdge;
+    @Value("${app.image.rendition.widths}")
+    private List<Integer> renditionWidths;
+    @Value("${app.image.scaling.algorithm}")
+    private ImageScaler.Algorithm scalingAlgorithm;
+    @Value("${app.image.compression.byte-budget}")
+    private int byteBudget;
+    @Value("${app.image.variants.media-types}")
+    private List<String> variantMediaTypes;
 
     @Override
     public List<byte[]> getImagesResourceByAdvertisementId(long advertisementId) {
         return imageRepository.findByAdvertisementId(advertisementId).stream()
+                .filter(isReady())
                 .map(Image::getResource)
+                .map(blobStore::read)
                 .toList();
     }
 
     @Override
     public List<ImageDto> getByAdvertisementId(long advertisementId) {
-        return mapImagesToDto(imageRepository.findByAdvertisementId(advertisementId));
+        return mapImagesToDto(imageRepository.findByAdvertisementId(advertisementId).stream()
+                .filter(isReady())
+                .toList());
+    }
+
+    @Override
+    public List<byte[]> getImagesResourceByAdvertisementId(long advertisementId, Integer width) {
+        final var renditionWidth = selectRenditionWidth(width);
+        if (renditionWidth.isEmpty()) {
+            return getImagesResourceByAdvertisementId(advertisementId);
+        }
+        return imageRepository.findIdsByAdvertisementIdAndStatus(advertisementId, ImageStatus.READY).stream()
+                .map(imageId -> findRenditionKey(advertisementId, imageId, renditionWidth.get()))
+                .flatMap(Optional::stream)
+                .map(blobStore::get)
+                .flatMap(Optional::stream)
+                .toList();
     }
 
-    private List<ImageDto> mapImagesToDto(Iterable<Image> images) {
-        return modelMapper.map(images, new TypeToken<List<ImageDto>>() {}.getType());
+    private Predicate<Image> isReady() {
+        return image -> image.getStatus() == ImageStatus.READY;
+    }
+
+    @Override
+    public Optional<StoredBlob> findResource(long advertisementId, long imageId) {
+        return imageRepository.findStoredResource(imageId, advertisementId)
+                .filter(storedValue -> storedValue.length > 0)
+                .flatMap(this::findStoredBlob);
+    }
+
+    private Optional<StoredBlob> findStoredBlob(byte[] storedValue) {
+        // images stored inline before the blob store are served from the row until BlobMigrationJob moves them
+        return BlobReference.keyOf(storedValue)
+                .map(blobStore::find)
+                .orElseGet(() -> Optional.of(new StoredBlob(blobStore.keyOf(storedValue), new ByteArrayResource(storedValue))));
+    }
+
+    @Override
+    public Optional<StoredBlob> findResource(long advertisementId, long imageId, Integer width) {
+        final var renditionWidth = selectRenditionWidth(width);
+        if (renditionWidth.isEmpty()) {
+            return findResource(advertisementId, imageId);
+        }
+        return findRenditionKey(advertisementId, imageId, renditionWidth.get())
+                .flatMap(blobStore::find);
+    }
+
+    @Override
+    public Optional<StoredBlob> findResource(long advertisementId, long imageId, Integer width, List<MediaType> acceptedTypes) {
+        final int storedWidth = selectRenditionWidth(width).orElse(ImageVariant.FULL_SIZE);
+        return variantMediaTypes.stream()
+                .filter(variantType -> isExplicitlyAccepted(variantType, acceptedTypes))
+                .map(variantType -> imageRepository.findVariantKey(imageId, advertisementId, storedWidth, variantType))
+                .flatMap(Optional::stream)
+                .findFirst()
+                .flatMap(blobStore::find)
+                .or(() -> findResource(advertisementId, imageId, width));
+    }
+
+    private boolean isExplicitlyAccepted(String mediaType, List<MediaType> acceptedTypes) {
+        // clients which can't decode modern formats send wildcards as well, so only explicitly listed types count
+        final var type = MediaType.parseMediaType(mediaType);
+        return acceptedTypes.stream()
+                .anyMatch(accepted -> accepted.equalsTypeAndSubtype(type) && accepted.getQualityValue() > 0);
+    }
+
+    private Optional<Integer> selectRenditionWidth(Integer requestedWidth) {
+        if (requestedWidth == null) {
+            return Optional.empty();
+        }
+        return renditionWidths.stream()
+                .filter(renditionWidth -> renditionWidth >= requestedWidth)
+                .min(Comparator.naturalOrder());
+    }
+
+    private Optional<String> findRenditionKey(long advertisementId, long imageId, int width) {
+        return imageRepository.findRenditionKey(imageId, advertisementId, width)
+                // images uploaded before renditions were introduced get them on the first request
+                .or(() -> imageRepository.findStoredResource(imageId, advertisementId)
+                        .map(blobStore::read)
+                        .filter(original -> original.length > 0)
+                        .map(original -> storeRendition(advertisementId, imageId, width, resize(original, width))));
+    }
+
+    private String storeRendition(long advertisementId, long imageId, int width, byte[] rendition) {
+        final var key = blobStore.keyOf(rendition);
+        blobReferenceCounter.acquire(key, rendition.length);
+        blobStore.put(rendition);
+        if (imageRepository.saveRenditionIfAbsent(imageId, width, key)) {
+            return key;
+        }
+        // a concurrent request stored the rendition first, releasing the reference deletes this copy unless it's the same blob
+        final var storedKey = imageRepository.findRenditionKey(imageId, advertisementId, width);
+        blobReferenceCounter.release(key);
+        return storedKey.orElse(key);
+    }
+
+    private List<ImageDto> mapImagesToDto(List<Image> images) {
+        return images.stream()
+                .map(image -> new ImageDto(image.getId(), blobStore.read(image.getResource())))
+                .toList();
     }
 
     @Override
     public List<byte[]> compress(List<MultipartFile> images) throws UnsupportedMediaTypeException {
-        validateImagesTypes(images);
+        validateTypes(images);
 
         List<byte[]> compressedImages = new ArrayList<>();
         for (MultipartFile photo : images) {
@@ -81,35 +200,95 @@ public class ImageServiceImpl implements ImageService {
     @SneakyThrows({IOException.class, UnsupportedMediaTypeException.class})
     @Override
     public byte[] compress(MultipartFile image) {
-        validateImagesTypes(List.of(image));
+        validateTypes(List.of(image));
+        return compress(image.getBytes());
+    }
+
+    @SneakyThrows(IOException.class)
+    @Override
+    public byte[] compress(byte[] image) {
+        // Getting original file's type from its content instead of the file's name type
+        final var mediaType = ImageCodec.detectMediaType(image);
+        if (mediaType == null || mediaType.equals(MediaType.IMAGE_GIF_VALUE)) {
+            return image;
+        }
+        final var decodedImage = ImageCodec.decode(image, 0, 0).orElseThrow();
+        final var compressed = getEncoder(mediaType).encode(decodedImage, byteBudget);
+        return compressed.length < image.length ? compressed : image;
+    }
 
-        try (InputStream is = new BufferedInputStream(image.getInputStream());
-             ByteArrayOutputStream baos = new ByteArrayOutputStream();
-             BufferedOutputStream bos = new BufferedOutputStream(baos);
-             ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+    @SneakyThrows(IOException.class)
+    @Override
+    public byte[] compress(Path image) {
+        final var mediaType = ImageCodec.detectMediaType(image);
+        if (mediaType == null || mediaType.equals(MediaType.IMAGE_GIF_VALUE)) {
+            return Files.readAllBytes(image);
+        }
+        final var decodedImage = ImageCodec.decode(image, 0, 0).orElseThrow();
+        final var compressed = getEncoder(mediaType).encode(decodedImage, byteBudget);
+        return compressed.length < Files.size(image) ? compressed : Files.readAllBytes(image);
+    }
 
-            // Getting original file's type from stream instead of the file's name type
-            final var contentType = URLConnection.guessContentTypeFromStream(is);
-            if (contentType == null || contentType.equals(MediaType.IMAGE_GIF_VALUE)) {
-                return image.getBytes();
-            }
+    private ImageEncoder getEncoder(String mediaType) throws IOException {
+        return findEncoder(mediaType).orElseThrow(() -> new IOException("No available image encoder for " + mediaType));
+    }
 
-            ImageWriter writer = ImageIO.getImageWritersByMIMEType(contentType).next();
-            writer.setOutput(ios);
-            ImageWriteParam param = writer.getDefaultWriteParam();
+    private Optional<ImageEncoder> findEncoder(String mediaType) {
+        return imageEncoders.stream()
+                .filter(encoder -> encoder.getMediaType().equals(mediaType))
+                .filter(ImageEncoder::isAvailable)
+                .findFirst();
+    }
 
-            if (param.canWriteCompressed()) {
-                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-                float quality = 0.30f; //percents
-                param.setCompressionQuality(quality);
-            }
+    @Override
+    public Map<Integer, byte[]> makeRenditions(byte[] image) {
+        final Map<Integer, byte[]> renditions = new HashMap<>();
+        renditionWidths.forEach(width -> renditions.put(width, resize(image, width)));
+        return renditions;
+    }
 
-            BufferedImage bufferedImage = ImageIO.read(image.getInputStream());
-            writer.write(null, new IIOImage(bufferedImage, null, null), param);
-            writer.dispose();
+    private byte[] resize(byte[] bytes, int width) {
+        try {
+            final var mediaType = ImageCodec.detectMediaType(bytes);
+            final var originSize = ImageCodec.readSize(bytes);
+            if (originSize.isEmpty() || originSize.get().width <= width) {
+                return bytes;
+            }
+            final int height = ImageScaler.fitToWidth(originSize.get(), width).height;
+            BufferedImage originImage = ImageCodec.decode(bytes, width, height).orElseThrow();
+            BufferedImage resizedImage = ImageScaler.scale(originImage, width, height, scalingAlgorithm);
+            // the budget is shared out by the area, so renditions keep the same quality as the full size image
+            long areaBudget = (long) byteBudget * width * height / ((long) originSize.get().width * originSize.get().height);
+            return getEncoder(mediaType).encode(resizedImage, (int) Math.max(MIN_BYTE_BUDGET, areaBudget));
+        } catch (IOException e) {
+            log.error("An error occurred while resize an image to {}px width", width, e);
+            return bytes;
+        }
+    }
 
-            return baos.toByteArray();
+    @Override
+    public Map<String, byte[]> makeVariants(byte[] image) {
+        final Map<String, byte[]> variants = new HashMap<>();
+        final var mediaType = ImageCodec.detectMediaType(image);
+        if (mediaType == null || mediaType.equals(MediaType.IMAGE_GIF_VALUE)) {
+            return variants;
+        }
+        try {
+            final var decodedImage = ImageCodec.decode(image, 0, 0).orElseThrow();
+            for (String variantType : variantMediaTypes) {
+                final var encoder = findEncoder(variantType);
+                if (encoder.isEmpty() || variantType.equals(mediaType)) {
+                    continue;
+                }
+                final var encoded = encoder.get().encode(decodedImage, image.length);
+                if (encoded.length < image.length) {
+                    variants.put(variantType, encoded);
+                }
+            }
+        } catch (IOException e) {
+            log.error("An error occurred while encoding variants of an image", e);
         }
+        return variants;
     }
 
     @Override
@@ -118,16 +297,97 @@ public class ImageServiceImpl implements ImageService {
                 .map(populateNewImage(advertisement))
                 .toList();
         imageRepository.saveAll(imagesToSave);
+        advertisementEventService.publish(advertisement.getId(), AdvertisementEventType.IMAGES_CHANGED);
     }
 
     @Override
     public void saveToAdvertisement(Advertisement advertisement, byte[] image) {
         Image toSave = populateNewImage(advertisement).apply(image);
         imageRepository.save(toSave);
+        advertisementEventService.publish(advertisement.getId(), AdvertisementEventType.IMAGES_CHANGED);
     }
 
     private Function<byte[], Image> populateNewImage(Advertisement ownerAdvertisement) {
-        return bytes -> new Image(0, bytes, ownerAdvertisement);
+        return bytes -> new Image(0, countReference(bytes), ownerAdvertisement);
+    }
+
+    private byte[] countReference(byte[] content) {
+        // the content itself is put into the blob store on flush by the converter
+        if (content.length > 0) {
+            blobReferenceCounter.acquire(blobStore.keyOf(content), content.length);
+        }
+        return content;
+    }
+
+    private String storeCounted(byte[] content) {
+        // counted before it's put, so a concurrent release of the last reference to identical content can't delete it
+        final var key = blobStore.keyOf(content);
+        blobReferenceCounter.acquire(key, content.length);
+        blobStore.put(content);
+        return key;
+    }
+
+    @Override
+    public List<Long> savePendingToAdvertisement(Advertisement advertisement, int amount) {
+        final var pendingImages = Stream.generate(() -> Image.pending(advertisement))
+                .limit(amount)
+                .toList();
+        return imageRepository.saveAll(pendingImages).stream()
+                .map(Image::getId)
+                .toList();
+    }
+
+    @Override
+    public void completeProcessing(long imageId, ImageProcessingService.ProcessedImage processed) {
+        imageRepository.findById(imageId).ifPresentOrElse(pendingImage -> {
+            pendingImage.setResource(countReference(processed.image()));
+            pendingImage.setUploadHash(processed.uploadHash());
+            pendingImage.setStatus(ImageStatus.READY);
+            processed.renditions().forEach((width, rendition) -> pendingImage.getRenditions().put(width, storeCounted(rendition)));
+            processed.variants().forEach((width, encodings) -> encodings.forEach((mediaType, encoding) ->
+                    pendingImage.getVariants().add(new ImageVariant(width, mediaType, storeCounted(encoding)))));
+            final var advertisement = pendingImage.getAdvertisement();
+            if (processed.thumbnail() != null) {
+                advertisement.updateThumbnail(processed.thumbnail());
+            }
+            advertisementEventService.publish(advertisement.getId(), AdvertisementEventType.IMAGES_CHANGED);
+        }, () -> log.info("Image {} was removed before its processing completed", imageId));
+    }
+
+    @Override
+    public Optional<ImageProcessingService.ProcessedImage> findProcessed(String uploadHash) {
+        return imageRepository.findFirstByUploadHashAndStatus(uploadHash, ImageStatus.READY)
+                .filter(image -> image.getResource().length > 0)
+                .map(image -> new ImageProcessingService.ProcessedImage(blobStore.read(image.getResource()), null,
+                        readBlobs(image.getRenditions()), readVariants(image.getVariants()), uploadHash));
+    }
+
+    private Map<Integer, byte[]> readBlobs(Map<Integer, String> keysByWidth) {
+        final Map<Integer, byte[]> blobs = new HashMap<>();
+        keysByWidth.forEach((width, key) -> blobStore.get(key).ifPresent(blob -> blobs.put(width, blob)));
+        return blobs;
+    }
+
+    private Map<Integer, Map<String, byte[]>> readVariants(Set<ImageVariant> variants) {
+        final Map<Integer, Map<String, byte[]>> encodings = new HashMap<>();
+        variants.forEach(variant -> blobStore.get(variant.getBlobKey()).ifPresent(encoding ->
+                encodings.computeIfAbsent(variant.getWidth(), width -> new HashMap<>()).put(variant.getMediaType(), encoding)));
+        return encodings;
+    }
+
+    @Override
+    public void failProcessing(long imageId) {
+        imageRepository.findById(imageId).ifPresent(pendingImage -> pendingImage.setStatus(ImageStatus.FAILED));
+    }
+
+    @Override
+    public int failStaleProcessing(LocalDateTime pendingBefore) {
+        return imageRepository.updateStatusOfCreatedBefore(ImageStatus.PENDING, ImageStatus.FAILED, pendingBefore);
+    }
+
+    @Override
+    public List<ImageStatusDto> getStatuses(long advertisementId) {
+        return imageRepository.findStatusesByAdvertisementId(advertisementId);
     }
 
     @Override
@@ -137,15 +397,20 @@ public class ImageServiceImpl implements ImageService {
 
     @Override
     public void removeById(List<Long> imageIdList) {
-        imageRepository.deleteAllByIdIn(imageIdList);
+        imageRepository.deleteAllByIdIn(imageIdList).stream()
+                .map(Image::getAdvertisement)
+                .map(Advertisement::getId)
+                .distinct()
+                .forEach(advertisementId -> advertisementEventService.publish(advertisementId, AdvertisementEventType.IMAGES_CHANGED));
     }
 
     @Override
     public void removeById(long imageId) {
-        imageRepository.deleteById(imageId);
+        removeById(List.of(imageId));
     }
 
-    private void validateImagesTypes(List<MultipartFile> images) throws UnsupportedMediaTypeException {
+    @Override
+    public void validateTypes(List<MultipartFile> images) throws UnsupportedMediaTypeException {
         final Set<String> unsupportedTypes = findUnsupportedType(images);
         if (!unsupportedTypes.isEmpty()) {
             throw new UnsupportedMediaTypeException("Received unsupported image types: " + String.join(" ,", unsupportedTypes));
@@ -161,18 +426,19 @@ public class ImageServiceImpl implements ImageService {
 
     @Override
     public byte[] scale(byte[] bytes) {
-        try (ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
-             ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-
-            BufferedImage originImage = ImageIO.read(bais);
-            if (originImage != null) {
-                Dimension newSize = calculatePreferThumbnailSize(
-                        new Dimension(originImage.getWidth(), originImage.getHeight()));
-                BufferedImage scaledImage = getScaled(newSize, originImage);
-                String type = URLConnection.guessContentTypeFromStream(new ByteArrayInputStream(bytes)).replace("image/", "");
-                ImageIO.write(scaledImage, type, baos);
+        try {
+            final var mediaType = ImageCodec.detectMediaType(bytes);
+            final var originImage = ImageCodec.decode(bytes, thumbnailEdge, thumbnailEdge);
+            if (originImage.isEmpty()) {
+                return new byte[0];
             }
-            return baos.toByteArray();
+            Dimension newSize = ImageScaler.coverEdge(
+                    new Dimension(originImage.get().getWidth(), originImage.get().getHeight()), thumbnailEdge);
+            BufferedImage scaledImage = ImageScaler.scale(originImage.get(), newSize.width, newSize.height, scalingAlgorithm);
+            final var scaled = ImageCodec.encode(scaledImage, mediaType, null);
+            // re-encoding without the source's settings, e.g. its palette, may make an image which is already small
+            // bigger, so the smaller one is kept as on compression
+            return scaled.length < bytes.length ? scaled : bytes;
         } catch (IOException e) {
             log.error("An error occurred while scale an image", e);
             return bytes;
@@ -183,18 +449,4 @@ public class ImageServiceImpl implements ImageService {
     public int countImagesForAdvertisement(long id) {
         return imageRepository.countImageByAdvertisement_Id(id);
     }
-
-    private BufferedImage getScaled(Dimension d, BufferedImage originImage) {
-        java.awt.Image scaledInstance = originImage.getScaledInstance(d.width, d.height, SCALE_SMOOTH);
-        BufferedImage resizedImage = new BufferedImage(d.width, d.height, SCALE_REPLICATE);
-        resizedImage.getGraphics().drawImage(scaledInstance, 0, 0, d.width, d.height, Color.WHITE, null);
-        return resizedImage;
-    }
-
-    private Dimension calculatePreferThumbnailSize(Dimension origin) {
-        double tumbWidth = 1.0 * thumbnailEdge / origin.width;
-        double tumbHeight = 1.0 * thumbnailEdge / origin.height;
-        double ratio = Math.max(tumbWidth, tumbHeight);
-        return new Dimension((int) (origin.width * ratio), (int) (origin.height * ratio));
-    }
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package space.obminyashka.items_exchange.service.impl;
+
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+@Component
+public class JpegImageEncoder extends LossyImageEncoder {
+
+    @Override
+    public String getMediaType() {
+        return MediaType.IMAGE_JPEG_VALUE;
+    }
+}
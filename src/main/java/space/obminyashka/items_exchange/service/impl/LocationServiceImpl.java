@@ -49,7 +49,7 @@ public class LocationServiceImpl implements LocationService {
 
     @Override
     public List<LocationDto> findAllForCurrentLanguage(Locale lang) {
-        return new ArrayList<>(convertAllTo(locationRepository.findByI18nIgnoreCase(lang.getLanguage()), LocationDto.class, ArrayList::new));
+        return new ArrayList<>(convertAllTo(locationRepository.findByI18n(lang.getLanguage().toUpperCase(Locale.ROOT)), LocationDto.class, ArrayList::new));
     }
 
     @Override
@@ -0,0 +1,54 @@
+package space.obminyashka.items_exchange.service.impl;
+
+import space.obminyashka.items_exchange.service.ImageEncoder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Encodes images through an ImageIO writer with the highest quality whose result fits the byte budget.
+ * The quality is searched by bisection between the bounds, the lower bound is used when nothing fits.
+ * An image is encoded six times at most: at both bounds and on every search step. The search stops
+ * as soon as an encoding fills the budget closely enough, since further steps change the size by a few percent only.
+ * Encoding runs on the bounded image processing pool and is measured by its stage timers, so the worst case delays
+ * processing of queued images without blocking requests
+ */
+abstract class LossyImageEncoder implements ImageEncoder {
+
+    private static final float MIN_QUALITY = 0.30f;
+    private static final float MAX_QUALITY = 0.90f;
+    private static final int SEARCH_STEPS = 4;
+    private static final double CLOSE_ENOUGH_BUDGET_SHARE = 0.90;
+
+    @Override
+    public boolean isAvailable() {
+        return ImageIO.getImageWritersByMIMEType(getMediaType()).hasNext();
+    }
+
+    @Override
+    public byte[] encode(BufferedImage image, int byteBudget) throws IOException {
+        final byte[] bestQuality = ImageCodec.encode(image, getMediaType(), MAX_QUALITY);
+        if (bestQuality.length <= byteBudget) {
+            return bestQuality;
+        }
+        byte[] fitting = ImageCodec.encode(image, getMediaType(), MIN_QUALITY);
+        if (fitting.length > byteBudget) {
+            return fitting;
+        }
+        float low = MIN_QUALITY;
+        float high = MAX_QUALITY;
+        final long closeEnough = (long) (byteBudget * CLOSE_ENOUGH_BUDGET_SHARE);
+        for (int i = 0; i < SEARCH_STEPS && fitting.length < closeEnough; i++) {
+            final float quality = (low + high) / 2;
+            final byte[] encoded = ImageCodec.encode(image, getMediaType(), quality);
+            if (encoded.length <= byteBudget) {
+                fitting = encoded;
+                low = quality;
+            } else {
+                high = quality;
+            }
+        }
+        return fitting;
+    }
+}
@@ -0,0 +1,33 @@
+package space.obminyashka.items_exchange.service.impl;
+
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import space.obminyashka.items_exchange.service.ImageEncoder;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * Encodes PNG images with the strongest deflate compression, PNG is lossless so the byte budget isn't applied
+ */
+@Component
+public class PngImageEncoder implements ImageEncoder {
+
+    // for the PNG writer the quality is the inverse of the deflate level
+    private static final float DEFLATE_QUALITY = 0.30f;
+
+    @Override
+    public String getMediaType() {
+        return MediaType.IMAGE_PNG_VALUE;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public byte[] encode(BufferedImage image, int byteBudget) throws IOException {
+        return ImageCodec.encode(image, getMediaType(), DEFLATE_QUALITY);
+    }
+}
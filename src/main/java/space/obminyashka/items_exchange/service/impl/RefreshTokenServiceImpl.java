@@ -1,35 +1,49 @@
 package space.obminyashka.items_exchange.service.impl;
 
 import lombok.RequiredArgsConstructor;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import space.obminyashka.items_exchange.authorization.jwt.JwtTokenProvider;
 import space.obminyashka.items_exchange.dao.RefreshTokenRepository;
+import space.obminyashka.items_exchange.dao.UserRepository;
 import space.obminyashka.items_exchange.model.RefreshToken;
+import space.obminyashka.items_exchange.model.User;
 import space.obminyashka.items_exchange.service.RefreshTokenService;
-import space.obminyashka.items_exchange.service.UserService;
+import space.obminyashka.items_exchange.util.Sha256Util;
 
 import javax.transaction.Transactional;
 import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
-import java.util.function.Predicate;
-
-import static space.obminyashka.items_exchange.util.MessageSourceUtil.getMessageSource;
 
+/**
+ * Keeps SHA-256 hashes of refresh tokens only, so tokens can't be taken from the database.
+ * Every renewal replaces the token with a new one, the replaced token is remembered to detect its reuse
+ */
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class RefreshTokenServiceImpl implements RefreshTokenService {
 
     private final JwtTokenProvider jwtTokenProvider;
     private final RefreshTokenRepository refreshTokenRepository;
-    private final UserService userService;
+    private final UserRepository userRepository;
+
+    @Value("${app.refresh.jwt.cleanup.batch-size}")
+    private int cleanupBatchSize;
 
     @Override
-    public RefreshToken createRefreshToken(String username) {
-        final var user = userService.findByUsernameOrEmail(username)
-                .orElseThrow(() -> new UsernameNotFoundException(getMessageSource("exception.user.not-found")));
-        return refreshTokenRepository.save(new RefreshToken(user, jwtTokenProvider.generateRefreshToken(username),
+    public String createRefreshToken(long userId) {
+        final var token = jwtTokenProvider.generateRefreshToken();
+        // the token needs the user's ID only, so the user is referenced instead of being read
+        refreshTokenRepository.save(new RefreshToken(userRepository.getById(userId), hash(token),
                 jwtTokenProvider.generateRefreshTokenExpirationTime()));
+        return token;
     }
 
     private boolean isRefreshTokenExpired(RefreshToken refreshToken) {
@@ -46,10 +60,59 @@ public class RefreshTokenServiceImpl implements RefreshTokenService {
     }
 
     @Override
-    public Optional<String> renewAccessTokenByRefresh(String refreshToken) {
-        return refreshTokenRepository.findByToken(refreshToken)
-                .filter(Predicate.not(this::isRefreshTokenExpired))
-                .map(RefreshToken::getUser)
-                .map(user -> jwtTokenProvider.createAccessToken(user.getUsername(), user.getRole()));
+    @Transactional
+    public Optional<RenewedTokens> renewAccessTokenByRefresh(String refreshToken, Locale language) {
+        final var tokenHash = hash(refreshToken);
+        final var storedToken = refreshTokenRepository.findWithUserByTokenHash(tokenHash);
+        if (storedToken.isEmpty()) {
+            if (refreshTokenRepository.deleteByPreviousTokenHash(tokenHash) > 0) {
+                log.warn("Replaced refresh token was presented again, the token which replaced it is removed");
+            }
+            return Optional.empty();
+        }
+        final var token = storedToken.get();
+        if (isRefreshTokenExpired(token)) {
+            return Optional.empty();
+        }
+        final var newToken = jwtTokenProvider.generateRefreshToken();
+        if (refreshTokenRepository.rotate(token.getId(), tokenHash, hash(newToken),
+                jwtTokenProvider.generateRefreshTokenExpirationTime()) == 0) {
+            // a concurrent request with the same token replaced it first
+            return Optional.empty();
+        }
+        final var user = token.getUser();
+        updatePreferableLanguage(user, language);
+        return Optional.of(new RenewedTokens(jwtTokenProvider.createAccessToken(user), newToken));
+    }
+
+    /**
+     * The user is loaded together with the token, so the language is stored by the same transaction
+     */
+    private void updatePreferableLanguage(User user, Locale language) {
+        if (!language.equals(user.getLanguage())) {
+            user.setLanguage(language);
+            log.info("Preferable language was successfully updated for User: {}", user.getUsername());
+        }
+    }
+
+    @Override
+    @Scheduled(cron = "${cron.expression.once_per_day_at_3am}")
+    public void removeExpiredTokens() {
+        final var now = LocalDateTime.now();
+        long removed = 0;
+        List<Long> expiredIds;
+        do {
+            // each batch is deleted by its own short transaction
+            expiredIds = refreshTokenRepository.findExpiredIds(now, PageRequest.of(0, cleanupBatchSize));
+            if (!expiredIds.isEmpty()) {
+                refreshTokenRepository.deleteAllByIdInBatch(expiredIds);
+                removed += expiredIds.size();
+            }
+        } while (expiredIds.size() == cleanupBatchSize);
+        log.info("{} expired refresh tokens are removed", removed);
+    }
+
+    private static String hash(String token) {
+        return Base64.getEncoder().encodeToString(Sha256Util.hash(token));
     }
 }
@@ -9,14 +9,16 @@ import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.i18n.LocaleContextHolder;
 import org.springframework.scheduling.annotation.Scheduled;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
 import org.springframework.stereotype.Service;
-import space.obminyashka.items_exchange.authorization.jwt.JwtUser;
+import space.obminyashka.items_exchange.authorization.jwt.LoginUser;
+import space.obminyashka.items_exchange.authorization.jwt.TokenRevocationCache;
+import space.obminyashka.items_exchange.dao.UserAvatarRepository;
 import space.obminyashka.items_exchange.dao.UserRepository;
 import space.obminyashka.items_exchange.dto.*;
 import space.obminyashka.items_exchange.model.Child;
@@ -25,6 +27,7 @@ import space.obminyashka.items_exchange.model.User;
 import space.obminyashka.items_exchange.model.enums.Status;
 import space.obminyashka.items_exchange.service.RoleService;
 import space.obminyashka.items_exchange.service.UserService;
+import space.obminyashka.items_exchange.storage.BlobStore;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
@@ -41,46 +44,63 @@ import static space.obminyashka.items_exchange.util.MessageSourceUtil.getMessage
 @Service
 @Slf4j
 @RequiredArgsConstructor
-public class UserServiceImpl implements UserService, UserDetailsService {
+public class UserServiceImpl implements UserService, UserDetailsService, UserDetailsPasswordService {
 
     private static final String ROLE_USER = "ROLE_USER";
 
-    private final BCryptPasswordEncoder bCryptPasswordEncoder;
+    private final PasswordEncoder passwordEncoder;
     private final UserRepository userRepository;
+    private final UserAvatarRepository userAvatarRepository;
     private final ModelMapper modelMapper;
     private final RoleService roleService;
+    private final TokenRevocationCache tokenRevocationCache;
+    private final BlobStore blobStore;
 
     @Value("${number.of.days.to.keep.deleted.users}")
     private int numberOfDaysToKeepDeletedUsers;
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
-        User user = findByUsernameOrEmail(username)
+        // it's called by logins only, so the user is read together with everything the login response needs
+        UserLoginDetailsDto user = findLoginDetailsByUsernameOrEmail(username)
                 .orElseThrow(() -> new UsernameNotFoundException("IN UserDetailsService (loadUserByUsername): " +
                         "user with username: " + username + " not found"));
 
-        JwtUser jwtUser = create(user);
         log.info("IN UserDetailsService (loadUserByUsername): user with username: {} successfully loaded", username);
-        return jwtUser;
+        return new LoginUser(user);
     }
 
-    private static JwtUser create(User user) {
-        return new JwtUser(
-                user.getId(),
-                user.getUsername(),
-                user.getFirstName(),
-                user.getLastName(),
-                user.getEmail(),
-                user.getPassword(),
-                List.of(new SimpleGrantedAuthority(user.getRole().getName())),
-                user.getStatus().equals(Status.ACTIVE),
-                user.getUpdated()
-        );
+    /**
+     * Store the password rehashed on login, neither the user's update time nor its tokens are changed by it
+     */
+    @Override
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        userRepository.updatePassword(user.getUsername(), newPassword);
+        log.info("Password of the user {} is rehashed with the current cost", user.getUsername());
+        return ((LoginUser) user).withPassword(newPassword);
     }
 
     @Override
     public Optional<User> findByUsernameOrEmail(String usernameOrEmail) {
-        return userRepository.findByEmailOrUsername(usernameOrEmail, usernameOrEmail);
+        // usernames can't contain '@', except the ones of OAuth2 users who have their email as a username
+        return usernameOrEmail.contains("@") ?
+                userRepository.findByEmail(usernameOrEmail).or(() -> userRepository.findByUsername(usernameOrEmail)) :
+                userRepository.findByUsername(usernameOrEmail);
+    }
+
+    @Override
+    public Optional<UserAuthDto> findAuthByUsernameOrEmail(String usernameOrEmail) {
+        return usernameOrEmail.contains("@") ?
+                userRepository.findAuthByEmail(usernameOrEmail).or(() -> userRepository.findAuthByUsername(usernameOrEmail)) :
+                userRepository.findAuthByUsername(usernameOrEmail);
+    }
+
+    @Override
+    public Optional<UserLoginDetailsDto> findLoginDetailsByUsernameOrEmail(String usernameOrEmail) {
+        return usernameOrEmail.contains("@") ?
+                userRepository.findLoginDetailsByEmail(usernameOrEmail)
+                        .or(() -> userRepository.findLoginDetailsByUsername(usernameOrEmail)) :
+                userRepository.findLoginDetailsByUsername(usernameOrEmail);
     }
 
     @Override
@@ -118,10 +138,9 @@ public class UserServiceImpl implements UserService, UserDetailsService {
     private User setUserFields(User user, String password, String firstName, String lastName) {
         user.setFirstName(firstName);
         user.setLastName(lastName);
-        user.setPassword(bCryptPasswordEncoder.encode(password));
+        user.setPassword(passwordEncoder.encode(password));
         roleService.getRole(ROLE_USER).ifPresent(user::setRole);
         user.setOnline(false);
-        user.setAvatarImage(new byte[0]);
         var now = LocalDateTime.now();
         user.setLastOnlineTime(now);
         user.setStatus(Status.ACTIVE);
@@ -148,8 +167,8 @@ public class UserServiceImpl implements UserService, UserDetailsService {
 
     @Override
     public String updateUserPassword(UserChangePasswordDto userChangePasswordDto, User user) {
-        user.setPassword(bCryptPasswordEncoder.encode(userChangePasswordDto.getNewPassword()));
-        userRepository.saveAndFlush(user);
+        user.setPassword(passwordEncoder.encode(userChangePasswordDto.getNewPassword()));
+        saveRevokingTokens(user);
 
         return getMessageSource("changed.user.password");
     }
@@ -165,12 +184,12 @@ public class UserServiceImpl implements UserService, UserDetailsService {
     @Override
     public void selfDeleteRequest(User user) {
         user.setStatus(DELETED);
-        userRepository.saveAndFlush(user);
+        saveRevokingTokens(user);
     }
 
     @Override
-    public long getDaysBeforeDeletion(User user) {
-        return numberOfDaysToKeepDeletedUsers - (DAYS.between(user.getUpdated(), LocalDateTime.now()));
+    public long getDaysBeforeDeletion(LocalDateTime deletionRequested) {
+        return numberOfDaysToKeepDeletedUsers - (DAYS.between(deletionRequested, LocalDateTime.now()));
     }
 
     @Override
@@ -191,7 +210,16 @@ public class UserServiceImpl implements UserService, UserDetailsService {
     @Override
     public void makeAccountActiveAgain(User user) {
         user.setStatus(ACTIVE);
+        saveRevokingTokens(user);
+    }
+
+    /**
+     * Save the user and revoke the access tokens issued before, so a changed password or status takes effect at once
+     */
+    private void saveRevokingTokens(User user) {
+        user.setTokensValidAfter(LocalDateTime.now());
         userRepository.saveAndFlush(user);
+        tokenRevocationCache.evict(user.getId());
     }
 
     @Override
@@ -201,7 +229,7 @@ public class UserServiceImpl implements UserService, UserDetailsService {
 
     @Override
     public boolean existsByUsernameOrEmail(String username, String email) {
-        return userRepository.existsByUsernameOrEmail(username, email);
+        return userRepository.existsByUsername(username) || userRepository.existsByEmail(email);
     }
 
     @Override
@@ -211,11 +239,13 @@ public class UserServiceImpl implements UserService, UserDetailsService {
 
     @Override
     public boolean isPasswordMatches(User user, String encodedPassword) {
-        return bCryptPasswordEncoder.matches(encodedPassword, user.getPassword());
+        return passwordEncoder.matches(encodedPassword, user.getPassword());
     }
 
     private UserDto mapUserToDto(User user) {
-        return modelMapper.map(user, UserDto.class);
+        final var userDto = modelMapper.map(user, UserDto.class);
+        userDto.setAvatarImage(blobStore.read(user.getAvatarImage()));
+        return userDto;
     }
 
     @Override
@@ -255,20 +285,7 @@ public class UserServiceImpl implements UserService, UserDetailsService {
 
     @Override
     public void setUserAvatar(byte[] newAvatarImage, User user) {
-        user.setAvatarImage(newAvatarImage);
-        userRepository.saveAndFlush(user);
-    }
-
-    @Override
-    public void updatePreferableLanguage(String refreshToken) {
-        final var locale = LocaleContextHolder.getLocale();
-        userRepository.findByRefreshToken_Token(refreshToken)
-                .filter(user -> !user.getLanguage().equals(locale))
-                .ifPresent(user -> {
-                    user.setLanguage(locale);
-                    userRepository.saveAndFlush(user);
-                    log.info("Preferable language was successfully updated for User: {}", user.getUsername());
-                });
+        userAvatarRepository.updateContent(user.getId(), newAvatarImage);
     }
 
     private void addNewChildren(User user, Collection<Child> children) {
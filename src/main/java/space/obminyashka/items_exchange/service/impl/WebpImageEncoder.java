@@ -0,0 +1,17 @@
+package space.obminyashka.items_exchange.service.impl;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Encodes WebP images when an ImageIO plugin writing them is on the classpath, it's unavailable otherwise
+ */
+@Component
+public class WebpImageEncoder extends LossyImageEncoder {
+
+    private static final String IMAGE_WEBP_VALUE = "image/webp";
+
+    @Override
+    public String getMediaType() {
+        return IMAGE_WEBP_VALUE;
+    }
+}
@@ -0,0 +1,38 @@
+package space.obminyashka.items_exchange.storage;
+
+import org.hibernate.jpa.boot.internal.EntityManagerFactoryBuilderImpl;
+import org.hibernate.jpa.boot.spi.TypeContributorList;
+import org.hibernate.type.descriptor.java.ImmutableMutabilityPlan;
+import org.hibernate.type.descriptor.java.MutabilityPlan;
+import org.hibernate.type.descriptor.java.PrimitiveByteArrayTypeDescriptor;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Makes Hibernate keep the loaded state of attributes converted by {@link BlobReferenceConverter} as is.
+ * By default it copies the loaded state through the converter, which puts contents stored inline before
+ * into {@link BlobStore} on every load, and then finds the entity dirty, as its inline content differs from
+ * the reference in the copy, so merely loading such an entity rewrote its row on the next flush.
+ * Binary contents are always replaced as a whole and never changed in place, so they need no copy
+ */
+@Component
+public class BlobContentTypeContributor implements HibernatePropertiesCustomizer {
+
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        hibernateProperties.put(EntityManagerFactoryBuilderImpl.TYPE_CONTRIBUTORS, (TypeContributorList) () -> List.of(
+                (typeContributions, serviceRegistry) -> typeContributions.contributeJavaTypeDescriptor(new BlobContentTypeDescriptor())));
+    }
+
+    private static class BlobContentTypeDescriptor extends PrimitiveByteArrayTypeDescriptor {
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public MutabilityPlan<byte[]> getMutabilityPlan() {
+            return ImmutableMutabilityPlan.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package space.obminyashka.items_exchange.storage;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Moves binary content stored inline in the database into {@link BlobStore}, replacing it with references.
+ * Rows are processed in batches ordered by id, and each content is streamed to the store one by one
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class BlobMigrationJob {
+
+    private static final List<BinaryColumn> BINARY_COLUMNS = List.of(
+            new BinaryColumn("image", "resource"),
+            new BinaryColumn("advertisement_thumbnail", "content"),
+            new BinaryColumn("user", "avatar_image"),
+            new BinaryColumn("attachment", "file_content"));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStore blobStore;
+
+    @Value("${app.blob-store.migration.enabled}")
+    private boolean migrationEnabled;
+    @Value("${app.blob-store.migration.batch-size}")
+    private int batchSize;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (migrationEnabled) {
+            migrate();
+        }
+    }
+
+    /**
+     * Move the content of every binary column into the blob store
+     * @return total quantity of moved values
+     */
+    public long migrate() {
+        long total = 0;
+        for (BinaryColumn column : BINARY_COLUMNS) {
+            final long moved = migrate(column);
+            log.info("{} value(s) of {}.{} are moved to the blob store", moved, column.table(), column.name());
+            total += moved;
+        }
+        return total;
+    }
+
+    private long migrate(BinaryColumn column) {
+        final var selectBatch = "SELECT id, " + column.name() + " FROM " + column.table() +
+                " WHERE id > ? AND " + column.name() + " IS NOT NULL ORDER BY id LIMIT ?";
+        final var updateReference = "UPDATE " + column.table() + " SET " + column.name() + " = ? WHERE id = ?";
+        long moved = 0;
+        long lastId = 0;
+        List<Long> batchIds;
+        do {
+            final List<Object[]> references = new ArrayList<>();
+            batchIds = jdbcTemplate.query(selectBatch, (rs, rowNum) -> {
+                final var id = rs.getLong(1);
+                moveToStore(rs).ifPresent(reference -> references.add(new Object[]{reference, id}));
+                return id;
+            }, lastId, batchSize);
+            if (!references.isEmpty()) {
+                jdbcTemplate.batchUpdate(updateReference, references);
+                moved += references.size();
+            }
+            lastId = batchIds.isEmpty() ? lastId : batchIds.get(batchIds.size() - 1);
+        } while (batchIds.size() == batchSize);
+        return moved;
+    }
+
+    private Optional<byte[]> moveToStore(ResultSet rs) throws SQLException {
+        try (InputStream content = new BufferedInputStream(rs.getBinaryStream(2))) {
+            content.mark(BlobReference.LENGTH + 1);
+            final var head = content.readNBytes(BlobReference.LENGTH + 1);
+            if (head.length == 0 || BlobReference.keyOf(head).isPresent()) {
+                return Optional.empty();
+            }
+            content.reset();
+            return Optional.of(BlobReference.of(blobStore.put(content)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read a binary value", e);
+        }
+    }
+
+    private record BinaryColumn(String table, String name) {
+    }
+}
@@ -0,0 +1,45 @@
+package space.obminyashka.items_exchange.storage;
+
+import lombok.experimental.UtilityClass;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Binary columns keep either the content itself (rows stored before the blob store was introduced) or a short
+ * reference to the content in {@link BlobStore}: "blob:" followed by the content key
+ */
+@UtilityClass
+public class BlobReference {
+
+    private static final String PREFIX_VALUE = "blob:";
+    private static final byte[] PREFIX = PREFIX_VALUE.getBytes(StandardCharsets.US_ASCII);
+    private static final int KEY_LENGTH = 64;
+
+    /**
+     * Length of every reference in bytes
+     */
+    public static final int LENGTH = PREFIX.length + KEY_LENGTH;
+
+    /**
+     * Create a column value referencing the content stored with the key
+     * @param key content key in {@link BlobStore}
+     * @return the reference
+     */
+    public static byte[] of(String key) {
+        return (PREFIX_VALUE + key).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Extract the blob key from a column value
+     * @param value column value
+     * @return the key, or empty {@link Optional} if the value is a content itself
+     */
+    public static Optional<String> keyOf(byte[] value) {
+        if (value == null || value.length != LENGTH || !Arrays.equals(value, 0, PREFIX.length, PREFIX, 0, PREFIX.length)) {
+            return Optional.empty();
+        }
+        return Optional.of(new String(value, PREFIX.length, KEY_LENGTH, StandardCharsets.US_ASCII));
+    }
+}
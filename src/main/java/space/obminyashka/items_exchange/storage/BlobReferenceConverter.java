@@ -0,0 +1,33 @@
+package space.obminyashka.items_exchange.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+
+/**
+ * Puts binary attributes into {@link BlobStore} on write, so the database keeps only references to them.
+ * On read the column value is kept as is, a {@link BlobReference} or a value stored inline before,
+ * and the content is read by {@link BlobStore#read(byte[])} only where it's served
+ */
+@Component
+@Converter
+@RequiredArgsConstructor
+public class BlobReferenceConverter implements AttributeConverter<byte[], byte[]> {
+
+    private final BlobStore blobStore;
+
+    @Override
+    public byte[] convertToDatabaseColumn(byte[] content) {
+        if (content == null || content.length == 0 || BlobReference.keyOf(content).isPresent()) {
+            return content;
+        }
+        return BlobReference.of(blobStore.put(content));
+    }
+
+    @Override
+    public byte[] convertToEntityAttribute(byte[] columnValue) {
+        return columnValue;
+    }
+}
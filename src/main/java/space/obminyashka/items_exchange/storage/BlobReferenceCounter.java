@@ -0,0 +1,123 @@
+package space.obminyashka.items_exchange.storage;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+
+/**
+ * Counts references of images to blobs, so content shared by identical images is removed from {@link BlobStore}
+ * together with its last reference only. Blobs stored before the counting was introduced have no counter and are
+ * never removed. Rows moved to the blob store by {@link BlobMigrationJob} aren't counted either, nor are avatars,
+ * advertisement thumbnails and attachments, so once the last counted reference is gone, every referencing column
+ * is checked after the commit and a blob referenced by any of them is kept
+ */
+@Slf4j
+@Component
+public class BlobReferenceCounter {
+
+    private static final String INCREMENT = "UPDATE blob_usage SET reference_count = reference_count + 1 WHERE blob_key = ?";
+    private static final String INSERT = "INSERT INTO blob_usage (blob_key, reference_count, content_size) VALUES (?, 1, ?)";
+    private static final String DECREMENT = "UPDATE blob_usage SET reference_count = reference_count - 1 " +
+            "WHERE blob_key = ? AND reference_count > 0";
+    private static final String SELECT_COUNT = "SELECT reference_count FROM blob_usage WHERE blob_key = ?";
+    private static final String DELETE_UNUSED = "DELETE FROM blob_usage WHERE blob_key = ? AND reference_count = 0";
+    private static final String SELECT_SAVED_BYTES = "SELECT COALESCE(SUM((reference_count - 1) * content_size), 0) " +
+            "FROM blob_usage WHERE reference_count > 1";
+    private static final List<String> UNCOUNTED_REFERENCES = List.of(
+            "SELECT COUNT(*) FROM image WHERE resource = ?",
+            "SELECT COUNT(*) FROM advertisement_thumbnail WHERE content = ?",
+            "SELECT COUNT(*) FROM user WHERE avatar_image = ?",
+            "SELECT COUNT(*) FROM attachment WHERE file_content = ?");
+    private static final List<String> UNCOUNTED_KEYS = List.of(
+            "SELECT COUNT(*) FROM image_rendition WHERE blob_key = ?",
+            "SELECT COUNT(*) FROM image_variant WHERE blob_key = ?");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BlobStore blobStore;
+
+    public BlobReferenceCounter(JdbcTemplate jdbcTemplate, BlobStore blobStore, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.blobStore = blobStore;
+
+        Gauge.builder("blob.store.deduplicated.bytes", this, BlobReferenceCounter::countSavedBytes)
+                .description("Bytes which aren't stored since identical images share a single blob")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Count one more reference to the blob
+     * @param key blob key
+     * @param size size of the blob's content in bytes
+     */
+    public void acquire(String key, long size) {
+        if (jdbcTemplate.update(INCREMENT, key) > 0) {
+            return;
+        }
+        try {
+            jdbcTemplate.update(INSERT, key, size);
+        } catch (DuplicateKeyException e) {
+            // an identical image was stored concurrently
+            jdbcTemplate.update(INCREMENT, key);
+        }
+    }
+
+    /**
+     * Remove one reference to the blob. The blob itself is deleted after the current transaction commits
+     * when the reference was the last one
+     * @param key blob key
+     */
+    public void release(String key) {
+        if (jdbcTemplate.update(DECREMENT, key) == 0) {
+            return;
+        }
+        final var references = jdbcTemplate.queryForObject(SELECT_COUNT, Integer.class, key);
+        if (references != null && references == 0 && jdbcTemplate.update(DELETE_UNUSED, key) > 0) {
+            deleteAfterCommit(key);
+        }
+    }
+
+    private boolean isReferencedElsewhere(String key) {
+        final var reference = BlobReference.of(key);
+        return UNCOUNTED_REFERENCES.stream()
+                .map(query -> jdbcTemplate.queryForObject(query, Long.class, (Object) reference))
+                .anyMatch(count -> count != null && count > 0)
+                || UNCOUNTED_KEYS.stream()
+                .map(query -> jdbcTemplate.queryForObject(query, Long.class, key))
+                .anyMatch(count -> count != null && count > 0);
+    }
+
+    private void deleteAfterCommit(String key) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            deleteIfUnused(key);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                deleteIfUnused(key);
+            }
+        });
+    }
+
+    private void deleteIfUnused(String key) {
+        // an identical image could be stored after the last reference was released, and rows releasing it are
+        // deleted by the committed transaction, so only rows which weren't counted reference the blob now
+        if (jdbcTemplate.queryForList(SELECT_COUNT, Integer.class, key).isEmpty() && !isReferencedElsewhere(key)) {
+            blobStore.delete(key);
+            log.debug("Blob {} is deleted since nothing references it", key);
+        }
+    }
+
+    private double countSavedBytes() {
+        final var savedBytes = jdbcTemplate.queryForObject(SELECT_SAVED_BYTES, Long.class);
+        return savedBytes == null ? 0 : savedBytes;
+    }
+}
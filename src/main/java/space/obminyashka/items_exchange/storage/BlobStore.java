@@ -0,0 +1,77 @@
+package space.obminyashka.items_exchange.storage;
+
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * Content-addressed storage of binary data (images, avatars, attachments) kept outside the relational database
+ */
+public interface BlobStore {
+
+    /**
+     * Store the content and return its key, storing the same content twice keeps a single copy
+     * @param content data to store
+     * @return key of the stored content, calculated from the content itself
+     */
+    String put(byte[] content);
+
+    /**
+     * Store the content read from the stream without loading it into memory
+     * @param content stream with data to store, it's not closed by the method
+     * @return key of the stored content, calculated from the content itself
+     */
+    String put(InputStream content);
+
+    /**
+     * Calculate the key the content is stored with, without storing it
+     * @param content data to calculate the key of
+     * @return key the content has or would have in the store
+     */
+    String keyOf(byte[] content);
+
+    /**
+     * Calculate the key the content read from the stream is stored with, without storing it or loading it into memory
+     * @param content stream with data to calculate the key of, it's not closed by the method
+     * @return key the content has or would have in the store
+     */
+    String keyOf(InputStream content);
+
+    /**
+     * Read the content stored with the key
+     * @param key key returned by one of put methods
+     * @return the content or empty {@link Optional} when nothing is stored with the key
+     */
+    Optional<byte[]> get(String key);
+
+    /**
+     * Read the content a binary column refers to. Entities keep the column values as they are,
+     * so the content is read only by the code which serves it
+     * @param storedValue {@link BlobReference} or a content stored inline before the blob store was introduced
+     * @return the content, an empty array when the referenced content is missing
+     */
+    default byte[] read(byte[] storedValue) {
+        return BlobReference.keyOf(storedValue)
+                .map(key -> get(key).orElseGet(() -> new byte[0]))
+                .orElse(storedValue);
+    }
+
+    /**
+     * Find the content stored with the key to read it as a stream
+     * @param key key returned by one of put methods
+     * @return the content or empty {@link Optional} when nothing is stored with the key
+     */
+    Optional<StoredBlob> find(String key);
+
+    /**
+     * Check whether any content is stored with the key
+     * @param key key returned by one of put methods
+     * @return {@literal true} if the content exists
+     */
+    boolean exists(String key);
+
+    /**
+     * Remove the content stored with the key, if any
+     * @param key key returned by one of put methods
+     */
+    void delete(String key);
+}
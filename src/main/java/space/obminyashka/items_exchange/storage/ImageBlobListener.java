@@ -0,0 +1,32 @@
+package space.obminyashka.items_exchange.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import space.obminyashka.items_exchange.model.Image;
+import space.obminyashka.items_exchange.model.ImageVariant;
+
+import javax.persistence.PreRemove;
+
+/**
+ * Releases the blobs of removed images, including images removed together with their advertisement
+ * @see BlobReferenceCounter
+ */
+@Component
+@RequiredArgsConstructor
+public class ImageBlobListener {
+
+    private final BlobStore blobStore;
+    private final BlobReferenceCounter blobReferenceCounter;
+
+    @PreRemove
+    public void releaseBlobs(Image image) {
+        final var resource = image.getResource();
+        if (resource != null && resource.length > 0) {
+            blobReferenceCounter.release(BlobReference.keyOf(resource).orElseGet(() -> blobStore.keyOf(resource)));
+        }
+        image.getRenditions().values().forEach(blobReferenceCounter::release);
+        image.getVariants().stream()
+                .map(ImageVariant::getBlobKey)
+                .forEach(blobReferenceCounter::release);
+    }
+}
@@ -0,0 +1,131 @@
+package space.obminyashka.items_exchange.storage;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.stereotype.Component;
+import space.obminyashka.items_exchange.util.Sha256Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps every blob in a file named by SHA-256 of its content. Files are spread over two levels of sub-directories
+ * named by the first hash characters (ab/cd/abcd...), so no directory grows too big
+ */
+@Component
+public class LocalFileSystemBlobStore implements BlobStore {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path rootDirectory;
+
+    public LocalFileSystemBlobStore(@Value("${app.blob-store.local.root-directory}") Path rootDirectory) {
+        this.rootDirectory = rootDirectory.toAbsolutePath();
+    }
+
+    @Override
+    public String put(byte[] content) {
+        return put(new ByteArrayInputStream(content));
+    }
+
+    @Override
+    public String put(InputStream content) {
+        try {
+            Files.createDirectories(rootDirectory);
+            final var tempFile = Files.createTempFile(rootDirectory, "upload", ".tmp");
+            try {
+                final var key = copyAndHash(content, tempFile);
+                final var target = resolve(key);
+                if (!Files.exists(target)) {
+                    Files.createDirectories(target.getParent());
+                    move(tempFile, target);
+                }
+                return key;
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to store a blob into " + rootDirectory, e);
+        }
+    }
+
+    @Override
+    public String keyOf(byte[] content) {
+        return HexFormat.of().formatHex(Sha256Util.hash(content));
+    }
+
+    @Override
+    public String keyOf(InputStream content) {
+        final var digest = Sha256Util.newDigest();
+        try {
+            content.transferTo(new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read a blob to calculate its key", e);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    @Override
+    public Optional<byte[]> get(String key) {
+        final var path = resolve(key);
+        try {
+            return Files.exists(path) ? Optional.of(Files.readAllBytes(path)) : Optional.empty();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read the blob " + key, e);
+        }
+    }
+
+    @Override
+    public Optional<StoredBlob> find(String key) {
+        final var path = resolve(key);
+        return Files.exists(path) ? Optional.of(new StoredBlob(key, new FileSystemResource(path))) : Optional.empty();
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.exists(resolve(key));
+    }
+
+    @Override
+    public void delete(String key) {
+        try {
+            Files.deleteIfExists(resolve(key));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to delete the blob " + key, e);
+        }
+    }
+
+    Path resolve(String key) {
+        if (key == null || !KEY_PATTERN.matcher(key).matches()) {
+            throw new IllegalArgumentException("Invalid blob key: " + key);
+        }
+        return rootDirectory.resolve(key.substring(0, 2)).resolve(key.substring(2, 4)).resolve(key);
+    }
+
+    private static String copyAndHash(InputStream content, Path file) throws IOException {
+        final var digest = Sha256Util.newDigest();
+        try (var out = new DigestOutputStream(Files.newOutputStream(file), digest)) {
+            content.transferTo(out);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static void move(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
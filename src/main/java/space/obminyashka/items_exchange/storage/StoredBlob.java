@@ -0,0 +1,11 @@
+package space.obminyashka.items_exchange.storage;
+
+import org.springframework.core.io.Resource;
+
+/**
+ * Content kept in {@link BlobStore}, readable without loading it into memory
+ * @param key content key, SHA-256 of the content
+ * @param content readable representation of the content
+ */
+public record StoredBlob(String key, Resource content) {
+}
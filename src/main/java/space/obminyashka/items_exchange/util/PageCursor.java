@@ -0,0 +1,47 @@
+package space.obminyashka.items_exchange.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Position of the last seen element of a keyset (seek) paginated feed, passed to clients as an opaque string
+ * @param lastId ID of the last seen advertisement, breaks ties between search results of the same relevance
+ * @param score relevance of the last seen advertisement, used only by search results
+ */
+public record PageCursor(long lastId, double score) {
+
+    private static final String SEPARATOR = ":";
+
+    public static PageCursor of(long lastId) {
+        return new PageCursor(lastId, 0);
+    }
+
+    /**
+     * Convert the cursor into an opaque URL-safe string. The score is written in the hexadecimal form,
+     * so it is decoded into exactly the same value and still equals the scores of tied results
+     * @return encoded cursor
+     */
+    public String encode() {
+        final var value = lastId + SEPARATOR + Double.toHexString(score);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Restore a cursor from the string received from a client
+     * @param cursor string previously created by {@link #encode()}
+     * @return decoded cursor
+     * @throws IllegalArgumentException when the string is not a valid cursor
+     */
+    public static PageCursor decode(String cursor) {
+        final var value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        final var parts = value.split(SEPARATOR);
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        final var score = Double.parseDouble(parts[1]);
+        if (!Double.isFinite(score)) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return new PageCursor(Long.parseLong(parts[0]), score);
+    }
+}
@@ -0,0 +1,40 @@
+package space.obminyashka.items_exchange.util;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 hashing of tokens and blob contents. Every JVM is required to support SHA-256,
+ * so its absence is reported as an {@link IllegalStateException}
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class Sha256Util {
+
+    private static final String ALGORITHM = "SHA-256";
+
+    /**
+     * @return new digest, which isn't thread-safe and has to be used by a single thread
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " is not supported by the JVM", e);
+        }
+    }
+
+    public static byte[] hash(byte[] content) {
+        return newDigest().digest(content);
+    }
+
+    /**
+     * @param text text hashed in UTF-8, tokens are ASCII, so their hashes are the same in either encoding
+     */
+    public static byte[] hash(String text) {
+        return hash(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
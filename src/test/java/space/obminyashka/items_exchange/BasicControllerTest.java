@@ -1,5 +1,6 @@
 package space.obminyashka.items_exchange;
 
+import com.jayway.jsonpath.JsonPath;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
@@ -9,18 +10,24 @@ import org.springframework.test.web.servlet.ResultActions;
 import org.springframework.test.web.servlet.ResultMatcher;
 import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
 
+import java.util.List;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.is;
-import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static space.obminyashka.items_exchange.api.ApiKey.IMAGE_STATUS;
 import static space.obminyashka.items_exchange.util.JsonConverter.asJsonString;
 
 
 @RequiredArgsConstructor
 public abstract class BasicControllerTest {
 
+    private static final long IMAGE_PROCESSING_TIMEOUT_MILLIS = 10_000;
+
     protected final MockMvc mockMvc;
 
     protected <T> MvcResult sendDtoAndGetMvcResult(MockHttpServletRequestBuilder method, T dto, ResultMatcher expectedStatus) throws Exception {
@@ -58,6 +65,27 @@ public abstract class BasicControllerTest {
                 .andExpect(expectedStatus);
     }
 
+    /**
+     * Wait for an uploaded image to be processed in background
+     * @param advertisementId ID of the advertisement the image belongs to
+     * @param imageId ID of the pending image
+     */
+    protected void awaitImageReady(long advertisementId, long imageId) throws Exception {
+        final long deadline = System.currentTimeMillis() + IMAGE_PROCESSING_TIMEOUT_MILLIS;
+        while (System.currentTimeMillis() < deadline) {
+            final var statuses = mockMvc.perform(get(IMAGE_STATUS, advertisementId))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            final List<String> imageStatus = JsonPath.read(statuses, "$[?(@.id == " + imageId + ")].status");
+            if (imageStatus.contains("READY")) {
+                return;
+            }
+            assertFalse(imageStatus.contains("FAILED"), "Uploaded image has to be processed");
+            Thread.sleep(100);
+        }
+        fail("Uploaded image isn't processed in " + IMAGE_PROCESSING_TIMEOUT_MILLIS + " ms");
+    }
+
     protected void verifyResultException(MvcResult mvcResult, Class<? extends Exception> exceptionClass, String exceptionMessage) {
         final var resolvedException = mvcResult.getResolvedException();
         assertNotNull(resolvedException);
@@ -0,0 +1,43 @@
+package space.obminyashka.items_exchange.authorization;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptivePasswordEncoderTest {
+    private static final int MIN_STRENGTH = 5;
+    private static final String PASSWORD = "Test!1234";
+
+    private AdaptivePasswordEncoder passwordEncoder;
+
+    @BeforeEach
+    void setUp() {
+        passwordEncoder = new AdaptivePasswordEncoder(new SimpleMeterRegistry(), 1, 1, 0, MIN_STRENGTH);
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordEncoder.shutdown();
+    }
+
+    @Test
+    void calibrate_shouldNotGoBelowMinStrength() {
+        assertEquals(MIN_STRENGTH, AdaptivePasswordEncoder.calibrate(MIN_STRENGTH, 0));
+    }
+
+    @Test
+    void upgradeEncoding_shouldReportPasswordsHashedWithLowerCostOnly() {
+        final var encodedPassword = passwordEncoder.encode(PASSWORD);
+
+        assertAll("Only BCrypt hashes of a lower cost have to be upgraded",
+                () -> assertTrue(passwordEncoder.matches(PASSWORD, encodedPassword)),
+                () -> assertFalse(passwordEncoder.upgradeEncoding(encodedPassword)),
+                () -> assertTrue(passwordEncoder.upgradeEncoding(new BCryptPasswordEncoder(MIN_STRENGTH - 1).encode(PASSWORD))),
+                () -> assertFalse(passwordEncoder.upgradeEncoding(new BCryptPasswordEncoder(MIN_STRENGTH + 1).encode(PASSWORD))),
+                () -> assertFalse(passwordEncoder.upgradeEncoding("not a BCrypt hash")));
+    }
+}
@@ -0,0 +1,97 @@
+package space.obminyashka.items_exchange.authorization;
+
+import com.github.database.rider.core.api.dataset.DataSet;
+import com.github.database.rider.junit5.api.DBRider;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import space.obminyashka.items_exchange.BasicControllerTest;
+import space.obminyashka.items_exchange.dto.UserLoginDto;
+import space.obminyashka.items_exchange.exception.PasswordHashingOverloadedException;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static space.obminyashka.items_exchange.api.ApiKey.AUTH_LOGIN;
+
+@SpringBootTest(properties = {"app.password.hashing.threads=1", "app.password.hashing.queue-capacity=1"})
+@DBRider
+@AutoConfigureMockMvc
+class PasswordHashingOverloadIntegrationTest extends BasicControllerTest {
+    private static final long TIMEOUT_MILLIS = 5_000;
+
+    @Autowired
+    private AdaptivePasswordEncoder passwordEncoder;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    public PasswordHashingOverloadIntegrationTest(MockMvc mockMvc) {
+        super(mockMvc);
+    }
+
+    @Test
+    @DataSet("database_init.yml")
+    void login_shouldBeRejectedWithRetryAfter_whenPasswordHashingIsOverloaded() throws Exception {
+        final var hashingStarted = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        final double rejectedBefore = countRejected();
+        // the only hashing thread is blocked and the only place in the queue is taken
+        final var blocked = CompletableFuture.supplyAsync(() -> passwordEncoder.hash(() -> {
+            hashingStarted.countDown();
+            return await(release);
+        }));
+        assertTrue(hashingStarted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), "Blocking hash has to start");
+        final var queued = CompletableFuture.supplyAsync(() -> passwordEncoder.hash(() -> true));
+        awaitQueueDepth(1);
+
+        try {
+            final var mvcResult = sendDtoAndGetMvcResult(post(AUTH_LOGIN), new UserLoginDto("admin", "@kuIOIY*h986"),
+                    status().isServiceUnavailable());
+            final var retryAfter = mvcResult.getResponse().getHeader(HttpHeaders.RETRY_AFTER);
+
+            assertAll("Login has to be rejected at once, asking the client to retry later",
+                    () -> assertThat(mvcResult.getResolvedException(), is(instanceOf(PasswordHashingOverloadedException.class))),
+                    () -> assertNotNull(retryAfter),
+                    () -> assertTrue(Integer.parseInt(retryAfter) > 0, retryAfter),
+                    () -> assertEquals(rejectedBefore + 1, countRejected()));
+        } finally {
+            release.countDown();
+        }
+        assertAll("Accepted hashes have to complete once the thread is free",
+                () -> assertTrue(blocked.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)),
+                () -> assertTrue(queued.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)));
+    }
+
+    private double countRejected() {
+        return meterRegistry.get("password.hashing.rejected").counter().count();
+    }
+
+    private void awaitQueueDepth(int depth) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (meterRegistry.get("password.hashing.queue.depth").gauge().value() < depth) {
+            assertTrue(System.currentTimeMillis() < deadline, "Hash has to be queued in " + TIMEOUT_MILLIS + " ms");
+            Thread.sleep(10);
+        }
+    }
+
+    private static boolean await(CountDownLatch latch) {
+        try {
+            return latch.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
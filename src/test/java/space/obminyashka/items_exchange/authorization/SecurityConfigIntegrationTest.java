@@ -4,21 +4,32 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.github.database.rider.core.api.dataset.DataSet;
 import com.github.database.rider.junit5.api.DBRider;
 import com.jayway.jsonpath.JsonPath;
+import org.hibernate.SessionFactory;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.web.servlet.MockMvc;
 import space.obminyashka.items_exchange.BasicControllerTest;
+import space.obminyashka.items_exchange.authorization.jwt.TokenRevocationCache;
+import space.obminyashka.items_exchange.dao.UserAvatarRepository;
+import space.obminyashka.items_exchange.dto.UserAuthDto;
 import space.obminyashka.items_exchange.dto.UserLoginDto;
+import space.obminyashka.items_exchange.model.User;
+import space.obminyashka.items_exchange.util.RecordingStatementInspector;
 
+import javax.persistence.EntityManagerFactory;
+import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -26,12 +37,14 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 import static space.obminyashka.items_exchange.api.ApiKey.*;
 import static space.obminyashka.items_exchange.util.MessageSourceUtil.getMessageSource;
 
-@SpringBootTest
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+        "space.obminyashka.items_exchange.util.RecordingStatementInspector")
 @DBRider
 @AutoConfigureMockMvc
 @Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD, scripts = "classpath:index-reset.sql")
 class SecurityConfigIntegrationTest extends BasicControllerTest {
 
+    private static final long ADMIN_ID = 1L;
     private static final String VALID_USERNAME = "admin";
     private static final String VALID_PASSWORD = "@kuIOIY*h986";
     private static final String NOT_VALID_USERNAME = "nimda";
@@ -48,6 +61,18 @@ class SecurityConfigIntegrationTest extends BasicControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TokenRevocationCache tokenRevocationCache;
+
+    @Autowired
+    private UserAvatarRepository userAvatarRepository;
+
     @Autowired
     public SecurityConfigIntegrationTest(MockMvc mockMvc) {
         super(mockMvc);
@@ -61,6 +86,24 @@ class SecurityConfigIntegrationTest extends BasicControllerTest {
                 .andExpect(jsonPath("$.refresh_token").isNotEmpty());
     }
 
+    @Test
+    @DataSet("database_init.yml")
+    void login_shouldReadUserOnceAndWriteRefreshTokenOnce() throws Exception {
+        // the first login rehashes the password of the dataset with the calibrated cost
+        sendDtoAndGetResultAction(post(AUTH_LOGIN), createValidUserLoginDto(), status().isOk());
+        RecordingStatementInspector.start();
+
+        sendDtoAndGetResultAction(post(AUTH_LOGIN), createValidUserLoginDto(), status().isOk())
+                .andExpect(jsonPath("$.email").value("admin@gmail.com"));
+        final var statements = RecordingStatementInspector.stop();
+
+        assertAll("Login has to select the user once and insert the refresh token once",
+                () -> assertEquals(2, statements.size(), statements::toString),
+                () -> assertEquals(1, statements.stream().filter(sql -> sql.startsWith("select")).count(), statements::toString),
+                () -> assertEquals(1, statements.stream().filter(sql -> sql.startsWith("insert into refresh_token")).count(),
+                        statements::toString));
+    }
+
     @Test
     @DataSet("database_init.yml")
     void loginWithNotValidUserGetsBadRequest() throws Exception {
@@ -90,6 +133,93 @@ class SecurityConfigIntegrationTest extends BasicControllerTest {
         assertTrue(mvcResult.getResponse().getContentAsString().contains("Required request part 'dto' is not present"));
     }
 
+    @Test
+    @DataSet("database_init.yml")
+    void authenticatedRequest_shouldLoadNeitherUserEntityNorAvatar() throws Exception {
+        final var headers = getAuthorizationHeaderWithValidToken();
+        final var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        RecordingStatementInspector.start();
+
+        sendUriWithHeadersAndGetResultAction(post(ADV), status().isBadRequest(), headers);
+        final var statements = RecordingStatementInspector.stop();
+        final var loadedEntitiesCount = statistics.getEntityLoadCount();
+        final var fetchedCollectionsCount = statistics.getCollectionFetchCount();
+        statistics.setStatisticsEnabled(false);
+        // proves the avatar column shows up in the recorded SQL once it's selected
+        RecordingStatementInspector.start();
+        userAvatarRepository.findById(ADMIN_ID);
+        final var avatarStatements = RecordingStatementInspector.stop();
+
+        assertAll("Authentication has to select the user's credentials only",
+                () -> assertEquals(0, loadedEntitiesCount),
+                () -> assertEquals(0, fetchedCollectionsCount),
+                () -> assertTrue(avatarStatements.stream().anyMatch(sql -> sql.startsWith("select") && sql.contains("avatar_image")),
+                        avatarStatements::toString),
+                () -> assertTrue(statements.stream().filter(sql -> sql.startsWith("select"))
+                        .noneMatch(sql -> sql.contains("avatar_image")), statements::toString));
+    }
+
+    @Test
+    @DataSet("database_init.yml")
+    void authenticatedRequest_shouldLookUpUserOncePerRequest() throws Exception {
+        final var headers = getAuthorizationHeaderWithValidToken();
+        final var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        sendUriWithHeadersAndGetResultAction(get(USER_CHILD), status().isOk(), headers);
+        final var credentialsQueriesCount = Arrays.stream(statistics.getQueries())
+                .filter(query -> query.contains(UserAuthDto.class.getSimpleName()))
+                .mapToLong(query -> statistics.getQueryStatistics(query).getExecutionCount())
+                .sum();
+        final var loadedUsersCount = statistics.getEntityStatistics(User.class.getName()).getLoadCount();
+        statistics.setStatisticsEnabled(false);
+
+        assertAll("Filters and the controller have to share the user resolved for the request",
+                () -> assertEquals(0, credentialsQueriesCount, "Credentials have to be read from the token's claims"),
+                () -> assertEquals(1, loadedUsersCount));
+    }
+
+    @Test
+    @DataSet("database_init.yml")
+    void authenticatedGetRequest_shouldNotReadUserWhenRevocationTimeIsCached() throws Exception {
+        final var headers = getAuthorizationHeaderWithValidToken();
+        sendUriWithHeadersAndGetResultAction(get(USER_MY_ADV), status().isOk(), headers);
+        final var statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+
+        sendUriWithHeadersAndGetResultAction(get(USER_MY_ADV), status().isOk(), headers);
+        final var userQueriesCount = Arrays.stream(statistics.getQueries())
+                .filter(query -> query.contains("FROM User u"))
+                .mapToLong(query -> statistics.getQueryStatistics(query).getExecutionCount())
+                .sum();
+        final var loadedUsersCount = statistics.getEntityStatistics(User.class.getName()).getLoadCount();
+        statistics.setStatisticsEnabled(false);
+
+        assertAll("Stateless authentication has to trust the token's claims",
+                () -> assertEquals(0, userQueriesCount),
+                () -> assertEquals(0, loadedUsersCount));
+    }
+
+    @Test
+    @DataSet("database_init.yml")
+    void requestWithRevokedToken_shouldBeUnauthorized() throws Exception {
+        final var headers = getAuthorizationHeaderWithValidToken();
+        jdbcTemplate.update("UPDATE user SET tokens_valid_after = ? WHERE username = ?",
+                LocalDateTime.now().plusMinutes(1), VALID_USERNAME);
+        // as if the revocation time cached by this instance has expired
+        tokenRevocationCache.evict(ADMIN_ID);
+        try {
+            final var mvcResult = sendUriWithHeadersAndGetMvcResult(get(USER_MY_ADV), status().isUnauthorized(), headers);
+            assertEquals(getMessageSource("access.token.revoked"), mvcResult.getResponse().getContentAsString().trim());
+        } finally {
+            tokenRevocationCache.evict(ADMIN_ID);
+        }
+    }
+
     @Test
     @DataSet("database_init.yml")
     void postRequestWithNotValidJWTTokenIsUnauthorizedAndBadTokenSignature() throws Exception {
@@ -120,6 +250,22 @@ class SecurityConfigIntegrationTest extends BasicControllerTest {
         assertNotNull(newAccessToken);
     }
 
+    @Test
+    @DataSet("database_init.yml")
+    void postRequestToRefresh_shouldReplaceRefreshTokenAndRejectItsReuse() throws Exception {
+        final var refreshToken = getRefreshTokenValue();
+        final var mvcResult = sendUriAndGetMvcResult(post(AUTH_REFRESH_TOKEN)
+                .header(OAuth2ParameterNames.REFRESH_TOKEN, BEARER_PREFIX + refreshToken), status().isOk());
+        final var newRefreshToken = objectMapper.readTree(mvcResult.getResponse().getContentAsString())
+                .get(OAuth2ParameterNames.REFRESH_TOKEN).textValue();
+        assertNotEquals(refreshToken, newRefreshToken);
+
+        sendUriAndGetMvcResult(post(AUTH_REFRESH_TOKEN)
+                .header(OAuth2ParameterNames.REFRESH_TOKEN, BEARER_PREFIX + refreshToken), status().isUnauthorized());
+        sendUriAndGetMvcResult(post(AUTH_REFRESH_TOKEN)
+                .header(OAuth2ParameterNames.REFRESH_TOKEN, BEARER_PREFIX + newRefreshToken), status().isUnauthorized());
+    }
+
     @Test
     @DataSet("database_init.yml")
     void postRequestWithExpiredRefreshTokenIsUnauthorized() throws Exception {
@@ -0,0 +1,92 @@
+package space.obminyashka.items_exchange.authorization.jwt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the lookup of an access token in {@link InvalidatedTokensHolder} holding the given amount of
+ * invalidated tokens, which expire within the 30 minutes lifetime of access tokens. Tokens are hashed beforehand,
+ * as requests are by {@link JwtTokenProvider}. The estimated memory of the holder is reported along as
+ * the 'estimatedMemoryBytes' counter.
+ * Run the main method from the IDE or with the test classpath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class InvalidatedTokensHolderBenchmark {
+
+    private static final long TOKEN_LIFETIME_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    // set up before the trial, the auxiliary counter takes it per iteration
+    private static volatile long estimatedMemoryBytes;
+
+    @Param({"1000", "100000"})
+    private int invalidatedTokens;
+    private InvalidatedTokensHolder holder;
+    private TokenId validToken;
+    private TokenId invalidatedToken;
+    private Date expireDate;
+
+    @Setup
+    public void setUp() {
+        holder = new InvalidatedTokensHolder(TimeUnit.MINUTES.toMillis(1), new SimpleMeterRegistry());
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < invalidatedTokens; i++) {
+            holder.invalidate(createToken(), new Date(now + i * TOKEN_LIFETIME_MILLIS / invalidatedTokens));
+        }
+        expireDate = new Date(now + TOKEN_LIFETIME_MILLIS / 2);
+        validToken = createToken();
+        invalidatedToken = createToken();
+        holder.invalidate(invalidatedToken, expireDate);
+        estimatedMemoryBytes = (long) holder.estimateMemory();
+    }
+
+    @Benchmark
+    public boolean lookUpValidToken(MemoryEstimate memoryEstimate) {
+        return holder.isInvalidated(validToken, expireDate);
+    }
+
+    @Benchmark
+    public boolean lookUpInvalidatedToken(MemoryEstimate memoryEstimate) {
+        return holder.isInvalidated(invalidatedToken, expireDate);
+    }
+
+    /**
+     * Auxiliary counter of the holder's 'jwt.invalidated.tokens.memory.estimated' gauge, which is an estimate
+     * derived from the assumed object layout, not a measurement
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class MemoryEstimate {
+        public long estimatedMemoryBytes;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            estimatedMemoryBytes = InvalidatedTokensHolderBenchmark.estimatedMemoryBytes;
+        }
+    }
+
+    private static TokenId createToken() {
+        // a signed access token is about 250 characters long
+        return TokenId.of("eyJhbGciOiJIUzI1NiJ9." + UUID.randomUUID() + UUID.randomUUID() + UUID.randomUUID() + UUID.randomUUID()
+                + "." + UUID.randomUUID() + UUID.randomUUID());
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InvalidatedTokensHolderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
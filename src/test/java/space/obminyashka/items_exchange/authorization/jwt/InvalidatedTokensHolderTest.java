@@ -0,0 +1,49 @@
+package space.obminyashka.items_exchange.authorization.jwt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvalidatedTokensHolderTest {
+    private static final long BUCKET_MILLIS = 1000;
+
+    private SimpleMeterRegistry meterRegistry;
+    private InvalidatedTokensHolder holder;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        holder = new InvalidatedTokensHolder(BUCKET_MILLIS, meterRegistry);
+    }
+
+    @Test
+    void isInvalidated_shouldFindInvalidatedTokenOnly() {
+        final var expireDate = new Date(System.currentTimeMillis() + 60_000);
+        holder.invalidate(TokenId.of("invalidated"), expireDate);
+
+        assertAll("Only the invalidated token has to be found",
+                () -> assertTrue(holder.isInvalidated(TokenId.of("invalidated"), expireDate)),
+                () -> assertFalse(holder.isInvalidated(TokenId.of("valid"), expireDate)));
+    }
+
+    @Test
+    void removeExpiredTokens_shouldDropBucketsOfExpiredTokensOnly() {
+        final var expired = new Date(System.currentTimeMillis() - 2 * BUCKET_MILLIS);
+        final var notExpired = new Date(System.currentTimeMillis() + 60_000);
+        holder.invalidate(TokenId.of("expired"), expired);
+        holder.invalidate(TokenId.of("not expired"), notExpired);
+
+        holder.removeExpiredTokens();
+
+        assertAll("Tokens which haven't expired have to be kept",
+                () -> assertFalse(holder.isInvalidated(TokenId.of("expired"), expired)),
+                () -> assertTrue(holder.isInvalidated(TokenId.of("not expired"), notExpired)),
+                () -> assertEquals(1, holder.size()),
+                () -> assertEquals(InvalidatedTokensHolder.ESTIMATED_BYTES_PER_TOKEN + InvalidatedTokensHolder.BLOOM_FILTER_BYTES,
+                        meterRegistry.get("jwt.invalidated.tokens.memory.estimated").gauge().value()));
+    }
+}
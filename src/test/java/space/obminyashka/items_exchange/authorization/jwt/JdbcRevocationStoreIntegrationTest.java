@@ -0,0 +1,72 @@
+package space.obminyashka.items_exchange.authorization.jwt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.util.Date;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = "app.access.jwt.revocation.store=jdbc")
+class JdbcRevocationStoreIntegrationTest {
+    private static final long LOOK_BACK_MILLIS = 60_000;
+
+    @Autowired
+    private RevocationStore revocationStore;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    private JdbcRevocationStore anotherInstanceStore;
+
+    @BeforeEach
+    void setUp() {
+        // a store of another instance or of this one after a restart, which has nothing in memory yet
+        anotherInstanceStore = new JdbcRevocationStore(jdbcTemplate, new InvalidatedTokensHolder(1000, new SimpleMeterRegistry()),
+                LOOK_BACK_MILLIS);
+    }
+
+    @Test
+    void poll_shouldReadTokensRevokedByAnotherInstance() {
+        final var token = TokenId.of(UUID.randomUUID().toString());
+        final var expireDate = new Date(System.currentTimeMillis() + 60_000);
+        anotherInstanceStore.poll();
+
+        revocationStore.revoke(token, expireDate);
+        assertTrue(revocationStore.isRevoked(token, expireDate), "Token has to be revoked on the revoking instance at once");
+        assertFalse(anotherInstanceStore.isRevoked(token, expireDate), "Other instances don't see the token until they poll");
+
+        anotherInstanceStore.poll();
+        assertTrue(anotherInstanceStore.isRevoked(token, expireDate), "Token has to be revoked on every instance after a poll");
+    }
+
+    @Test
+    void poll_shouldSkipExpiredTokens() {
+        final var token = TokenId.of(UUID.randomUUID().toString());
+        final var expireDate = new Date(System.currentTimeMillis() - 60_000);
+        revocationStore.revoke(token, expireDate);
+
+        anotherInstanceStore.poll();
+
+        assertFalse(anotherInstanceStore.isRevoked(token, expireDate), "Expired tokens mustn't be loaded");
+    }
+
+    @Test
+    void poll_shouldReadTokensCommittedAfterThePreviousPoll() {
+        final var token = TokenId.of(UUID.randomUUID().toString());
+        final var expireDate = new Date(System.currentTimeMillis() + 60_000);
+        anotherInstanceStore.poll();
+
+        // a row created before the poll, but committed by a long transaction after it
+        jdbcTemplate.update("INSERT INTO revoked_token (token_hash, expires_at, created_at) VALUES (?, ?, ?)",
+                token.toBytes(), new Timestamp(expireDate.getTime()),
+                new Timestamp(System.currentTimeMillis() - LOOK_BACK_MILLIS / 2));
+        anotherInstanceStore.poll();
+
+        assertTrue(anotherInstanceStore.isRevoked(token, expireDate), "Tokens committed late have to be read by the next poll");
+    }
+}
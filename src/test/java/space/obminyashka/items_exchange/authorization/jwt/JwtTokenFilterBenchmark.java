@@ -0,0 +1,102 @@
+package space.obminyashka.items_exchange.authorization.jwt;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.util.ReflectionTestUtils;
+import space.obminyashka.items_exchange.authorization.AuthenticatedUserHolder;
+import space.obminyashka.items_exchange.dao.UserRepository;
+import space.obminyashka.items_exchange.model.Role;
+import space.obminyashka.items_exchange.model.User;
+import space.obminyashka.items_exchange.model.enums.Status;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Measures throughput of {@link JwtTokenFilter} authenticating a request with a valid access token statelessly,
+ * with the verified tokens cache disabled and enabled. Revocation times are cached, so no database is involved.
+ * The filter and its caches are shared by all benchmark threads, as they are by request threads of the server,
+ * so contention on the caches is measured too.
+ * Run the main method from the IDE or with the test classpath
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(8)
+public class JwtTokenFilterBenchmark {
+
+    private static final FilterChain NO_OP_CHAIN = (request, response) -> {
+    };
+
+    @Param({"0", "10000"})
+    private int verifiedTokensCacheSize;
+    private JwtTokenFilter filter;
+    private String authorizationHeader;
+
+    @Setup
+    public void setUp() {
+        final var userRepository = mock(UserRepository.class);
+        when(userRepository.findTokensValidAfterById(anyLong())).thenReturn(Optional.of(LocalDateTime.of(2020, 1, 1, 0, 0)));
+        final var invalidatedTokensHolder = new InvalidatedTokensHolder(TimeUnit.MINUTES.toMillis(1), new SimpleMeterRegistry());
+        final var jwtTokenProvider = new JwtTokenProvider(new AuthenticatedUserHolder(null),
+                new InMemoryRevocationStore(invalidatedTokensHolder),
+                new TokenRevocationCache(userRepository, TimeUnit.HOURS.toMillis(1)),
+                new VerifiedTokensCache(verifiedTokensCacheSize));
+        ReflectionTestUtils.setField(jwtTokenProvider, "secret", "JWTSuperSecretKey");
+        ReflectionTestUtils.setField(jwtTokenProvider, "jwtAccessTokenExpirationMillis", TimeUnit.HOURS.toMillis(1));
+        ReflectionTestUtils.setField(jwtTokenProvider, "statelessAuthentication", true);
+        ReflectionTestUtils.invokeMethod(jwtTokenProvider, "init");
+
+        filter = new JwtTokenFilter(jwtTokenProvider);
+        authorizationHeader = "Bearer " + jwtTokenProvider.createAccessToken(createUser());
+    }
+
+    @Benchmark
+    public Authentication authenticate() throws ServletException, IOException {
+        // mock requests aren't thread-safe, each invocation gets its own as each request does
+        final var request = new MockHttpServletRequest();
+        request.addHeader(HttpHeaders.AUTHORIZATION, authorizationHeader);
+        filter.doFilterInternal(request, new MockHttpServletResponse(), NO_OP_CHAIN);
+        final var authentication = SecurityContextHolder.getContext().getAuthentication();
+        SecurityContextHolder.clearContext();
+        return authentication;
+    }
+
+    private static User createUser() {
+        final var user = new User();
+        user.setId(1L);
+        user.setUsername("admin");
+        user.setRole(new Role(1L, "ROLE_USER", null));
+        user.setStatus(Status.ACTIVE);
+        user.setUpdated(LocalDateTime.now());
+        return user;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(JwtTokenFilterBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
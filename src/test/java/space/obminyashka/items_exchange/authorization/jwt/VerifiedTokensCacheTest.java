@@ -0,0 +1,69 @@
+package space.obminyashka.items_exchange.authorization.jwt;
+
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.Jwts;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class VerifiedTokensCacheTest {
+    private static final TokenId FIRST = TokenId.of("first");
+    private static final TokenId SECOND = TokenId.of("second");
+    private static final TokenId THIRD = TokenId.of("third");
+
+    @Test
+    void get_shouldEvictLeastRecentlyUsedToken_whenCapacityIsExceeded() {
+        final var cache = new VerifiedTokensCache(2);
+        cache.put(FIRST, claimsExpiringIn(60_000));
+        cache.put(SECOND, claimsExpiringIn(60_000));
+        cache.get(FIRST);
+
+        cache.put(THIRD, claimsExpiringIn(60_000));
+
+        assertAll("The least recently used token has to be evicted",
+                () -> assertTrue(cache.get(FIRST).isPresent()),
+                () -> assertTrue(cache.get(SECOND).isEmpty()),
+                () -> assertTrue(cache.get(THIRD).isPresent()));
+    }
+
+    @Test
+    void get_shouldReturnEmpty_whenTokenHasExpired() {
+        final var cache = new VerifiedTokensCache(2);
+        cache.put(FIRST, claimsExpiringIn(-1));
+
+        assertTrue(cache.get(FIRST).isEmpty());
+    }
+
+    @Test
+    void put_shouldKeepNothing_whenCacheIsDisabled() {
+        final var cache = new VerifiedTokensCache(0);
+        cache.put(FIRST, claimsExpiringIn(60_000));
+
+        assertTrue(cache.get(FIRST).isEmpty());
+    }
+
+    @Test
+    void put_shouldKeepSizeWithinCapacity_whenTokensArePutConcurrently() throws Exception {
+        final int capacity = 1000;
+        final var cache = new VerifiedTokensCache(capacity);
+
+        final var putting = IntStream.range(0, 8)
+                .mapToObj(thread -> CompletableFuture.runAsync(() -> IntStream.range(0, 10 * capacity)
+                        .forEach(i -> cache.put(TokenId.of(thread + "-" + i), claimsExpiringIn(60_000)))))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(putting).get(10, TimeUnit.SECONDS);
+
+        assertAll("Concurrent puts have to be evicted down to the capacity",
+                () -> assertTrue(cache.size() <= capacity, () -> "Size is " + cache.size()),
+                () -> assertTrue(cache.size() >= capacity / 2, () -> "Size is " + cache.size()));
+    }
+
+    private static Claims claimsExpiringIn(long millis) {
+        return Jwts.claims().setExpiration(new Date(System.currentTimeMillis() + millis));
+    }
+}
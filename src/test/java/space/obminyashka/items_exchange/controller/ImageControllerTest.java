@@ -2,8 +2,6 @@ package space.obminyashka.items_exchange.controller;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.mockito.Mock;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
@@ -14,7 +12,6 @@ import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
-import org.springframework.web.multipart.MultipartFile;
 import space.obminyashka.items_exchange.BasicControllerTest;
 import space.obminyashka.items_exchange.exception.ElementsNumberExceedException;
 import space.obminyashka.items_exchange.exception.IllegalIdentifierException;
@@ -24,6 +21,7 @@ import space.obminyashka.items_exchange.model.Image;
 import space.obminyashka.items_exchange.model.User;
 import space.obminyashka.items_exchange.model.enums.Status;
 import space.obminyashka.items_exchange.service.AdvertisementService;
+import space.obminyashka.items_exchange.service.ImageProcessingService;
 import space.obminyashka.items_exchange.service.ImageService;
 
 import java.io.IOException;
@@ -53,12 +51,12 @@ class ImageControllerTest extends BasicControllerTest {
     private AdvertisementService advertisementService;
     @MockBean
     private ImageService imageService;
+    @MockBean
+    private ImageProcessingService imageProcessingService;
     @Mock
     private Advertisement advertisement;
     @Mock
     private User user;
-    @Captor
-    private ArgumentCaptor<List<byte[]>> listArgumentCaptor;
     private ArrayList<Image> testImages;
     private MockMultipartFile jpeg;
 
@@ -82,7 +80,7 @@ class ImageControllerTest extends BasicControllerTest {
                 .collect(ArrayList::new, (images, value) -> images.add(new Image()), ArrayList::addAll);
         when(advertisement.getImages()).thenReturn(testImages);
         when(advertisement.getUser()).thenReturn(user);
-        when(imageService.compress(jpeg)).thenReturn(jpeg.getBytes());
+        when(imageService.savePendingToAdvertisement(advertisement, 1)).thenReturn(List.of(11L));
     }
 
     @WithMockUser("admin")
@@ -114,12 +112,13 @@ class ImageControllerTest extends BasicControllerTest {
     void saveImages_shouldSaveImagesWhenTotalAmountLessThan10() throws Exception {
         testImages.remove(0);
 
-        sendUriAndGetMvcResult(multipart(IMAGE_BY_ADV_ID, 1L).file(jpeg), status().isOk());
+        final var mvcResult = sendUriAndGetMvcResult(multipart(IMAGE_BY_ADV_ID, 1L).file(jpeg), status().isAccepted());
 
-        verify(imageService).compress(any(MultipartFile.class));
-        verify(imageService).saveToAdvertisement(any(), listArgumentCaptor.capture());
+        verify(imageProcessingService).submit(anyList(), eq(false));
+        verify(imageService).savePendingToAdvertisement(advertisement, 1);
+        verify(imageProcessingService).completeWhenProcessed(eq(List.of(11L)), any());
         verify(advertisementService).findByIdAndOwnerUsername(anyLong(), anyString());
-        assertEquals(jpeg.getBytes(), listArgumentCaptor.getValue().get(0));
+        assertEquals("[11]", mvcResult.getResponse().getContentAsString());
     }
 
     @WithMockUser("admin")
@@ -64,6 +64,8 @@ class UserControllerTest extends BasicControllerTest {
     @BeforeEach
     void setUp() {
         user = createUser();
+        // @CurrentUser is resolved before the request body is validated, so every request needs an existing user
+        when(userService.findByUsernameOrEmail(any())).thenReturn(Optional.of(user));
     }
 
     @Value("${max.children.amount}")
@@ -79,15 +81,16 @@ class UserControllerTest extends BasicControllerTest {
     @Test
     @WithMockUser(username = "deletedUser")
     void updateUserInfo_WhenUserHasStatusDeleted_ShouldReturn403WithSpecificMessage() throws Exception {
-        user.setStatus(Status.DELETED);
-        when(userService.findByUsernameOrEmail(any())).thenReturn(Optional.of(user));
+        final var deletedUser = new UserAuthDto(1L, "deletedUser", "", "", OLD_USER_VALID_EMAIL, "", "ROLE_USER",
+                Status.DELETED, LocalDateTime.now());
+        when(userService.findAuthByUsernameOrEmail(any())).thenReturn(Optional.of(deletedUser));
         when(userService.getDaysBeforeDeletion(any())).thenReturn(7L);
 
         MvcResult mvcResult = sendDtoAndGetMvcResult(put(USER_MY_INFO), createUserUpdateDto(), status().isForbidden());
         var responseContentAsString = getResponseContentAsString(mvcResult);
         var expectedErrorMessage = new StringJoiner(". ")
                 .add(getMessageSource("exception.illegal.operation"))
-                .add(getParametrizedMessageSource("account.self.delete.request", userService.getDaysBeforeDeletion(user)))
+                .add(getParametrizedMessageSource("account.self.delete.request", userService.getDaysBeforeDeletion(deletedUser.updated())))
                 .toString();
 
         assertTrue(responseContentAsString.contains(expectedErrorMessage));
@@ -96,7 +99,6 @@ class UserControllerTest extends BasicControllerTest {
     @Test
     @WithMockUser(username = "admin")
     void updateUserInfo_badAmountPhones_ReturnHttpStatusBadRequest() throws Exception {
-        when(userService.findByUsernameOrEmail(any())).thenReturn(Optional.of(user));
         MvcResult mvcResult = sendDtoAndGetMvcResult(put(USER_MY_INFO), createUserUpdateDtoWithInvalidAmountOfPhones(), status().isBadRequest());
         var responseContentAsString = getResponseContentAsString(mvcResult);
         var expectedErrorMessage = getErrorMessageForInvalidField("invalid.phones-amount", "{max}", maxPhonesAmount);
@@ -141,7 +143,6 @@ class UserControllerTest extends BasicControllerTest {
     @WithMockUser(username = "admin")
     void updateChild_NotValidDto_ShouldThrowIllegalIdentifierException() throws Exception {
         var notValidUpdatingChildDto = getTestChildren(1L, 999L, 2018);
-        when(userService.findByUsernameOrEmail(any())).thenReturn(Optional.of(user));
 
         final MvcResult mvcResult = sendDtoAndGetMvcResult(put(USER_CHILD), notValidUpdatingChildDto, status().isBadRequest());
         assertTrue(mvcResult.getResponse().getContentAsString().contains("Not all children from dto present in"));
@@ -154,7 +155,6 @@ class UserControllerTest extends BasicControllerTest {
         user.setChildren(List.of(
                 new Child(1L, Gender.MALE, LocalDate.of(2019, 1, 1), user),
                 new Child(2L, Gender.FEMALE, LocalDate.of(2019, 1, 1), user)));
-        when(userService.findByUsernameOrEmail(any())).thenReturn(Optional.of(user));
 
         final MvcResult mvcResult = sendDtoAndGetMvcResult(post(USER_CHILD), badTotalAmountChildDto, status().isNotAcceptable());
         assertTrue(Objects.requireNonNull(mvcResult.getResolvedException()).getMessage()
@@ -164,7 +164,6 @@ class UserControllerTest extends BasicControllerTest {
     @Test
     @WithMockUser(username = "admin")
     void updateUserPassword_WhenOldPasswordWrong_ShouldThrowInvalidDtoException() throws Exception {
-        when(userService.findByUsernameOrEmail(any())).thenReturn(Optional.of(user));
         when(userService.isPasswordMatches(any(), any())).thenReturn(false);
 
         UserChangePasswordDto userChangePasswordDto = new UserChangePasswordDto(WRONG_OLD_PASSWORD, NEW_PASSWORD, NEW_PASSWORD);
@@ -200,7 +199,6 @@ class UserControllerTest extends BasicControllerTest {
     @Test
     @WithMockUser(username = "user")
     void updateUserEmail_WhenUserEnteredOldEmail_ShouldThrowDataConflictException() throws Exception {
-        when(userService.findByUsernameOrEmail(any())).thenReturn(Optional.of(user));
 
         updateUserEmailBasicTest(OLD_USER_VALID_EMAIL, OLD_USER_VALID_EMAIL, status().isConflict(), "exception.email.old");
     }
@@ -208,7 +206,6 @@ class UserControllerTest extends BasicControllerTest {
     @Test
     @WithMockUser(username = "user")
     void updateUserEmail_WhenUserEnteredExistedEmail_ShouldThrowDataConflictException() throws Exception {
-        when(userService.findByUsernameOrEmail(any())).thenReturn(Optional.of(user));
         when(userService.existsByEmail(any())).thenReturn(true);
 
         updateUserEmailBasicTest(OLD_ADMIN_VALID_EMAIL, OLD_ADMIN_VALID_EMAIL, status().isConflict(), "email.duplicate");
@@ -217,7 +214,6 @@ class UserControllerTest extends BasicControllerTest {
     @Test
     @WithMockUser(username = "admin")
     void setUserAvatar_whenReceivedBMPImage_shouldThrowUnsupportedMediaTypeException() throws Exception {
-        when(userService.findByUsernameOrEmail(any())).thenReturn(Optional.of(user));
 
         MockMultipartFile bmp = new MockMultipartFile("file", "image-bmp.bmp", "image/bmp", "image bmp".getBytes());
         sendUriAndGetMvcResult(multipart(USER_SERVICE_CHANGE_AVATAR).file(bmp), status().isUnsupportedMediaType());
@@ -232,7 +228,6 @@ class UserControllerTest extends BasicControllerTest {
     }
 
     private MvcResult selfDeleteRequestBasicTest(boolean isUsernameExists, String oldPassword, MockHttpServletRequestBuilder request, ResultMatcher expectedResult) throws Exception {
-        when(userService.findByUsernameOrEmail(any())).thenReturn(Optional.of(user));
         when(userService.isPasswordMatches(any(), any())).thenReturn(isUsernameExists);
 
         UserDeleteFlowDto userDeleteFlowDto = new UserDeleteFlowDto(oldPassword, oldPassword);
@@ -302,7 +297,6 @@ class UserControllerTest extends BasicControllerTest {
     @WithMockUser(username = "admin")
     void addChild_InvalidChildAge_ShouldReturnHttpStatusBadRequest() throws Exception {
         var childDto = getTestChildren(0L, 0L, 2001);
-        when(userService.findByUsernameOrEmail(any())).thenReturn(Optional.of(user));
 
         final MvcResult mvcResult = sendDtoAndGetMvcResult(post(USER_CHILD), childDto, status().isBadRequest());
         final var resolvedException = mvcResult.getResolvedException();
@@ -0,0 +1,96 @@
+package space.obminyashka.items_exchange.dao;
+
+import com.github.database.rider.core.api.dataset.DataSet;
+import com.github.database.rider.junit5.api.DBRider;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import space.obminyashka.items_exchange.model.enums.ImageStatus;
+import space.obminyashka.items_exchange.util.QueryPlanUtil;
+import space.obminyashka.items_exchange.util.RecordingStatementInspector;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks that the lookups run by repositories are served by indexes instead of full table scans.
+ * The statements generated by Hibernate are recorded and explained, so a changed mapping or query can't slip by
+ */
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+        "space.obminyashka.items_exchange.util.RecordingStatementInspector")
+@DBRider
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class IndexUsageIntegrationTest {
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private ImageRepository imageRepository;
+    @Autowired
+    private AdvertisementRepository advertisementRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private RefreshTokenRepository refreshTokenRepository;
+    @Autowired
+    private ChatRepository chatRepository;
+    @Autowired
+    private LocationRepository locationRepository;
+    @Autowired
+    private AdvertisementEventRepository advertisementEventRepository;
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("getLookups")
+    @DataSet("database_init.yml")
+    void lookupQuery_shouldNotScanWholeTable(String lookupName, Runnable lookup) {
+        final List<String> statements;
+        try {
+            RecordingStatementInspector.start();
+            lookup.run();
+        } finally {
+            statements = RecordingStatementInspector.stop();
+        }
+
+        assertFalse(statements.isEmpty(), lookupName + " has to run a statement");
+        // the first statement is the lookup itself, the rest load eager associations by their primary keys
+        final var plan = QueryPlanUtil.explain(jdbcTemplate, statements.get(0));
+        assertFalse(plan.contains("tableScan"), plan);
+    }
+
+    private Stream<Arguments> getLookups() {
+        return Stream.of(
+                Arguments.of("ImageRepository.findStatusesByAdvertisementId",
+                        (Runnable) () -> imageRepository.findStatusesByAdvertisementId(1L)),
+                Arguments.of("ImageRepository.findIdsByAdvertisementIdAndStatus",
+                        (Runnable) () -> imageRepository.findIdsByAdvertisementIdAndStatus(1L, ImageStatus.READY)),
+                Arguments.of("ImageRepository.findRenditionKey",
+                        (Runnable) () -> imageRepository.findRenditionKey(1L, 1L, 150)),
+                Arguments.of("AdvertisementRepository.findAllTitlesByUserUsername",
+                        (Runnable) () -> advertisementRepository.findAllTitlesByUserUsername("admin")),
+                Arguments.of("UserRepository.findAuthByEmail",
+                        (Runnable) () -> userRepository.findAuthByEmail("admin@gmail.com")),
+                Arguments.of("UserRepository.findLoginDetailsByUsername",
+                        (Runnable) () -> userRepository.findLoginDetailsByUsername("admin")),
+                Arguments.of("RefreshTokenRepository.findWithUserByTokenHash",
+                        (Runnable) () -> refreshTokenRepository.findWithUserByTokenHash("hash")),
+                Arguments.of("RefreshTokenRepository.deleteByPreviousTokenHash",
+                        (Runnable) () -> refreshTokenRepository.deleteByPreviousTokenHash("hash")),
+                Arguments.of("RefreshTokenRepository.findExpiredIds",
+                        (Runnable) () -> refreshTokenRepository.findExpiredIds(LocalDateTime.now(), PageRequest.of(0, 10))),
+                Arguments.of("ChatRepository.findByHash",
+                        (Runnable) () -> chatRepository.findByHash("hash")),
+                Arguments.of("LocationRepository.findByI18n",
+                        (Runnable) () -> locationRepository.findByI18n("EN")),
+                Arguments.of("AdvertisementEventRepository.findByCreatedAfterAndIdGreaterThanOrderById",
+                        (Runnable) () -> advertisementEventRepository.findByCreatedAfterAndIdGreaterThanOrderById(
+                                LocalDateTime.now(), 0, PageRequest.of(0, 10)))
+        );
+    }
+}
@@ -0,0 +1,63 @@
+package space.obminyashka.items_exchange.dao;
+
+import com.github.database.rider.core.api.dataset.DataSet;
+import com.github.database.rider.junit5.api.DBRider;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import space.obminyashka.items_exchange.service.UserService;
+import space.obminyashka.items_exchange.storage.BlobReference;
+import space.obminyashka.items_exchange.storage.BlobStore;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DBRider
+@DataSet("database_init.yml")
+class UserAvatarRepositoryIntegrationTest {
+    private static final long ADMIN_ID = 1L;
+    private static final String ADMIN_USERNAME = "admin";
+
+    @Autowired
+    private UserAvatarRepository userAvatarRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private BlobStore blobStore;
+
+    @Test
+    void setUserAvatar_shouldPersistAndReplaceAvatar() {
+        final var admin = userRepository.findByUsername(ADMIN_USERNAME).orElseThrow();
+        final var firstAvatar = "first avatar".getBytes(StandardCharsets.UTF_8);
+        final var secondAvatar = "second avatar".getBytes(StandardCharsets.UTF_8);
+
+        userService.setUserAvatar(firstAvatar, admin);
+        final var firstStored = findStoredAvatar();
+        userService.setUserAvatar(secondAvatar, admin);
+        final var secondStored = findStoredAvatar();
+
+        assertAll("Avatar has to be put into the blob store and replaced by the next one",
+                () -> assertTrue(BlobReference.keyOf(firstStored).isPresent()),
+                () -> assertArrayEquals(firstAvatar, blobStore.read(firstStored)),
+                () -> assertTrue(BlobReference.keyOf(secondStored).isPresent()),
+                () -> assertArrayEquals(secondAvatar, blobStore.read(secondStored)));
+    }
+
+    @Test
+    void updateContent_shouldUpdateOnlyExistingUser() {
+        final var avatar = "avatar".getBytes(StandardCharsets.UTF_8);
+
+        assertAll("Only the row of the given user has to be updated",
+                () -> assertEquals(1, userAvatarRepository.updateContent(ADMIN_ID, avatar)),
+                () -> assertEquals(0, userAvatarRepository.updateContent(Long.MAX_VALUE, avatar)),
+                () -> assertArrayEquals(avatar, blobStore.read(findStoredAvatar())));
+    }
+
+    private byte[] findStoredAvatar() {
+        return userAvatarRepository.findById(ADMIN_ID).orElseThrow().getContent();
+    }
+}
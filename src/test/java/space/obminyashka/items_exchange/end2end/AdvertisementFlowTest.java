@@ -4,6 +4,7 @@ package space.obminyashka.items_exchange.end2end;
 import com.github.database.rider.core.api.dataset.DataSet;
 import com.github.database.rider.core.api.dataset.ExpectedDataSet;
 import com.github.database.rider.junit5.api.DBRider;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -25,9 +26,11 @@ import space.obminyashka.items_exchange.dao.AdvertisementRepository;
 import space.obminyashka.items_exchange.dto.AdvertisementFilterDto;
 import space.obminyashka.items_exchange.dto.AdvertisementModificationDto;
 import space.obminyashka.items_exchange.dto.AdvertisementTitleDto;
+import space.obminyashka.items_exchange.exception.BadRequestException;
 import space.obminyashka.items_exchange.model.enums.AgeRange;
 import space.obminyashka.items_exchange.model.enums.Gender;
 import space.obminyashka.items_exchange.model.enums.Season;
+import space.obminyashka.items_exchange.service.AdvertisementService;
 import space.obminyashka.items_exchange.util.AdvertisementDtoCreatingUtil;
 import space.obminyashka.items_exchange.util.JsonConverter;
 import space.obminyashka.items_exchange.util.MessageSourceUtil;
@@ -35,8 +38,11 @@ import space.obminyashka.items_exchange.util.MessageSourceUtil;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Stream;
 
+import static org.hamcrest.Matchers.contains;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -55,12 +61,15 @@ class AdvertisementFlowTest extends BasicControllerTest {
     private static final long VALID_ID = 1L;
     private static final long INVALID_ID = 999L;
     private final AdvertisementRepository advertisementRepository;
+    private final AdvertisementService advertisementService;
     private final MockMultipartFile jpeg;
 
     @Autowired
-    public AdvertisementFlowTest(MockMvc mockMvc, AdvertisementRepository advertisementRepository) throws IOException {
+    public AdvertisementFlowTest(MockMvc mockMvc, AdvertisementRepository advertisementRepository,
+                                 AdvertisementService advertisementService) throws IOException {
         super(mockMvc);
         this.advertisementRepository = advertisementRepository;
+        this.advertisementService = advertisementService;
         jpeg = new MockMultipartFile("image", "test-image.jpeg", MediaType.IMAGE_JPEG_VALUE,
                 Files.readAllBytes(Path.of("src/test/resources/image/test-image.jpeg")));
     }
@@ -71,6 +80,7 @@ class AdvertisementFlowTest extends BasicControllerTest {
     void findPaginated_shouldReturnSearchResults(String keyword, int expectedResultQuantity) throws Exception {
         int page = 0;
         int size = 12;
+        advertisementService.rebuildSearchIndex();
 
         MvcResult mvcResult = sendUriAndGetMvcResult(get(ADV_SEARCH_PAGINATED, keyword, page, size), status().isOk());
         final var totalElements = Stream.of(mvcResult.getResponse().getContentAsString().split(","))
@@ -88,7 +98,9 @@ class AdvertisementFlowTest extends BasicControllerTest {
                 Arguments.of("blouses description", 1), // full description matching
                 Arguments.of("pajamas", 1), // full topic matching
                 Arguments.of("description", 5), // partial description matching
-                Arguments.of("ses", 2) // partial topic matching
+                Arguments.of("ses", 2), // partial topic matching
+                Arguments.of("dres", 1), // topic prefix matching
+                Arguments.of("DESCR", 5) // case-insensitive description prefix matching
         );
     }
 
@@ -114,6 +126,66 @@ class AdvertisementFlowTest extends BasicControllerTest {
                 .andExpect(jsonPath("$.length()").value(advertisementRepository.count()));
     }
 
+    @Test
+    @DataSet("database_init.yml")
+    void findThumbnailsFeed_shouldWalkThroughAllAdvertisementsByCursor() throws Exception {
+        final var firstSlice = sendUriAndGetResultAction(get(ADV_THUMBNAIL_FEED).param("size", "2"), status().isOk())
+                .andExpect(jsonPath("$.content[*].advertisementId").value(contains(5, 4)))
+                .andReturn();
+        final var secondSlice = sendUriAndGetResultAction(get(ADV_THUMBNAIL_FEED).param("size", "2")
+                .param("cursor", getNextCursor(firstSlice)), status().isOk())
+                .andExpect(jsonPath("$.content[*].advertisementId").value(contains(3, 2)))
+                .andReturn();
+        sendUriAndGetResultAction(get(ADV_THUMBNAIL_FEED).param("size", "2")
+                .param("cursor", getNextCursor(secondSlice)), status().isOk())
+                .andExpect(jsonPath("$.content[*].advertisementId").value(contains(1)))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    @DataSet("database_init.yml")
+    void findFeedByKeyword_shouldWalkThroughAllSearchResultsByCursor() throws Exception {
+        advertisementService.rebuildSearchIndex();
+
+        final var firstSlice = sendUriAndGetResultAction(get(ADV_SEARCH_FEED, "description").param("size", "3"), status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(3))
+                .andReturn();
+        sendUriAndGetResultAction(get(ADV_SEARCH_FEED, "description").param("size", "3")
+                .param("cursor", getNextCursor(firstSlice)), status().isOk())
+                .andExpect(jsonPath("$.content.length()").value(2))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    @DataSet("database_init.yml")
+    void findFeedByKeyword_shouldNotSkipOrRepeatResultsOfEqualRelevance() throws Exception {
+        advertisementService.rebuildSearchIndex();
+
+        final List<Integer> foundIds = new ArrayList<>();
+        String cursor = null;
+        do {
+            final var request = get(ADV_SEARCH_FEED, "description").param("size", "1");
+            final var slice = sendUriAndGetResultAction(cursor == null ? request : request.param("cursor", cursor),
+                    status().isOk()).andReturn();
+            foundIds.addAll(JsonPath.read(slice.getResponse().getContentAsString(), "$.content[*].advertisementId"));
+            cursor = getNextCursor(slice);
+        } while (cursor != null);
+
+        assertEquals(List.of(5, 4, 3, 2, 1), foundIds, "Equally relevant advertisements have to be ordered by ID");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"not a cursor", "Zm9vOmJhcg"})
+    @DataSet("database_init.yml")
+    void findThumbnailsFeed_shouldReturn400WhenCursorIsInvalid(String cursor) throws Exception {
+        final var mvcResult = sendUriAndGetMvcResult(get(ADV_THUMBNAIL_FEED).param("cursor", cursor), status().isBadRequest());
+        verifyResultException(mvcResult, BadRequestException.class, MessageSourceUtil.getMessageSource("invalid.cursor"));
+    }
+
+    private String getNextCursor(MvcResult mvcResult) throws Exception {
+        return JsonPath.read(mvcResult.getResponse().getContentAsString(), "$.nextCursor");
+    }
+
     @Test
     @DisplayName("Should return total size of existed advertisements")
     @DataSet("database_init.yml")
@@ -160,13 +232,14 @@ class AdvertisementFlowTest extends BasicControllerTest {
     @Test
     @WithMockUser(username = "admin")
     @DataSet("database_init.yml")
-    @ExpectedDataSet(value = "advertisement/create.yml", ignoreCols = {"default_photo", "created", "updated", "resource"})
+    @ExpectedDataSet(value = "advertisement/create.yml", ignoreCols = {"thumbnail_id", "created", "updated", "resource"})
     void createAdvertisement_shouldCreateValidAdvertisement() throws Exception {
         AdvertisementModificationDto nonExistDto =
                 AdvertisementDtoCreatingUtil.createNonExistAdvertisementModificationDto();
         final var dtoJson = new MockMultipartFile("dto", "json", MediaType.APPLICATION_JSON_VALUE, asJsonString(nonExistDto).getBytes());
         sendUriAndGetResultAction(multipart(ADV).file(jpeg).file(dtoJson), status().isCreated())
-                .andExpect(jsonPath("$.id").exists());
+                .andExpect(jsonPath("$.id").exists())
+                .andExpect(jsonPath("$.pendingImageIds.length()").value(1));
     }
 
     @Test
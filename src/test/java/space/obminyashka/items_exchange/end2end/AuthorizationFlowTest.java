@@ -11,6 +11,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.HttpHeaders;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.oauth2.core.endpoint.OAuth2ParameterNames;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.annotation.Commit;
@@ -19,6 +20,7 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultMatcher;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import space.obminyashka.items_exchange.BasicControllerTest;
+import space.obminyashka.items_exchange.dao.UserRepository;
 import space.obminyashka.items_exchange.dto.UserLoginDto;
 import space.obminyashka.items_exchange.dto.UserRegistrationDto;
 import space.obminyashka.items_exchange.exception.DataConflictException;
@@ -28,7 +30,7 @@ import java.util.stream.Stream;
 import static org.hamcrest.CoreMatchers.instanceOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
-import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -53,6 +55,11 @@ class AuthorizationFlowTest extends BasicControllerTest {
     private static final String BEARER_PREFIX = "Bearer ";
     private final UserRegistrationDto userRegistrationDto = new UserRegistrationDto(VALID_USERNAME, VALID_EMAIL, VALID_PASSWORD, VALID_PASSWORD);
 
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private PasswordEncoder passwordEncoder;
+
     @Autowired
     public AuthorizationFlowTest(MockMvc mockMvc) {
         super(mockMvc);
@@ -109,6 +116,17 @@ class AuthorizationFlowTest extends BasicControllerTest {
                 .andExpect(content().json("{'avatarImage':'dGVzdCBpbWFnZSBwbmc='}"));
     }
 
+    @Test
+    @DataSet(value = "auth/login.yml")
+    void login_Success_shouldRehashPasswordHashedWithAnotherCost() throws Exception {
+        sendDtoAndGetResultAction(post(AUTH_LOGIN), new UserLoginDto(VALID_USERNAME, VALID_PASSWORD), status().isOk());
+
+        final var password = userRepository.findByUsername(VALID_USERNAME).orElseThrow().getPassword();
+        assertAll("Password has to be rehashed with the calibrated cost",
+                () -> assertFalse(passwordEncoder.upgradeEncoding(password)),
+                () -> assertTrue(passwordEncoder.matches(VALID_PASSWORD, password)));
+    }
+
     @Test
     @DataSet(value = "auth/login.yml")
     void logout_Success_ShouldBeInvalidatedInInvalidatedTokensHolder_And_DeletedRefreshToken() throws Exception {
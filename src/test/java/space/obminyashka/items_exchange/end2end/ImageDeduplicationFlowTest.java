@@ -0,0 +1,119 @@
+package space.obminyashka.items_exchange.end2end;
+
+import com.github.database.rider.core.api.dataset.DataSet;
+import com.github.database.rider.junit5.api.DBRider;
+import com.jayway.jsonpath.JsonPath;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import space.obminyashka.items_exchange.BasicControllerTest;
+import space.obminyashka.items_exchange.storage.BlobReference;
+import space.obminyashka.items_exchange.storage.BlobStore;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static space.obminyashka.items_exchange.api.ApiKey.IMAGE_BY_ADV_ID;
+
+@SpringBootTest
+@DBRider
+@AutoConfigureMockMvc
+@DataSet("database_init.yml")
+class ImageDeduplicationFlowTest extends BasicControllerTest {
+
+    private static final long ADVERTISEMENT_ID = 1L;
+
+    @Autowired
+    private BlobStore blobStore;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    public ImageDeduplicationFlowTest(MockMvc mockMvc) {
+        super(mockMvc);
+    }
+
+    @Test
+    @WithMockUser("admin")
+    void identicalUploads_shouldShareBlobUntilTheLastImageIsRemoved() throws Exception {
+        // unique content, so blobs of other tests don't reference it
+        final var photo = new MockMultipartFile("image", "photo.jpeg", MediaType.IMAGE_JPEG_VALUE, createUniquePhoto());
+        final double reusedBefore = countReused();
+
+        final long firstImageId = upload(photo);
+        awaitImageReady(ADVERTISEMENT_ID, firstImageId);
+        final long secondImageId = upload(photo);
+        awaitImageReady(ADVERTISEMENT_ID, secondImageId);
+
+        final var key = findBlobKey(firstImageId);
+        assertAll("The second upload has to reuse the processing and the blob of the first one",
+                () -> assertEquals(key, findBlobKey(secondImageId)),
+                () -> assertEquals(reusedBefore + 1, countReused()),
+                () -> assertEquals(findRenditionKeys(firstImageId), findRenditionKeys(secondImageId)),
+                () -> assertTrue(blobStore.exists(key)));
+
+        remove(firstImageId);
+        assertTrue(blobStore.exists(key), "Blob has to be kept while another image references it");
+
+        remove(secondImageId);
+        assertFalse(blobStore.exists(key), "Blob has to be deleted with the last image referencing it");
+    }
+
+    private long upload(MockMultipartFile photo) throws Exception {
+        final var response = sendUriAndGetMvcResult(multipart(IMAGE_BY_ADV_ID, ADVERTISEMENT_ID).file(photo), status().isAccepted())
+                .getResponse().getContentAsString();
+        return JsonPath.<Number>read(response, "$[0]").longValue();
+    }
+
+    private void remove(long imageId) throws Exception {
+        sendUriAndGetMvcResult(delete(IMAGE_BY_ADV_ID, ADVERTISEMENT_ID).param("ids", String.valueOf(imageId)), status().isOk());
+    }
+
+    private String findBlobKey(long imageId) {
+        final var resource = jdbcTemplate.queryForObject("SELECT resource FROM image WHERE id = ?", byte[].class, imageId);
+        return BlobReference.keyOf(resource).orElseThrow();
+    }
+
+    private List<String> findRenditionKeys(long imageId) {
+        return jdbcTemplate.queryForList("SELECT blob_key FROM image_rendition WHERE image_id = ? ORDER BY width",
+                String.class, imageId);
+    }
+
+    private double countReused() {
+        return meterRegistry.get("image.processing.reused").counter().count();
+    }
+
+    private static byte[] createUniquePhoto() throws IOException {
+        final var photo = new BufferedImage(400, 300, BufferedImage.TYPE_3BYTE_BGR);
+        final var graphics = photo.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, 400, 300, Color.BLUE));
+        graphics.fillRect(0, 0, 400, 300);
+        final var random = new Random(System.nanoTime());
+        for (int i = 0; i < 200; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.drawLine(random.nextInt(400), random.nextInt(300), random.nextInt(400), random.nextInt(300));
+        }
+        graphics.dispose();
+        final var jpeg = new ByteArrayOutputStream();
+        ImageIO.write(photo, "jpeg", jpeg);
+        return jpeg.toByteArray();
+    }
+}
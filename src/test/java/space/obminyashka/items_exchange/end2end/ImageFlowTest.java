@@ -11,20 +11,31 @@ import org.junit.jupiter.params.provider.MethodSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.annotation.Commit;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultMatcher;
 import space.obminyashka.items_exchange.BasicControllerTest;
+import space.obminyashka.items_exchange.storage.BlobStore;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import static org.hamcrest.Matchers.hasSize;
-import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
@@ -41,6 +52,11 @@ class ImageFlowTest extends BasicControllerTest {
     private static final String TEST_PNG = "test image png";
     private final MockMultipartFile txt = new MockMultipartFile("image", "text.txt", MediaType.TEXT_PLAIN_VALUE, "plain text".getBytes());
 
+    @Autowired
+    private BlobStore blobStore;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Autowired
     public ImageFlowTest(MockMvc mockMvc) {
         super(mockMvc);
@@ -64,6 +80,115 @@ class ImageFlowTest extends BasicControllerTest {
                 .andExpect(jsonPath("$[1].resource").value(Base64.encodeString(TEST_PNG)));
     }
 
+    @Test
+    void getImage_shouldStreamImageWithCachingHeaders() throws Exception {
+        final var response = sendUriAndGetMvcResult(get(IMAGE_BY_ADV_ID_AND_ID, 1L, 1L), status().isOk()).getResponse();
+
+        // the image is stored inline in its row, which has no modification time, so only its ETag validates it
+        assertAll("Raw image bytes have to be returned with caching headers",
+                () -> assertEquals(TEST_JPEG, response.getContentAsString()),
+                () -> assertEquals(MediaType.APPLICATION_OCTET_STREAM_VALUE, response.getContentType()),
+                () -> assertNotNull(response.getHeader(HttpHeaders.ETAG)),
+                () -> assertNull(response.getHeader(HttpHeaders.LAST_MODIFIED)),
+                () -> assertTrue(response.getHeader(HttpHeaders.CACHE_CONTROL).contains("immutable")));
+    }
+
+    @Test
+    void getImage_shouldReturnRenditionForRequestedWidth() throws Exception {
+        final var response = sendUriAndGetMvcResult(get(IMAGE_BY_ADV_ID_AND_ID, 1L, 1L).param("w", "200"),
+                status().isOk()).getResponse();
+
+        // the stored content isn't a decodable image, so its rendition is the content itself
+        assertAll("Rendition has to be made for a legacy image on the first request",
+                () -> assertEquals(TEST_JPEG, response.getContentAsString()),
+                () -> assertNotNull(response.getHeader(HttpHeaders.ETAG)),
+                () -> assertNotNull(response.getHeader(HttpHeaders.LAST_MODIFIED), "Blob store file has to be dated"));
+    }
+
+    @Test
+    void getImage_shouldStoreSingleRenditionWhenRequestedConcurrently() throws Exception {
+        final int requests = 8;
+        final var renditionKey = blobStore.keyOf(TEST_JPEG.getBytes());
+        final var referencesBefore = countReferences(renditionKey);
+        final var start = new CountDownLatch(1);
+        final var executor = Executors.newFixedThreadPool(requests);
+        try {
+            final List<Future<MockHttpServletResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                responses.add(executor.submit(() -> {
+                    start.await();
+                    return mockMvc.perform(get(IMAGE_BY_ADV_ID_AND_ID, 1L, 1L).param("w", "200")).andReturn().getResponse();
+                }));
+            }
+            start.countDown();
+            for (Future<MockHttpServletResponse> response : responses) {
+                final var servedResponse = response.get(10, TimeUnit.SECONDS);
+                assertAll("Every concurrent request has to be served with the same rendition",
+                        () -> assertEquals(HttpStatus.OK.value(), servedResponse.getStatus()),
+                        () -> assertEquals(TEST_JPEG, servedResponse.getContentAsString()));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertAll("Only one rendition has to be stored and referenced",
+                () -> assertEquals(1, jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM image_rendition WHERE image_id = 1", Integer.class)),
+                () -> assertEquals(referencesBefore + 1, countReferences(renditionKey)));
+    }
+
+    private int countReferences(String blobKey) {
+        return jdbcTemplate.queryForList("SELECT reference_count FROM blob_usage WHERE blob_key = ?", Integer.class, blobKey)
+                .stream()
+                .findFirst()
+                .orElse(0);
+    }
+
+    @Test
+    void getImage_shouldFallBackToStoredFormatWhenNoAcceptedVariantExists() throws Exception {
+        final var response = sendUriAndGetMvcResult(get(IMAGE_BY_ADV_ID_AND_ID, 1L, 1L).accept("image/webp", "image/*"),
+                status().isOk()).getResponse();
+
+        assertAll("Stored content has to be returned and the response has to vary by the Accept header",
+                () -> assertEquals(TEST_JPEG, response.getContentAsString()),
+                () -> assertEquals(HttpHeaders.ACCEPT, response.getHeader(HttpHeaders.VARY)));
+    }
+
+    @Test
+    void getImage_shouldReturn400WhenWidthIsNotPositive() throws Exception {
+        sendUriAndGetMvcResult(get(IMAGE_BY_ADV_ID_AND_ID, 1L, 1L).param("w", "0"), status().isBadRequest());
+    }
+
+    @Test
+    void getImage_shouldReturnNotModifiedForKnownETag() throws Exception {
+        final var eTag = sendUriAndGetMvcResult(get(IMAGE_BY_ADV_ID_AND_ID, 1L, 2L), status().isOk())
+                .getResponse().getHeader(HttpHeaders.ETAG);
+
+        sendUriAndGetMvcResult(get(IMAGE_BY_ADV_ID_AND_ID, 1L, 2L).header(HttpHeaders.IF_NONE_MATCH, eTag),
+                status().isNotModified());
+    }
+
+    @Test
+    void getImage_shouldReturnRequestedRange() throws Exception {
+        final var response = sendUriAndGetMvcResult(get(IMAGE_BY_ADV_ID_AND_ID, 1L, 1L).header(HttpHeaders.RANGE, "bytes=5-9"),
+                status().isPartialContent()).getResponse();
+
+        assertEquals(TEST_JPEG.substring(5, 10), response.getContentAsString());
+    }
+
+    @ParameterizedTest
+    @MethodSource("getNotExistedImageIds")
+    void getImage_shouldReturnNotFoundForAnotherAdvertisementImage(long advertisementId, long imageId) throws Exception {
+        sendUriAndGetMvcResult(get(IMAGE_BY_ADV_ID_AND_ID, advertisementId, imageId), status().isNotFound());
+    }
+
+    private static Stream<Arguments> getNotExistedImageIds() {
+        return Stream.of(
+                Arguments.of(2L, 1L),
+                Arguments.of(1L, 50L)
+        );
+    }
+
     @ParameterizedTest
     @MethodSource("getAdvertisementIdAndExpectedResult")
     void countImagesInAdvertisement(long advertisementId, ResultMatcher expectedStatus, String expectedResponse) throws Exception {
@@ -79,6 +204,20 @@ class ImageFlowTest extends BasicControllerTest {
         );
     }
 
+    @Test
+    void getImagesStatus_shouldReturnStatusOfEachImage() throws Exception {
+        sendUriAndGetResultAction(get(IMAGE_STATUS, 1L), status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id").value(1))
+                .andExpect(jsonPath("$[0].status").value("READY"))
+                .andExpect(jsonPath("$[1].status").value("READY"));
+    }
+
+    @Test
+    void getImagesStatus_shouldReturn404WhenAdvertisementIsNotExist() throws Exception {
+        sendUriAndGetMvcResult(get(IMAGE_STATUS, 50L), status().isNotFound());
+    }
+
     @WithMockUser("admin")
     @Test
     void saveImages_shouldReturn415WhenNotSupportedType() throws Exception {
@@ -104,6 +243,17 @@ class ImageFlowTest extends BasicControllerTest {
                 .file(jpeg)
                 .contentType(MediaType.MULTIPART_FORM_DATA_VALUE))
                 .andDo(print())
-                .andExpect(status().isOk());
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$", hasSize(1)));
+        // the image is processed in the background, its results mustn't be stored while the next test runs
+        awaitNoPendingImages();
+    }
+
+    private void awaitNoPendingImages() throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM image WHERE status = 'PENDING'", Integer.class) > 0) {
+            assertTrue(System.currentTimeMillis() < deadline, "Saved images have to be processed in 10 seconds");
+            Thread.sleep(10);
+        }
     }
 }
@@ -0,0 +1,98 @@
+package space.obminyashka.items_exchange.end2end;
+
+import com.github.database.rider.core.api.dataset.DataSet;
+import com.github.database.rider.junit5.api.DBRider;
+import com.jayway.jsonpath.JsonPath;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.web.servlet.MockMvc;
+import space.obminyashka.items_exchange.BasicControllerTest;
+import space.obminyashka.items_exchange.service.ImageEncoder;
+
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static space.obminyashka.items_exchange.api.ApiKey.*;
+
+/**
+ * JDK has no WebP writer, so a stub encoder stands for an ImageIO plugin to check that variants are made on upload
+ * and served to clients accepting them
+ */
+@SpringBootTest
+@DBRider
+@AutoConfigureMockMvc
+@DataSet("database_init.yml")
+class ImageVariantFlowTest extends BasicControllerTest {
+
+    private static final String IMAGE_WEBP_VALUE = "image/webp";
+    // RIFF container signature, the rest isn't decodable
+    private static final byte[] STUB_WEBP = "RIFF\0\0\0\0WEBPVP8 stub".getBytes(StandardCharsets.US_ASCII);
+
+    @TestConfiguration
+    static class StubWebpEncoderConfig {
+        @Bean
+        ImageEncoder stubWebpEncoder() {
+            return new ImageEncoder() {
+                @Override
+                public String getMediaType() {
+                    return IMAGE_WEBP_VALUE;
+                }
+
+                @Override
+                public boolean isAvailable() {
+                    return true;
+                }
+
+                @Override
+                public byte[] encode(BufferedImage image, int byteBudget) {
+                    return STUB_WEBP;
+                }
+            };
+        }
+    }
+
+    @Autowired
+    public ImageVariantFlowTest(MockMvc mockMvc) {
+        super(mockMvc);
+    }
+
+    @Test
+    @WithMockUser("admin")
+    void getImage_shouldServeVariantOfUploadedImageToClientsAcceptingIt() throws Exception {
+        final var jpeg = new MockMultipartFile("image", "test-image.jpeg", MediaType.IMAGE_JPEG_VALUE,
+                Files.readAllBytes(Path.of("src/test/resources/image/test-image.jpeg")));
+        final var uploadResponse = sendUriAndGetMvcResult(multipart(IMAGE_BY_ADV_ID, 1L).file(jpeg), status().isAccepted())
+                .getResponse().getContentAsString();
+        final long imageId = JsonPath.<Number>read(uploadResponse, "$[0]").longValue();
+        awaitImageReady(1L, imageId);
+
+        final var variant = sendUriAndGetMvcResult(get(IMAGE_BY_ADV_ID_AND_ID, 1L, imageId)
+                .accept(IMAGE_WEBP_VALUE, "image/*"), status().isOk()).getResponse();
+        final var renditionVariant = sendUriAndGetMvcResult(get(IMAGE_BY_ADV_ID_AND_ID, 1L, imageId).param("w", "150")
+                .accept(IMAGE_WEBP_VALUE, "image/*"), status().isOk()).getResponse();
+        final var original = sendUriAndGetMvcResult(get(IMAGE_BY_ADV_ID_AND_ID, 1L, imageId)
+                .accept("image/*"), status().isOk()).getResponse();
+
+        assertAll("WebP variants have to be served only to clients explicitly accepting them",
+                () -> assertArrayEquals(STUB_WEBP, variant.getContentAsByteArray()),
+                () -> assertEquals(IMAGE_WEBP_VALUE, variant.getContentType()),
+                () -> assertEquals(HttpHeaders.ACCEPT, variant.getHeader(HttpHeaders.VARY)),
+                () -> assertArrayEquals(STUB_WEBP, renditionVariant.getContentAsByteArray()),
+                () -> assertEquals(MediaType.IMAGE_JPEG_VALUE, original.getContentType()),
+                () -> assertNotEquals(variant.getHeader(HttpHeaders.ETAG), original.getHeader(HttpHeaders.ETAG)));
+    }
+}
@@ -0,0 +1,149 @@
+package space.obminyashka.items_exchange.search;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdvertisementSearchIndexTest {
+
+    private AdvertisementSearchIndex searchIndex;
+
+    @BeforeEach
+    void setUp() {
+        searchIndex = new AdvertisementSearchIndex();
+        searchIndex.index(1L, "Дитячі черевики", "Шкіряні черевики на осінь");
+        searchIndex.index(2L, "Детская куртка", "Тёплая зимняя куртка");
+        searchIndex.index(3L, "Winter jacket", "Warm jacket for boys");
+        searchIndex.index(4L, "М'яч футбольний", "Майже новий");
+        searchIndex.index(5L, "Boots", "Winter boots, size 30");
+    }
+
+    @ParameterizedTest
+    @MethodSource("getQueries")
+    void search_shouldMatchWholeWordsAndTheirParts(String query, List<Long> expectedIds) {
+        assertEquals(expectedIds, findIds(query));
+    }
+
+    private static Stream<Arguments> getQueries() {
+        return Stream.of(
+                Arguments.of("черевики", List.of(1L)), // whole Ukrainian word
+                Arguments.of("череВ", List.of(1L)), // case-insensitive prefix
+                Arguments.of("теплая", List.of(2L)), // 'ё' and 'е' are the same letter
+                Arguments.of("мяч", List.of(4L)), // apostrophe is ignored
+                Arguments.of("ots", List.of(5L)), // part of a word
+                Arguments.of("ревик", List.of(1L)), // part of a Ukrainian word
+                Arguments.of("winter boots", List.of(5L)), // every word has to be found
+                Arguments.of("jacket winter", List.of(3L)), // words order doesn't matter
+                Arguments.of("sneakers", List.of()),
+                Arguments.of(" , ", List.of())
+        );
+    }
+
+    @Test
+    void search_shouldRankTopicMatchesHigherThanDescriptionMatches() {
+        final var foundIds = findIds("winter");
+        assertEquals(List.of(3L, 5L), foundIds);
+    }
+
+    @Test
+    void search_shouldRankWholeWordHigherThanPrefix() {
+        searchIndex.index(6L, "Boot", "Single boot");
+        final var foundIds = findIds("boot");
+        assertEquals(List.of(6L, 5L), foundIds);
+    }
+
+    @Test
+    void search_shouldRankPrefixHigherThanPartOfWord() {
+        searchIndex.index(6L, "Snowboots", "Snowboots for kids");
+        assertEquals(List.of(5L, 6L), findIds("boot"));
+    }
+
+    @Test
+    void search_shouldReturnRequestedPartOfHitsAndTotal() {
+        final var allHits = searchIndex.search("winter", 0, 10).hits();
+        final var result = searchIndex.search("winter", 1, 1);
+
+        assertAll("Only the requested part of the ordered hits has to be returned",
+                () -> assertEquals(allHits.subList(1, 2), result.hits()),
+                () -> assertEquals(2, result.total()),
+                () -> assertTrue(searchIndex.search("winter", 2, 1).hits().isEmpty()));
+    }
+
+    @Test
+    void searchAfter_shouldContinueAfterLastSeenHit() {
+        searchIndex.index(6L, "Winter hat", "Warm hat");
+        final var allHits = searchIndex.search("winter", 0, 10).hits();
+
+        final var firstSlice = searchIndex.searchAfter("winter", null, 2);
+        final var secondSlice = searchIndex.searchAfter("winter", firstSlice.get(1), 2);
+
+        assertAll("Slices have to follow each other without gaps and repeats",
+                () -> assertEquals(allHits.subList(0, 2), firstSlice),
+                () -> assertEquals(allHits.subList(2, 3), secondSlice));
+    }
+
+    @Test
+    void index_shouldReplacePreviousTermsOfAdvertisement() {
+        searchIndex.index(3L, "Summer hat", "Light hat");
+
+        assertAll("Only the latest advertisement content has to be searchable",
+                () -> assertTrue(findIds("jacket").isEmpty()),
+                () -> assertEquals(3L, findIds("hat").get(0)),
+                () -> assertEquals(5, searchIndex.size()));
+    }
+
+    @Test
+    void remove_shouldExcludeAdvertisementFromResults() {
+        searchIndex.remove(5L);
+
+        assertAll("Removed advertisement must not be found",
+                () -> assertTrue(findIds("boots").isEmpty()),
+                () -> assertEquals(List.of(3L), findIds("winter")),
+                () -> assertEquals(4, searchIndex.size()));
+    }
+
+    @Test
+    void startRebuild_shouldKeepServingCurrentIndexUntilCompleted() {
+        final var rebuild = searchIndex.startRebuild();
+        rebuild.add(new AdvertisementSearchDocument(3L, "Winter jacket", "Warm jacket for boys"));
+
+        assertAll("Searches have to see the complete old index while the new one is filled",
+                () -> assertEquals(List.of(5L), findIds("boots")),
+                () -> assertEquals(5, searchIndex.size()));
+
+        rebuild.complete();
+
+        assertAll("Completed rebuild has to replace the whole index",
+                () -> assertTrue(findIds("boots").isEmpty()),
+                () -> assertEquals(List.of(3L), findIds("jacket")),
+                () -> assertEquals(1, searchIndex.size()));
+    }
+
+    @Test
+    void startRebuild_shouldKeepChangesMadeDuringRebuild() {
+        final var rebuild = searchIndex.startRebuild();
+        searchIndex.index(3L, "Summer hat", "Light hat");
+        searchIndex.remove(5L);
+        rebuild.add(new AdvertisementSearchDocument(3L, "Winter jacket", "Warm jacket for boys"));
+        rebuild.add(new AdvertisementSearchDocument(5L, "Boots", "Winter boots, size 30"));
+        rebuild.complete();
+
+        assertAll("Changes made after the rebuild had started are newer than the rebuilt documents",
+                () -> assertEquals(List.of(3L), findIds("hat")),
+                () -> assertTrue(findIds("jacket").isEmpty()),
+                () -> assertTrue(findIds("boots").isEmpty()));
+    }
+
+    private List<Long> findIds(String query) {
+        return searchIndex.search(query, 0, Integer.MAX_VALUE).hits().stream()
+                .map(SearchHit::advertisementId)
+                .toList();
+    }
+}
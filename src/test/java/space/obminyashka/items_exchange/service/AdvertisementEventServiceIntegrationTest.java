@@ -0,0 +1,115 @@
+package space.obminyashka.items_exchange.service;
+
+import com.github.database.rider.core.api.dataset.DataSet;
+import com.github.database.rider.junit5.api.DBRider;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import space.obminyashka.items_exchange.dao.AdvertisementEventRepository;
+import space.obminyashka.items_exchange.model.AdvertisementEvent;
+import space.obminyashka.items_exchange.search.AdvertisementSearchIndex;
+import space.obminyashka.items_exchange.search.SearchHit;
+import space.obminyashka.items_exchange.service.impl.AdvertisementTitlesCacheConsumer;
+import space.obminyashka.items_exchange.util.AdvertisementDtoCreatingUtil;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static space.obminyashka.items_exchange.model.enums.AdvertisementEventType.CREATED;
+
+@SpringBootTest
+@DBRider
+@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD, scripts = "classpath:index-reset.sql")
+class AdvertisementEventServiceIntegrationTest {
+    @Autowired
+    private AdvertisementService advertisementService;
+    @Autowired
+    private AdvertisementEventService advertisementEventService;
+    @Autowired
+    private AdvertisementEventRepository advertisementEventRepository;
+    @Autowired
+    private AdvertisementSearchIndex searchIndex;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @SpyBean
+    private AdvertisementTitlesCacheConsumer titlesCacheConsumer;
+
+    @BeforeEach
+    void setUp() {
+        advertisementEventRepository.deleteAll();
+    }
+
+    @Test
+    @DataSet("database_init.yml")
+    void updateAdvertisement_shouldUpdateSearchIndexAfterCommit() {
+        advertisementService.rebuildSearchIndex();
+
+        advertisementService.updateAdvertisement(AdvertisementDtoCreatingUtil.createExistAdvertisementModificationDtoForUpdate());
+
+        assertAll("Committed change has to be stored and consumed",
+                () -> assertEquals(List.of(1L), findIds("new topic")),
+                () -> assertEquals(1, advertisementEventRepository.count()));
+    }
+
+    @Test
+    @DataSet("database_init.yml")
+    void replayUnprocessed_shouldSkipEventsAlreadyDispatchedByThisInstance() {
+        advertisementService.updateAdvertisement(AdvertisementDtoCreatingUtil.createExistAdvertisementModificationDtoForUpdate());
+        reset(titlesCacheConsumer);
+
+        advertisementEventService.replayUnprocessed();
+
+        verify(titlesCacheConsumer, never()).consume(any());
+    }
+
+    @Test
+    @DataSet("database_init.yml")
+    void remove_shouldDropAdvertisementFromSearchIndexAfterCommit() {
+        advertisementService.rebuildSearchIndex();
+        assertEquals(List.of(1L), findIds("topic"));
+
+        advertisementService.remove(1L);
+
+        assertTrue(findIds("topic").isEmpty());
+    }
+
+    @Test
+    @DataSet("database_init.yml")
+    void replayUnprocessed_shouldCatchUpSearchIndexWithStoredEvents() {
+        searchIndex.clear();
+        advertisementEventRepository.saveAll(List.of(new AdvertisementEvent(2L, CREATED), new AdvertisementEvent(3L, CREATED)));
+
+        advertisementEventService.replayUnprocessed();
+
+        assertAll("Events stored by another instance have to be consumed",
+                () -> assertEquals(List.of(2L), findIds("blouses")),
+                () -> assertEquals(List.of(3L), findIds("dresses")));
+    }
+
+    @Test
+    void removeOutdated_shouldRemoveOnlyEventsOlderThanRetention() {
+        final var outdated = advertisementEventRepository.save(new AdvertisementEvent(2L, CREATED));
+        advertisementEventRepository.save(new AdvertisementEvent(3L, CREATED));
+        jdbcTemplate.update("UPDATE advertisement_event SET created = ? WHERE id = ?",
+                Timestamp.valueOf(LocalDateTime.now().minusDays(2)), outdated.getId());
+
+        advertisementEventService.removeOutdated();
+
+        assertEquals(List.of(3L), advertisementEventRepository.findAll().stream()
+                .map(AdvertisementEvent::getAdvertisementId)
+                .toList());
+    }
+
+    private List<Long> findIds(String query) {
+        return searchIndex.search(query, 0, Integer.MAX_VALUE).hits().stream()
+                .map(SearchHit::advertisementId)
+                .toList();
+    }
+}
@@ -2,24 +2,53 @@ package space.obminyashka.items_exchange.service;
 
 import com.github.database.rider.core.api.dataset.DataSet;
 import com.github.database.rider.junit5.api.DBRider;
+import org.hibernate.Session;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
 import org.springframework.test.context.jdbc.Sql;
+import org.springframework.transaction.support.TransactionTemplate;
 import space.obminyashka.items_exchange.dao.AdvertisementRepository;
+import space.obminyashka.items_exchange.dto.AdvertisementFilterDto;
+import space.obminyashka.items_exchange.dto.AdvertisementTitleDto;
+import space.obminyashka.items_exchange.model.enums.AgeRange;
+import space.obminyashka.items_exchange.model.enums.Gender;
+import space.obminyashka.items_exchange.model.enums.Season;
+import space.obminyashka.items_exchange.util.AdvertisementDtoCreatingUtil;
+import space.obminyashka.items_exchange.util.QueryPlanUtil;
+import space.obminyashka.items_exchange.util.RecordingStatementInspector;
 
+import javax.persistence.EntityManager;
 import javax.transaction.Transactional;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
-@SpringBootTest
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector=" +
+        "space.obminyashka.items_exchange.util.RecordingStatementInspector")
 @DBRider
 @Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD, scripts = "classpath:index-reset.sql")
 class AdvertisementServiceIntegrationTest {
+    private static final int SEEDED_ADVERTISEMENTS = 5000;
+    private static final int SEEDED_SUBCATEGORIES = 3;
+
     @Autowired
     private AdvertisementRepository repository;
     @Autowired
     private AdvertisementService advertisementService;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
 
     @Test
     @Transactional
@@ -36,4 +65,128 @@ class AdvertisementServiceIntegrationTest {
         final var secondTitlesGetAttempt = advertisementService.findRandom12Thumbnails();
         assertEquals(firstTitlesGetAttempt, secondTitlesGetAttempt, "Collections must be equals because of caching response");
     }
-}
\ No newline at end of file
+
+    @Test
+    @DataSet("database_init.yml")
+    void findAllTitles_shouldSelectWholePageWithSingleStatement() {
+        final var loadedEntitiesCount = new AtomicInteger();
+        final List<AdvertisementTitleDto> titles;
+        final List<String> statements;
+        try {
+            RecordingStatementInspector.start();
+            titles = transactionTemplate.execute(status -> {
+                final var page = repository.findAllTitles(PageRequest.of(0, 12));
+                loadedEntitiesCount.set(entityManager.unwrap(Session.class).getStatistics().getEntityCount());
+                return page;
+            });
+        } finally {
+            statements = RecordingStatementInspector.stop();
+        }
+
+        assertAll("Thumbnails page must be selected without loading any entity",
+                () -> assertEquals(repository.count(), titles.size()),
+                () -> assertEquals(1, statements.size(), statements::toString),
+                () -> assertEquals(0, loadedEntitiesCount.get()),
+                () -> assertTrue(titles.stream().allMatch(title -> title.getLocation() != null)),
+                () -> assertTrue(titles.stream().allMatch(title -> title.getOwnerName().equals("admin")))
+        );
+    }
+
+    @Test
+    @DataSet("database_init.yml")
+    void findByFilter_shouldSelectOnlyRequestedPageOfMatchedAdvertisements() {
+        seedAdvertisements();
+        final var filter = AdvertisementFilterDto.builder()
+                .subcategoryId(2L)
+                .locationId(1L)
+                .age(AgeRange.FROM_10_TO_12)
+                .build();
+        final List<AdvertisementTitleDto> titles;
+        final List<String> statements;
+        try {
+            RecordingStatementInspector.start();
+            titles = advertisementService.findByFilter(filter, PageRequest.of(0, 1000));
+        } finally {
+            statements = RecordingStatementInspector.stop();
+        }
+
+        assertAll("Only filled parameters have to be matched within the page size limit",
+                () -> assertEquals(AdvertisementService.MAX_FILTER_PAGE_SIZE, titles.size()),
+                () -> assertEquals(1, statements.size(), statements::toString),
+                () -> assertTrue(statements.stream().noneMatch(sql -> sql.contains("is null")), statements::toString),
+                () -> assertTrue(titles.stream()
+                        .allMatch(title -> title.getAdvertisementId() % SEEDED_SUBCATEGORIES == 1)),
+                () -> assertEquals(titles.stream().sorted(Comparator.comparingLong(AdvertisementTitleDto::getAdvertisementId).reversed()).toList(),
+                        titles)
+        );
+    }
+
+    @Test
+    @DataSet("database_init.yml")
+    void findByFilter_shouldBeServedByCompositeIndex() {
+        seedAdvertisements();
+        jdbcTemplate.execute("ANALYZE");
+        final var filter = AdvertisementFilterDto.builder()
+                .subcategoryId(2L)
+                .locationId(1L)
+                .age(AgeRange.FROM_10_TO_12)
+                .gender(Gender.FEMALE)
+                .build();
+
+        final List<String> statements;
+        try {
+            RecordingStatementInspector.start();
+            advertisementService.findByFilter(filter, PageRequest.of(0, 10));
+        } finally {
+            statements = RecordingStatementInspector.stop();
+        }
+
+        assertEquals(1, statements.size());
+        final var plan = QueryPlanUtil.explain(jdbcTemplate, statements.get(0));
+        assertTrue(plan.toLowerCase().contains("idx_advertisement_filter"), plan);
+    }
+
+    @Test
+    @DataSet("database_init.yml")
+    void updateAdvertisement_shouldNeitherReadNorWriteThumbnail() {
+        final long thumbnailId = new SimpleJdbcInsert(jdbcTemplate)
+                .withTableName("advertisement_thumbnail")
+                .usingGeneratedKeyColumns("id")
+                .executeAndReturnKey(Map.of("content", new byte[]{1, 2, 3}))
+                .longValue();
+        jdbcTemplate.update("UPDATE advertisement SET thumbnail_id = ? WHERE id = 1", thumbnailId);
+        final List<String> statements;
+        try {
+            RecordingStatementInspector.start();
+            advertisementService.updateAdvertisement(AdvertisementDtoCreatingUtil.createExistAdvertisementModificationDtoForUpdate());
+            statements = RecordingStatementInspector.stop();
+            assertEquals(thumbnailId, jdbcTemplate.queryForObject("SELECT thumbnail_id FROM advertisement WHERE id = 1", Long.class));
+        } finally {
+            jdbcTemplate.update("DELETE FROM advertisement_thumbnail WHERE id = ?", thumbnailId);
+        }
+
+        final var advertisementUpdates = statements.stream()
+                .filter(sql -> sql.toLowerCase().startsWith("update") && sql.contains("advertisement"))
+                .toList();
+        assertAll("Advertisement has to be updated without touching its thumbnail",
+                () -> assertFalse(advertisementUpdates.isEmpty()),
+                () -> assertTrue(advertisementUpdates.stream().noneMatch(sql -> sql.contains("thumbnail")), advertisementUpdates::toString),
+                () -> assertTrue(statements.stream().noneMatch(sql -> sql.contains("advertisement_thumbnail")), statements::toString));
+    }
+
+    private void seedAdvertisements() {
+        final var ages = AgeRange.values();
+        final var genders = Gender.values();
+        final var seasons = Season.values();
+        final List<Object[]> rows = LongStream.rangeClosed(100, 100 + SEEDED_ADVERTISEMENTS)
+                .mapToObj(id -> new Object[]{id, "topic " + id, "description " + id, 1L, 1L,
+                        id % SEEDED_SUBCATEGORIES + 1,
+                        ages[(int) (id / SEEDED_SUBCATEGORIES % ages.length)].name(),
+                        genders[(int) (id % genders.length)].name(),
+                        seasons[(int) (id % seasons.length)].name()})
+                .toList();
+        jdbcTemplate.batchUpdate("INSERT INTO advertisement " +
+                "(id, topic, description, user_id, location_id, subcategory_id, age, gender, season) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", rows);
+    }
+}
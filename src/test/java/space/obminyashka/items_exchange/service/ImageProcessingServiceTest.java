@@ -0,0 +1,283 @@
+package space.obminyashka.items_exchange.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.MessageSource;
+import org.springframework.context.support.StaticMessageSource;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.multipart.MultipartFile;
+import space.obminyashka.items_exchange.exception.ImageProcessingOverloadedException;
+import space.obminyashka.items_exchange.service.ImageProcessingService.ProcessedImage;
+import space.obminyashka.items_exchange.service.impl.ImageProcessingServiceImpl;
+import space.obminyashka.items_exchange.storage.BlobStore;
+import space.obminyashka.items_exchange.util.MessageSourceUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImageProcessingServiceTest {
+    private static final int THREADS = 1;
+    private static final int QUEUE_CAPACITY = 1;
+    private static final long STALE_AFTER_MILLIS = 60_000;
+    private static final long TIMEOUT_MILLIS = 5_000;
+    private static final String UPLOAD_HASH = "upload hash";
+    private static final byte[] COMPRESSED = "compressed".getBytes();
+    private static final byte[] THUMBNAIL = "thumbnail".getBytes();
+    private static final byte[] RENDITION = "rendition".getBytes();
+    private static final int RENDITION_WIDTH = 320;
+
+    private static MessageSource applicationMessageSource;
+
+    @Mock
+    private ImageService imageService;
+    @Mock
+    private BlobStore blobStore;
+    @TempDir
+    Path spoolDirectory;
+    private SimpleMeterRegistry meterRegistry;
+    private ImageProcessingServiceImpl imageProcessingService;
+
+    @BeforeAll
+    static void setUpMessageSource() {
+        // contexts of other tests are cached, so their message source is put back afterwards
+        applicationMessageSource = (MessageSource) ReflectionTestUtils.getField(MessageSourceUtil.class, "mSource");
+        final var messageSource = new StaticMessageSource();
+        messageSource.setUseCodeAsDefaultMessage(true);
+        ReflectionTestUtils.setField(MessageSourceUtil.class, "mSource", messageSource);
+    }
+
+    @AfterAll
+    static void restoreMessageSource() {
+        ReflectionTestUtils.setField(MessageSourceUtil.class, "mSource", applicationMessageSource);
+    }
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        imageProcessingService = new ImageProcessingServiceImpl(imageService, blobStore, meterRegistry,
+                THREADS, QUEUE_CAPACITY, spoolDirectory, STALE_AFTER_MILLIS);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        // images submitted by a test may still be processed, their spooled files must be gone before the directory is
+        awaitInFlight(0);
+        imageProcessingService.shutdown();
+    }
+
+    @Test
+    void submit_shouldRejectWholeUploadWhenOverloaded() throws Exception {
+        final var release = new CountDownLatch(1);
+        when(blobStore.keyOf(any(InputStream.class))).thenReturn(UPLOAD_HASH);
+        when(imageService.findProcessed(UPLOAD_HASH)).thenAnswer(invocation -> {
+            release.await();
+            return Optional.of(new ProcessedImage(COMPRESSED, null, Map.of(), Map.of(), UPLOAD_HASH));
+        });
+
+        final var processing = imageProcessingService.submit(List.of(image(), image()), false);
+        final List<MultipartFile> overloading = List.of(image());
+        assertThrows(ImageProcessingOverloadedException.class, () -> imageProcessingService.submit(overloading, false));
+
+        release.countDown();
+        CompletableFuture.allOf(processing.toArray(CompletableFuture[]::new)).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        assertAll("Accepted images have to be processed and their room has to be free again",
+                () -> assertEquals(0, inFlight()),
+                () -> assertEquals(2, meterRegistry.get("image.processing.reused").counter().count()),
+                () -> assertEquals(0, countSpooled()),
+                () -> assertDoesNotThrow(() -> imageProcessingService.submit(List.of(image(), image()), false)));
+    }
+
+    @Test
+    void submit_shouldReleaseCapacityWhenProcessingFails() throws Exception {
+        when(blobStore.keyOf(any(InputStream.class))).thenReturn(UPLOAD_HASH);
+        when(imageService.findProcessed(UPLOAD_HASH)).thenReturn(Optional.empty());
+        when(imageService.compress(any(Path.class))).thenThrow(new UncheckedIOException(new IOException("corrupted")));
+
+        final var processing = imageProcessingService.submit(List.of(image(), image()), false);
+        imageProcessingService.completeWhenProcessed(List.of(1L, 2L), processing);
+
+        for (CompletableFuture<ProcessedImage> imageProcessing : processing) {
+            assertThrows(ExecutionException.class, () -> imageProcessing.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+        }
+        verify(imageService, timeout(TIMEOUT_MILLIS)).failProcessing(1L);
+        verify(imageService, timeout(TIMEOUT_MILLIS)).failProcessing(2L);
+        verify(imageService, never()).completeProcessing(anyLong(), any());
+        assertAll("Failed images have to free their room",
+                () -> assertEquals(0, inFlight()),
+                () -> assertEquals(0, countSpooled()),
+                () -> assertDoesNotThrow(() -> imageProcessingService.submit(List.of(image(), image()), false)));
+    }
+
+    @Test
+    void completeWhenProcessed_shouldStoreProcessedImage() throws Exception {
+        final long imageId = 1L;
+        when(blobStore.keyOf(any(InputStream.class))).thenReturn(UPLOAD_HASH);
+        when(imageService.findProcessed(UPLOAD_HASH)).thenReturn(Optional.empty());
+        when(imageService.compress(any(Path.class))).thenReturn(COMPRESSED);
+        when(imageService.scale(COMPRESSED)).thenReturn(THUMBNAIL);
+        when(imageService.makeRenditions(COMPRESSED)).thenReturn(Map.of(RENDITION_WIDTH, RENDITION));
+        when(imageService.makeVariants(any())).thenReturn(Map.of());
+
+        final var processing = imageProcessingService.submit(List.of(image()), true);
+        imageProcessingService.completeWhenProcessed(List.of(imageId), processing);
+
+        final var processedCaptor = ArgumentCaptor.forClass(ProcessedImage.class);
+        verify(imageService, timeout(TIMEOUT_MILLIS)).completeProcessing(eq(imageId), processedCaptor.capture());
+        final var processed = processedCaptor.getValue();
+        assertAll("Processing results have to be stored into the pending image",
+                () -> assertArrayEquals(COMPRESSED, processed.image()),
+                () -> assertArrayEquals(THUMBNAIL, processed.thumbnail()),
+                () -> assertArrayEquals(RENDITION, processed.renditions().get(RENDITION_WIDTH)),
+                () -> assertEquals(UPLOAD_HASH, processed.uploadHash()),
+                () -> assertEquals(0, inFlight()),
+                () -> assertEquals(0, countSpooled()));
+        verify(imageService, never()).failProcessing(anyLong());
+    }
+
+    @Test
+    void cancel_shouldDropImagesWaitingForThread() throws Exception {
+        final var processingStarted = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        when(blobStore.keyOf(any(InputStream.class))).thenReturn(UPLOAD_HASH);
+        when(imageService.findProcessed(UPLOAD_HASH)).thenAnswer(invocation -> {
+            processingStarted.countDown();
+            release.await();
+            return Optional.of(new ProcessedImage(COMPRESSED, null, Map.of(), Map.of(), UPLOAD_HASH));
+        });
+
+        final var processing = imageProcessingService.submit(List.of(image(), image()), false);
+        assertTrue(processingStarted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), "The first image has to be taken by the thread");
+        imageProcessingService.cancel(processing);
+        release.countDown();
+
+        awaitInFlight(0);
+        verify(imageService, times(1)).findProcessed(UPLOAD_HASH);
+        assertAll("Cancelled images have to free their room, the waiting one without being processed",
+                () -> assertTrue(processing.stream().allMatch(CompletableFuture::isCancelled)),
+                () -> assertEquals(0, countSpooled()));
+    }
+
+    @Test
+    void submit_shouldNotKeepUploadedImagesInMemoryWhileTheyWait() throws Exception {
+        final var processingStarted = new CountDownLatch(1);
+        final var release = new CountDownLatch(1);
+        when(blobStore.keyOf(any(InputStream.class))).thenReturn(UPLOAD_HASH);
+        when(imageService.findProcessed(UPLOAD_HASH)).thenAnswer(invocation -> {
+            processingStarted.countDown();
+            release.await();
+            return Optional.of(new ProcessedImage(COMPRESSED, null, Map.of(), Map.of(), UPLOAD_HASH));
+        });
+
+        final List<WeakReference<MultipartFile>> uploaded = new ArrayList<>();
+        final var processing = submitAndForget(uploaded);
+        assertTrue(processingStarted.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS), "The first image has to be taken by the thread");
+        // the request is complete, only the mock still refers to the uploaded images
+        clearInvocations(imageService);
+        try {
+            assertAll("The waiting image has to be read from its spooled file, its upload has to be collectable",
+                    () -> assertTrue(isCollected(uploaded.get(1))),
+                    () -> assertEquals(1, meterRegistry.get("image.processing.queue.depth").gauge().value()),
+                    () -> assertEquals(2, countSpooled()));
+        } finally {
+            release.countDown();
+        }
+        CompletableFuture.allOf(processing.toArray(CompletableFuture[]::new)).get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    void constructor_shouldDeleteOnlyOrphanedSpooledImages() throws IOException {
+        final var orphaned = Files.createFile(spoolDirectory.resolve("image1.upload"));
+        Files.setLastModifiedTime(orphaned, FileTime.fromMillis(System.currentTimeMillis() - 2 * STALE_AFTER_MILLIS));
+        final var recent = Files.createFile(spoolDirectory.resolve("image2.upload"));
+        final var unrelated = Files.createFile(spoolDirectory.resolve("notes.txt"));
+        Files.setLastModifiedTime(unrelated, FileTime.fromMillis(System.currentTimeMillis() - 2 * STALE_AFTER_MILLIS));
+
+        new ImageProcessingServiceImpl(imageService, blobStore, meterRegistry,
+                THREADS, QUEUE_CAPACITY, spoolDirectory, STALE_AFTER_MILLIS).shutdown();
+
+        assertAll("Only images spooled before the stale time have to be deleted",
+                () -> assertFalse(Files.exists(orphaned)),
+                () -> assertTrue(Files.exists(recent)),
+                () -> assertTrue(Files.exists(unrelated)));
+    }
+
+    @Test
+    void failStaleProcessing_shouldFailImagesPendingForTooLong() {
+        final var checkStarted = LocalDateTime.now();
+        when(imageService.failStaleProcessing(any())).thenReturn(1);
+
+        imageProcessingService.failStaleProcessing();
+
+        final var pendingBeforeCaptor = ArgumentCaptor.forClass(LocalDateTime.class);
+        verify(imageService).failStaleProcessing(pendingBeforeCaptor.capture());
+        final var pendingBefore = pendingBeforeCaptor.getValue();
+        assertAll("Only images pending for longer than configured are failed",
+                () -> assertFalse(pendingBefore.isBefore(checkStarted.minus(STALE_AFTER_MILLIS, ChronoUnit.MILLIS))),
+                () -> assertTrue(pendingBefore.isBefore(checkStarted)));
+    }
+
+    private static MockMultipartFile image() {
+        return new MockMultipartFile("image", "image.jpg", MediaType.IMAGE_JPEG_VALUE, "image".getBytes());
+    }
+
+    private double inFlight() {
+        return meterRegistry.get("image.processing.in.flight").gauge().value();
+    }
+
+    private void awaitInFlight(int images) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (inFlight() != images) {
+            assertTrue(System.currentTimeMillis() < deadline, "In-flight images have to become " + images + " in " + TIMEOUT_MILLIS + " ms");
+            Thread.sleep(10);
+        }
+    }
+
+    private List<CompletableFuture<ProcessedImage>> submitAndForget(List<WeakReference<MultipartFile>> uploaded)
+            throws Exception {
+        final List<MultipartFile> upload = List.of(image(), image());
+        upload.forEach(image -> uploaded.add(new WeakReference<>(image)));
+        return imageProcessingService.submit(upload, false);
+    }
+
+    private static boolean isCollected(WeakReference<?> reference) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (reference.get() != null && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        return reference.get() == null;
+    }
+
+    private long countSpooled() throws IOException {
+        try (var spooled = Files.list(spoolDirectory)) {
+            return spooled.count();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package space.obminyashka.items_exchange.service;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,10 +16,21 @@ import space.obminyashka.items_exchange.exception.UnsupportedMediaTypeException;
 import space.obminyashka.items_exchange.model.Advertisement;
 import space.obminyashka.items_exchange.model.Image;
 import space.obminyashka.items_exchange.service.basic.BasicImageCreator;
+import space.obminyashka.items_exchange.storage.BlobStore;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.lang.reflect.UndeclaredThrowableException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -29,6 +41,8 @@ class ImageServiceTest extends BasicImageCreator{
     private ImageRepository imageRepository;
     @Autowired
     private ImageService imageService;
+    @Autowired
+    private BlobStore blobStore;
     private Image jpeg;
     private MockMultipartFile testJpg;
     private MockMultipartFile testPng;
@@ -71,7 +85,8 @@ class ImageServiceTest extends BasicImageCreator{
     void compressImages_shouldCompressImage_WhenValidImageTypes() throws IOException, UnsupportedMediaTypeException {
         List<byte[]> compressed = imageService.compress(List.of(testJpg, testPng));
         assertNotEquals(compressed.get(0).length, testJpg.getBytes().length);
-        assertNotEquals(compressed.get(1).length, testPng.getBytes().length);
+        // the test PNG is already smaller than its re-encoding, so it's kept as is
+        assertArrayEquals(testPng.getBytes(), compressed.get(1));
     }
 
     @Test
@@ -80,6 +95,16 @@ class ImageServiceTest extends BasicImageCreator{
         assertTrue(testJpg.getBytes().length > compressImage.length);
     }
 
+    @Test
+    void compressSpooledImage_shouldCompressLikeReceivedBytes(@TempDir Path spoolDirectory) throws IOException {
+        final var spooledJpg = Files.write(spoolDirectory.resolve("image.upload"), testJpg.getBytes());
+        final var spooledPng = Files.write(spoolDirectory.resolve("image2.upload"), testPng.getBytes());
+
+        assertAll("Spooled images have to be compressed the same way as their bytes",
+                () -> assertArrayEquals(imageService.compress(testJpg.getBytes()), imageService.compress(spooledJpg)),
+                () -> assertArrayEquals(testPng.getBytes(), imageService.compress(spooledPng)));
+    }
+
     @Test
     void compressImage_shouldThrowException_WhenInvalidImageType(){
         assertThrows(UndeclaredThrowableException.class, () -> imageService.compress(testTxt));
@@ -103,6 +128,19 @@ class ImageServiceTest extends BasicImageCreator{
         assertArrayEquals(imageCaptor.getValue().getResource(), testJpg.getBytes());
     }
 
+    @Test
+    void findResource_shouldServeInlineImageWithoutStoringIt() {
+        final var inlineImage = ("image stored inline " + UUID.randomUUID()).getBytes(StandardCharsets.UTF_8);
+        when(imageRepository.findStoredResource(1L, 1L)).thenReturn(Optional.of(inlineImage));
+
+        final var found = imageService.findResource(1L, 1L).orElseThrow();
+
+        assertAll("Image stored inline has to be served from its row without writing a blob",
+                () -> assertArrayEquals(inlineImage, found.content().getInputStream().readAllBytes()),
+                () -> assertEquals(blobStore.keyOf(inlineImage), found.key()),
+                () -> assertFalse(blobStore.exists(found.key())));
+    }
+
     @Test
     void removeById_shouldRemoveAllImagesWithReceivedId() {
         List<Long> testImagesId = List.of(1L, 2L, 3L);
@@ -116,7 +154,7 @@ class ImageServiceTest extends BasicImageCreator{
     void removeById_shouldRemoveOneImageWithReceivedId() {
         long imageId = 1L;
         imageService.removeById(imageId);
-        verify(imageRepository).deleteById(imageId);
+        verify(imageRepository).deleteAllByIdIn(List.of(imageId));
         verifyNoMoreInteractions(imageRepository);
     }
 
@@ -133,4 +171,24 @@ class ImageServiceTest extends BasicImageCreator{
         byte[] result = imageService.scale(bytes);
         assertTrue(bytes.length >= result.length, "Images' resources should have a smaller size");
     }
+
+    @Test
+    void makeRenditions_shouldDownscaleOnlyImagesWiderThanRendition() throws IOException {
+        byte[] bytes = testPng.getBytes();
+        Map<Integer, byte[]> renditions = imageService.makeRenditions(bytes);
+
+        BufferedImage smallest = ImageIO.read(new ByteArrayInputStream(renditions.get(150)));
+        assertAll("Checking every configured rendition is made",
+                () -> assertEquals(Set.of(150, 300, 800), renditions.keySet()),
+                () -> assertEquals(150, smallest.getWidth()),
+                () -> assertEquals(150, smallest.getHeight()),
+                () -> assertArrayEquals(bytes, renditions.get(300)),
+                () -> assertArrayEquals(bytes, renditions.get(800)));
+    }
+
+    @Test
+    void makeVariants_shouldSkipFormatsWithoutAvailableEncoder() throws IOException {
+        assertTrue(imageService.makeVariants(testJpg.getBytes()).isEmpty(),
+                "JDK has no WebP writer, so no variant can be made without a plugin");
+    }
 }
\ No newline at end of file
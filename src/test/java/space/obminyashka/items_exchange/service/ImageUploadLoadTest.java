@@ -0,0 +1,180 @@
+package space.obminyashka.items_exchange.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.ImageIO;
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Uploads 50 advertisements with 10 images each at once and checks that the heap retained during the processing
+ * depends on the amount of processing threads only, not on the amount of uploaded images.
+ * It takes minutes, so it's run with -Dload-test=true only, {@link ImageProcessingServiceTest} checks in every build
+ * that waiting images aren't kept in memory
+ */
+@EnabledIfSystemProperty(named = "load-test", matches = "true")
+@SpringBootTest(properties = {"app.image.processing.threads=" + ImageUploadLoadTest.THREADS,
+        "app.image.processing.queue-capacity=" + ImageUploadLoadTest.UPLOADS * ImageUploadLoadTest.IMAGES_PER_UPLOAD})
+class ImageUploadLoadTest {
+    static final int THREADS = 4;
+    static final int UPLOADS = 50;
+    static final int IMAGES_PER_UPLOAD = 10;
+    private static final int WIDTH = 1600;
+    private static final int HEIGHT = 1200;
+    // a decoded image, its renditions, their encodings in every format and encoding buffers of every processing thread
+    private static final long DECODED_IMAGE_BYTES = (long) WIDTH * HEIGHT * 4;
+    private static final ObjectName DIAGNOSTIC_COMMAND = diagnosticCommand();
+    private static final long RETAINED_HEAP_LIMIT = THREADS * DECODED_IMAGE_BYTES * 16 + 64 * 1024 * 1024;
+
+    @Autowired
+    private ImageProcessingService imageProcessingService;
+    @TempDir
+    Path uploadDirectory;
+    private Path photo;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        final var image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+        final var random = new Random(42);
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                image.setRGB(x, y, random.nextInt(0xFFFFFF));
+            }
+        }
+        photo = uploadDirectory.resolve("photo.jpeg");
+        ImageIO.write(image, "jpeg", photo.toFile());
+    }
+
+    @Test
+    void submit_shouldKeepRetainedHeapFlat_whenManyImagesAreUploadedConcurrently() throws Exception {
+        final long baseline = retainedHeap();
+        final var peak = new AtomicLong(baseline);
+        final var processed = new CountDownLatch(UPLOADS * IMAGES_PER_UPLOAD);
+        final var sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleWithFixedDelay(() -> peak.accumulateAndGet(retainedHeap(), Math::max), 0, 100, TimeUnit.MILLISECONDS);
+        final ExecutorService uploaders = Executors.newFixedThreadPool(UPLOADS);
+        try {
+            for (int i = 0; i < UPLOADS; i++) {
+                uploaders.submit(() -> {
+                    // results aren't kept, as they are stored and dropped by completeWhenProcessed otherwise
+                    imageProcessingService.submit(upload(), false)
+                            .forEach(processing -> processing.whenComplete((result, ex) -> processed.countDown()));
+                    return null;
+                });
+            }
+            assertTrue(processed.await(10, TimeUnit.MINUTES), "Every uploaded image has to be processed");
+        } finally {
+            uploaders.shutdown();
+            sampler.shutdown();
+        }
+
+        final long retainedGrowth = peak.get() - baseline;
+        assertTrue(retainedGrowth < RETAINED_HEAP_LIMIT, "Retained heap grew by " + retainedGrowth +
+                " bytes, while images of all uploads are " + Files.size(photo) * UPLOADS * IMAGES_PER_UPLOAD + " bytes");
+    }
+
+    private static ObjectName diagnosticCommand() {
+        try {
+            return new ObjectName("com.sun.management:type=DiagnosticCommand");
+        } catch (MalformedObjectNameException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<MultipartFile> upload() {
+        return Stream.<MultipartFile>generate(() -> new FileMultipartFile(photo))
+                .limit(IMAGES_PER_UPLOAD)
+                .toList();
+    }
+
+    private static long retainedHeap() {
+        // System.gc() is skipped while image codecs hold arrays in native code, and ImageIO streams are freed
+        // by their finalizers, so the heap is measured by a class histogram, which always makes a full collection
+        System.runFinalization();
+        try {
+            final var histogram = (String) ManagementFactory.getPlatformMBeanServer().invoke(DIAGNOSTIC_COMMAND,
+                    "gcClassHistogram", new Object[]{new String[0]}, new String[]{String[].class.getName()});
+            final var total = histogram.substring(histogram.lastIndexOf("Total")).trim().split("\\s+");
+            return Long.parseLong(total[2]);
+        } catch (JMException e) {
+            throw new IllegalStateException("Unable to measure the retained heap", e);
+        }
+    }
+
+    /**
+     * Part of a multipart request spooled to disk by the servlet container
+     */
+    private record FileMultipartFile(Path file) implements MultipartFile {
+
+        @Override
+        public String getName() {
+            return "image";
+        }
+
+        @Override
+        public String getOriginalFilename() {
+            return file.getFileName().toString();
+        }
+
+        @Override
+        public String getContentType() {
+            return MediaType.IMAGE_JPEG_VALUE;
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return getSize() == 0;
+        }
+
+        @Override
+        public long getSize() {
+            return file.toFile().length();
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            return Files.readAllBytes(file);
+        }
+
+        @Override
+        public InputStream getInputStream() throws IOException {
+            return Files.newInputStream(file);
+        }
+
+        @Override
+        public void transferTo(File dest) throws IOException {
+            transferTo(dest.toPath());
+        }
+
+        @Override
+        public void transferTo(Path dest) throws IOException {
+            Files.copy(file, dest, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
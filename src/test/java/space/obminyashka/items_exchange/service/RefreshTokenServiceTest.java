@@ -0,0 +1,100 @@
+package space.obminyashka.items_exchange.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import space.obminyashka.items_exchange.dao.RefreshTokenRepository;
+import space.obminyashka.items_exchange.model.RefreshToken;
+import space.obminyashka.items_exchange.model.Role;
+import space.obminyashka.items_exchange.model.User;
+import space.obminyashka.items_exchange.model.enums.Status;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest
+class RefreshTokenServiceTest {
+    private static final String REFRESH_TOKEN = "refresh token";
+
+    @MockBean
+    private RefreshTokenRepository refreshTokenRepository;
+    @Autowired
+    private RefreshTokenService refreshTokenService;
+
+    @Value("${app.refresh.jwt.cleanup.batch-size}")
+    private int cleanupBatchSize;
+
+    @ParameterizedTest
+    @MethodSource("getTestLocales")
+    void renewAccessTokenByRefresh_shouldReplaceTokenAndSetLanguageOfRequest(Locale expectedLocale) {
+        final var user = createUser();
+        user.setLanguage(Locale.FRANCE);
+        final var refreshToken = new RefreshToken(user, "hash", LocalDateTime.now().plusDays(1));
+        when(refreshTokenRepository.findWithUserByTokenHash(anyString())).thenReturn(Optional.of(refreshToken));
+        when(refreshTokenRepository.rotate(anyLong(), anyString(), anyString(), any())).thenReturn(1);
+
+        final var renewedTokens = refreshTokenService.renewAccessTokenByRefresh(REFRESH_TOKEN, expectedLocale).orElseThrow();
+
+        assertAll("Tokens have to be renewed and the language has to be stored",
+                () -> assertNotEquals(REFRESH_TOKEN, renewedTokens.refreshToken()),
+                () -> assertFalse(renewedTokens.accessToken().isEmpty()),
+                () -> assertEquals(expectedLocale, user.getLanguage()));
+    }
+
+    @Test
+    void renewAccessTokenByRefresh_shouldRemoveReplacingToken_whenReplacedTokenIsReused() {
+        when(refreshTokenRepository.findWithUserByTokenHash(anyString())).thenReturn(Optional.empty());
+        when(refreshTokenRepository.deleteByPreviousTokenHash(anyString())).thenReturn(1);
+
+        assertTrue(refreshTokenService.renewAccessTokenByRefresh(REFRESH_TOKEN, Locale.ENGLISH).isEmpty());
+        verify(refreshTokenRepository).deleteByPreviousTokenHash(anyString());
+        verify(refreshTokenRepository, never()).rotate(anyLong(), anyString(), anyString(), any());
+    }
+
+    @Test
+    void renewAccessTokenByRefresh_shouldReturnEmpty_whenTokenIsReplacedConcurrently() {
+        final var refreshToken = new RefreshToken(createUser(), "hash", LocalDateTime.now().plusDays(1));
+        when(refreshTokenRepository.findWithUserByTokenHash(anyString())).thenReturn(Optional.of(refreshToken));
+        when(refreshTokenRepository.rotate(anyLong(), anyString(), anyString(), any())).thenReturn(0);
+
+        assertTrue(refreshTokenService.renewAccessTokenByRefresh(REFRESH_TOKEN, Locale.ENGLISH).isEmpty());
+    }
+
+    @Test
+    void removeExpiredTokens_shouldDeleteInBatches() {
+        final var fullBatch = LongStream.range(0, cleanupBatchSize).boxed().toList();
+        final var lastBatch = List.of(-1L);
+        when(refreshTokenRepository.findExpiredIds(any(), any())).thenReturn(fullBatch, lastBatch);
+
+        refreshTokenService.removeExpiredTokens();
+
+        verify(refreshTokenRepository).deleteAllByIdInBatch(fullBatch);
+        verify(refreshTokenRepository).deleteAllByIdInBatch(lastBatch);
+        verify(refreshTokenRepository, times(2)).findExpiredIds(any(), any());
+    }
+
+    private static User createUser() {
+        final var user = new User();
+        user.setId(1L);
+        user.setUsername("admin");
+        user.setRole(new Role(1L, "ROLE_USER", null));
+        user.setStatus(Status.ACTIVE);
+        user.setUpdated(LocalDateTime.now());
+        return user;
+    }
+
+    private static List<Locale> getTestLocales() {
+        return List.of(Locale.ENGLISH, new Locale("ua"), new Locale("ru"));
+    }
+}
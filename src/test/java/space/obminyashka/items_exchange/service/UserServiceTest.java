@@ -2,16 +2,11 @@ package space.obminyashka.items_exchange.service;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.params.ParameterizedTest;
-import org.junit.jupiter.params.provider.MethodSource;
-import org.mockito.ArgumentCaptor;
-import org.mockito.Captor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
-import org.springframework.context.i18n.LocaleContextHolder;
-import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import space.obminyashka.items_exchange.dao.UserRepository;
 import space.obminyashka.items_exchange.dto.UserChangeEmailDto;
 import space.obminyashka.items_exchange.dto.UserChangePasswordDto;
@@ -20,8 +15,6 @@ import space.obminyashka.items_exchange.model.enums.Status;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Locale;
-import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -39,12 +32,10 @@ class UserServiceTest {
 
     @MockBean
     private UserRepository userRepository;
-    @Captor
-    private ArgumentCaptor<User> userArgumentCaptor;
     @Autowired
     private UserService userService;
     @Autowired
-    private BCryptPasswordEncoder bCryptPasswordEncoder;
+    private PasswordEncoder passwordEncoder;
 
     @Value("${number.of.days.to.keep.deleted.users}")
     private int numberOfDaysToKeepDeletedUsers;
@@ -61,7 +52,7 @@ class UserServiceTest {
         String message = userService.updateUserPassword(userChangePasswordDto, userWithOldPassword);
 
         assertEquals(getMessageSource("changed.user.password"), message);
-        assertTrue(bCryptPasswordEncoder.matches(NEW_PASSWORD, userWithOldPassword.getPassword()));
+        assertTrue(passwordEncoder.matches(NEW_PASSWORD, userWithOldPassword.getPassword()));
         verify(userRepository).saveAndFlush(userWithOldPassword);
     }
 
@@ -108,7 +99,7 @@ class UserServiceTest {
 
     private User createUserWithOldPassword() {
         userWithOldPassword = new User();
-        userWithOldPassword.setPassword(bCryptPasswordEncoder.encode(CORRECT_OLD_PASSWORD));
+        userWithOldPassword.setPassword(passwordEncoder.encode(CORRECT_OLD_PASSWORD));
         userWithOldPassword.setUpdated(LocalDateTime.now());
 
         return userWithOldPassword;
@@ -130,21 +121,4 @@ class UserServiceTest {
 
         return user;
     }
-
-    @ParameterizedTest
-    @MethodSource("getTestLocales")
-    void updatePreferableLanguage_shouldSetLanguageAccordingContext(Locale expectedLocale) {
-        LocaleContextHolder.setLocale(expectedLocale);
-        final var user = new User();
-        user.setLanguage(Locale.FRANCE);
-        when(userRepository.findByRefreshToken_Token(anyString())).thenReturn(Optional.of(user));
-
-        userService.updatePreferableLanguage("mocked token");
-        verify(userRepository).saveAndFlush(userArgumentCaptor.capture());
-        assertEquals(expectedLocale, userArgumentCaptor.getValue().getLanguage());
-    }
-
-    private static List<Locale> getTestLocales() {
-        return List.of(Locale.ENGLISH, new Locale("ua"), new Locale("ru"));
-    }
 }
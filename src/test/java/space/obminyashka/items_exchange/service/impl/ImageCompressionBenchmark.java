@@ -0,0 +1,98 @@
+package space.obminyashka.items_exchange.service.impl;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.net.URLConnection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares throughput and allocation per image of the compression made by {@link ImageCodec} against the previous
+ * implementation, which looked up a new writer for every image and read it twice through stream wrappers.
+ * The corpus covers uploaded formats in sizes from a downscaled picture to a 12MP phone photo. Images are generated
+ * photo-like, a gradient with fine details, and encoded as a camera would, so their decoding costs as real uploads do.
+ * Run the main method from the IDE or with the test classpath; the GC profiler reports allocation
+ * per operation as gc.alloc.rate.norm
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ImageCompressionBenchmark {
+
+    private static final float QUALITY = 0.30f;
+    private static final float SOURCE_QUALITY = 0.90f;
+
+    @Param({"image/jpeg", "image/png"})
+    private String mediaType;
+    @Param({"800x600", "1920x1080", "4000x3000"})
+    private String size;
+    private byte[] image;
+
+    @Setup
+    public void setUp() throws IOException {
+        final String[] dimensions = size.split("x");
+        final int width = Integer.parseInt(dimensions[0]);
+        final int height = Integer.parseInt(dimensions[1]);
+        final var photo = new BufferedImage(width, height, BufferedImage.TYPE_3BYTE_BGR);
+        final var graphics = photo.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, width, height, Color.BLUE));
+        graphics.fillRect(0, 0, width, height);
+        final var random = new Random(42);
+        for (int i = 0; i < width * height / 600; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.drawLine(random.nextInt(width), random.nextInt(height), random.nextInt(width), random.nextInt(height));
+        }
+        graphics.dispose();
+        image = ImageCodec.encode(photo, mediaType, SOURCE_QUALITY);
+    }
+
+    @Benchmark
+    public byte[] previousCompression() throws IOException {
+        try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
+             BufferedOutputStream bos = new BufferedOutputStream(baos);
+             ImageOutputStream ios = ImageIO.createImageOutputStream(bos)) {
+
+            final var contentType = URLConnection.guessContentTypeFromStream(new BufferedInputStream(new ByteArrayInputStream(image)));
+            ImageWriter writer = ImageIO.getImageWritersByMIMEType(contentType).next();
+            writer.setOutput(ios);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed()) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(QUALITY);
+            }
+            BufferedImage bufferedImage = ImageIO.read(new ByteArrayInputStream(image));
+            writer.write(null, new IIOImage(bufferedImage, null, null), param);
+            writer.dispose();
+            return baos.toByteArray();
+        }
+    }
+
+    @Benchmark
+    public byte[] pooledCompression() throws IOException {
+        final var mediaType = ImageCodec.detectMediaType(image);
+        return ImageCodec.encode(ImageCodec.decode(image, 0, 0).orElseThrow(), mediaType, QUALITY);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ImageCompressionBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,101 @@
+package space.obminyashka.items_exchange.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ImageScalerTest {
+
+    @ParameterizedTest
+    @MethodSource("getWidthFittingSizes")
+    void fitToWidth_shouldKeepAspectRatioAndRoundHeight(Dimension source, int width, Dimension expected) {
+        assertEquals(expected, ImageScaler.fitToWidth(source, width));
+    }
+
+    private static Stream<Arguments> getWidthFittingSizes() {
+        return Stream.of(
+                Arguments.of(new Dimension(4000, 3000), 800, new Dimension(800, 600)),
+                Arguments.of(new Dimension(3000, 4000), 150, new Dimension(150, 200)),
+                // 33.3 and 33.5 pixels high
+                Arguments.of(new Dimension(1000, 333), 100, new Dimension(100, 33)),
+                Arguments.of(new Dimension(1000, 335), 100, new Dimension(100, 34)),
+                // a panorama isn't flattened to nothing
+                Arguments.of(new Dimension(10_000, 10), 100, new Dimension(100, 1))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("getNotWiderSizes")
+    void fitToWidth_shouldNotUpscale(Dimension source, int width) {
+        assertEquals(source, ImageScaler.fitToWidth(source, width));
+    }
+
+    private static Stream<Arguments> getNotWiderSizes() {
+        return Stream.of(
+                Arguments.of(new Dimension(300, 200), 800),
+                Arguments.of(new Dimension(800, 2000), 800)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("getEdgeCoveringSizes")
+    void coverEdge_shouldKeepAspectRatioAndShorterSideEqualToEdge(Dimension source, Dimension expected) {
+        assertEquals(expected, ImageScaler.coverEdge(source, 300));
+    }
+
+    private static Stream<Arguments> getEdgeCoveringSizes() {
+        return Stream.of(
+                Arguments.of(new Dimension(4000, 3000), new Dimension(400, 300)),
+                Arguments.of(new Dimension(900, 700), new Dimension(386, 300)),
+                Arguments.of(new Dimension(1000, 1000), new Dimension(300, 300)),
+                // 562 * (300 / 562) is 299.99999999999994 in floating point
+                Arguments.of(new Dimension(562, 1000), new Dimension(300, 534)),
+                Arguments.of(new Dimension(1000, 562), new Dimension(534, 300)),
+                Arguments.of(new Dimension(100_000, 350), new Dimension(85_714, 300))
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource("getNotBiggerSizes")
+    void coverEdge_shouldNotUpscale(Dimension source) {
+        assertEquals(source, ImageScaler.coverEdge(source, 300));
+    }
+
+    private static Stream<Arguments> getNotBiggerSizes() {
+        return Stream.of(
+                Arguments.of(new Dimension(300, 300)),
+                Arguments.of(new Dimension(200, 100)),
+                Arguments.of(new Dimension(2000, 250))
+        );
+    }
+
+    @ParameterizedTest
+    @EnumSource(ImageScaler.Algorithm.class)
+    void scale_shouldReturnImageOfExactSize(ImageScaler.Algorithm algorithm) {
+        final var source = new BufferedImage(1001, 751, BufferedImage.TYPE_3BYTE_BGR);
+
+        final var scaled = ImageScaler.scale(source, 151, 113, algorithm);
+
+        assertAll("Scaled image has to have the requested size in an RGB raster",
+                () -> assertEquals(151, scaled.getWidth()),
+                () -> assertEquals(113, scaled.getHeight()),
+                () -> assertEquals(BufferedImage.TYPE_INT_RGB, scaled.getType()));
+    }
+
+    @Test
+    void scale_shouldKeepTransparency() {
+        final var source = new BufferedImage(400, 300, BufferedImage.TYPE_4BYTE_ABGR);
+
+        final var scaled = ImageScaler.scale(source, 200, 150, ImageScaler.Algorithm.PROGRESSIVE_BILINEAR);
+
+        assertEquals(BufferedImage.TYPE_INT_ARGB, scaled.getType());
+    }
+}
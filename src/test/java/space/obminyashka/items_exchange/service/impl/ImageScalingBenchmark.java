@@ -0,0 +1,67 @@
+package space.obminyashka.items_exchange.service.impl;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures thumbnail scaling of a 12MP (4000x3000) photo-like image to the 300px edge with every
+ * {@link ImageScaler.Algorithm}. The source is decoded as JPEG images are, into {@link BufferedImage#TYPE_3BYTE_BGR}.
+ * Run the main method from the IDE or with the test classpath
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class ImageScalingBenchmark {
+
+    private static final int SOURCE_WIDTH = 4000;
+    private static final int SOURCE_HEIGHT = 3000;
+    private static final int THUMBNAIL_WIDTH = 400;
+    private static final int THUMBNAIL_HEIGHT = 300;
+
+    // generated benchmark classes are in another package, so they can't refer to the package-private enum
+    @Param({"PROGRESSIVE_BILINEAR", "PROGRESSIVE_BICUBIC", "AREA_AVERAGING"})
+    private String algorithmName;
+    private ImageScaler.Algorithm algorithm;
+    private BufferedImage photo;
+
+    @Setup
+    public void setUp() {
+        algorithm = ImageScaler.Algorithm.valueOf(algorithmName);
+        photo = new BufferedImage(SOURCE_WIDTH, SOURCE_HEIGHT, BufferedImage.TYPE_3BYTE_BGR);
+        final var graphics = photo.createGraphics();
+        graphics.setPaint(new GradientPaint(0, 0, Color.ORANGE, SOURCE_WIDTH, SOURCE_HEIGHT, Color.BLUE));
+        graphics.fillRect(0, 0, SOURCE_WIDTH, SOURCE_HEIGHT);
+        // fine details make aliasing and interpolation costs as they are on real photos
+        final var random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.drawLine(random.nextInt(SOURCE_WIDTH), random.nextInt(SOURCE_HEIGHT),
+                    random.nextInt(SOURCE_WIDTH), random.nextInt(SOURCE_HEIGHT));
+        }
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage scaleToThumbnail() {
+        return ImageScaler.scale(photo, THUMBNAIL_WIDTH, THUMBNAIL_HEIGHT, algorithm);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ImageScalingBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,57 @@
+package space.obminyashka.items_exchange.storage;
+
+import com.github.database.rider.core.api.dataset.DataSet;
+import com.github.database.rider.junit5.api.DBRider;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import space.obminyashka.items_exchange.model.UserAvatar;
+
+import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DBRider
+class BlobContentTypeContributorIntegrationTest {
+    private static final String SELECT_AVATAR = "SELECT avatar_image FROM user WHERE id = 1";
+
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    @Autowired
+    private BlobStore blobStore;
+
+    @Test
+    @DataSet("database_init.yml")
+    void flush_shouldNotRewriteLoadedInlineContent() {
+        final var inline = jdbcTemplate.queryForObject(SELECT_AVATAR, byte[].class);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            entityManager.find(UserAvatar.class, 1L);
+            entityManager.flush();
+        });
+
+        assertArrayEquals(inline, jdbcTemplate.queryForObject(SELECT_AVATAR, byte[].class),
+                "Loading an avatar stored inline mustn't rewrite its row");
+    }
+
+    @Test
+    @DataSet("database_init.yml")
+    void flush_shouldPutReplacedContent() {
+        final var content = "replaced avatar".getBytes(StandardCharsets.UTF_8);
+
+        transactionTemplate.executeWithoutResult(status -> entityManager.find(UserAvatar.class, 1L).setContent(content));
+
+        final var stored = jdbcTemplate.queryForObject(SELECT_AVATAR, byte[].class);
+        assertAll("Replaced content has to be put into the blob store and referenced by the row",
+                () -> assertEquals(blobStore.keyOf(content), BlobReference.keyOf(stored).orElseThrow()),
+                () -> assertArrayEquals(content, blobStore.read(stored)));
+    }
+}
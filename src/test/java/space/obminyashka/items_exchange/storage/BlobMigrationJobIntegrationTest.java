@@ -0,0 +1,50 @@
+package space.obminyashka.items_exchange.storage;
+
+import com.github.database.rider.core.api.dataset.DataSet;
+import com.github.database.rider.junit5.api.DBRider;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.jdbc.Sql;
+import space.obminyashka.items_exchange.service.ImageService;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DBRider
+@Sql(executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD, scripts = "classpath:index-reset.sql")
+class BlobMigrationJobIntegrationTest {
+    @Autowired
+    private BlobMigrationJob blobMigrationJob;
+    @Autowired
+    private ImageService imageService;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    @DataSet("database_init.yml")
+    void migrate_shouldReplaceStoredContentWithReferences() {
+        final var imagesBefore = imageService.getImagesResourceByAdvertisementId(1);
+
+        final var moved = blobMigrationJob.migrate();
+
+        assertAll("Every binary value has to be moved to the blob store and stay readable",
+                () -> assertTrue(moved > 0),
+                () -> assertTrue(selectImageResources().stream().allMatch(value -> BlobReference.keyOf(value).isPresent())),
+                () -> assertTrue(BlobReference.keyOf(selectAvatar()).isPresent()),
+                () -> assertEquals(imagesBefore.size(), imageService.getImagesResourceByAdvertisementId(1).size()),
+                () -> assertArrayEquals(imagesBefore.get(0), imageService.getImagesResourceByAdvertisementId(1).get(0)));
+        assertEquals(0, blobMigrationJob.migrate(), "Values moved before have to be skipped");
+    }
+
+    private List<byte[]> selectImageResources() {
+        return jdbcTemplate.queryForList("SELECT resource FROM image", byte[].class);
+    }
+
+    private byte[] selectAvatar() {
+        return jdbcTemplate.queryForObject("SELECT avatar_image FROM user WHERE username = 'admin'", byte[].class);
+    }
+}
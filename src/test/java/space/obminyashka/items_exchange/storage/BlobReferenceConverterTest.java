@@ -0,0 +1,39 @@
+package space.obminyashka.items_exchange.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class BlobReferenceConverterTest {
+    private static final byte[] CONTENT = "test image jpeg".getBytes(StandardCharsets.UTF_8);
+    private static final String KEY = "a".repeat(64);
+
+    private final BlobStore blobStore = mock(BlobStore.class);
+    private final BlobReferenceConverter converter = new BlobReferenceConverter(blobStore);
+
+    @Test
+    void convertToDatabaseColumn_shouldPutContentAndReturnReference() {
+        when(blobStore.put(CONTENT)).thenReturn(KEY);
+
+        assertArrayEquals(BlobReference.of(KEY), converter.convertToDatabaseColumn(CONTENT));
+    }
+
+    @Test
+    void convertToDatabaseColumn_shouldKeepReferenceAsIs() {
+        final var reference = BlobReference.of(KEY);
+
+        assertSame(reference, converter.convertToDatabaseColumn(reference));
+        verifyNoInteractions(blobStore);
+    }
+
+    @Test
+    void convertToEntityAttribute_shouldNotReadContent() {
+        final var reference = BlobReference.of(KEY);
+
+        assertSame(reference, converter.convertToEntityAttribute(reference));
+        verifyNoInteractions(blobStore);
+    }
+}
@@ -0,0 +1,73 @@
+package space.obminyashka.items_exchange.storage;
+
+import com.github.database.rider.core.api.dataset.DataSet;
+import com.github.database.rider.junit5.api.DBRider;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@DBRider
+class BlobReferenceCounterIntegrationTest {
+    @Autowired
+    private BlobReferenceCounter blobReferenceCounter;
+    @Autowired
+    private BlobStore blobStore;
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void release_shouldDeleteBlobWithLastReferenceOnly() {
+        final var content = "shared image content".getBytes(StandardCharsets.UTF_8);
+        final var key = blobStore.put(content);
+        blobReferenceCounter.acquire(key, content.length);
+        blobReferenceCounter.acquire(key, content.length);
+
+        blobReferenceCounter.release(key);
+        assertTrue(blobStore.exists(key), "Blob has to be kept while it's referenced");
+
+        blobReferenceCounter.release(key);
+        assertFalse(blobStore.exists(key), "Blob has to be deleted with its last reference");
+    }
+
+    @Test
+    void release_shouldKeepBlobWithoutCounter() {
+        final var key = blobStore.put("image stored before counting".getBytes(StandardCharsets.UTF_8));
+
+        blobReferenceCounter.release(key);
+
+        assertTrue(blobStore.exists(key), "Blobs stored before the counting has to be kept");
+    }
+
+    @Test
+    @DataSet("database_init.yml")
+    void release_shouldKeepBlobReferencedByMigratedImage() {
+        final var content = "image moved to the blob store by the migration".getBytes(StandardCharsets.UTF_8);
+        final var key = blobStore.put(content);
+        // a legacy row the migration replaced with a reference without counting it
+        jdbcTemplate.update("UPDATE image SET resource = ? WHERE id = 1", (Object) BlobReference.of(key));
+
+        blobReferenceCounter.acquire(key, content.length);
+        blobReferenceCounter.release(key);
+
+        assertTrue(blobStore.exists(key), "Blob of a migrated image has to be kept after an identical upload is removed");
+    }
+
+    @Test
+    @DataSet("database_init.yml")
+    void release_shouldKeepBlobReferencedByUncountedRendition() {
+        final var content = "rendition stored before counting".getBytes(StandardCharsets.UTF_8);
+        final var key = blobStore.put(content);
+        jdbcTemplate.update("INSERT INTO image_rendition (image_id, width, blob_key) VALUES (1, 150, ?)", key);
+
+        blobReferenceCounter.acquire(key, content.length);
+        blobReferenceCounter.release(key);
+
+        assertTrue(blobStore.exists(key), "Blob of an uncounted rendition has to be kept");
+    }
+}
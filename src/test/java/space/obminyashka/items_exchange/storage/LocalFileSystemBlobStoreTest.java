@@ -0,0 +1,92 @@
+package space.obminyashka.items_exchange.storage;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalFileSystemBlobStoreTest {
+    private static final byte[] CONTENT = "test image jpeg".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path rootDirectory;
+    private LocalFileSystemBlobStore blobStore;
+
+    @BeforeEach
+    void setUp() {
+        blobStore = new LocalFileSystemBlobStore(rootDirectory);
+    }
+
+    @Test
+    void put_shouldStoreSameContentOnceInShardedDirectory() throws IOException {
+        final var firstKey = blobStore.put(CONTENT);
+        final var secondKey = blobStore.put(CONTENT.clone());
+
+        final var path = blobStore.resolve(firstKey);
+        try (var files = Files.walk(rootDirectory)) {
+            assertAll("Content has to be stored once under its SHA-256",
+                    () -> assertEquals(firstKey, secondKey),
+                    () -> assertEquals(64, firstKey.length()),
+                    () -> assertEquals(rootDirectory.resolve(firstKey.substring(0, 2)).resolve(firstKey.substring(2, 4)),
+                            path.getParent()),
+                    () -> assertEquals(1, files.filter(Files::isRegularFile).count()),
+                    () -> assertArrayEquals(CONTENT, blobStore.get(firstKey).orElseThrow()));
+        }
+    }
+
+    @Test
+    void keyOf_shouldMatchStoredKeyWithoutStoring() {
+        final var key = blobStore.keyOf(CONTENT);
+
+        assertAll("Key has to be calculated without storing the content",
+                () -> assertFalse(blobStore.exists(key)),
+                () -> assertEquals(blobStore.put(CONTENT), key));
+    }
+
+    @Test
+    void keyOf_shouldCalculateSameKeyFromStream() {
+        final var key = blobStore.keyOf(new ByteArrayInputStream(CONTENT));
+
+        assertAll("Key of streamed content has to be the key of the same bytes",
+                () -> assertFalse(blobStore.exists(key)),
+                () -> assertEquals(blobStore.keyOf(CONTENT), key));
+    }
+
+    @Test
+    void delete_shouldRemoveStoredContent() {
+        final var key = blobStore.put(CONTENT);
+
+        blobStore.delete(key);
+
+        assertAll("Content has to be removed",
+                () -> assertFalse(blobStore.exists(key)),
+                () -> assertTrue(blobStore.get(key).isEmpty()));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"", "../../etc/passwd", "ABCDEF"})
+    void get_shouldRejectInvalidKey(String key) {
+        assertThrows(IllegalArgumentException.class, () -> blobStore.get(key));
+    }
+
+    @Test
+    void read_shouldResolveReferencesAndKeepInlineValues() {
+        final var reference = BlobReference.of(blobStore.put(CONTENT));
+        final var missingReference = BlobReference.of(blobStore.keyOf("missing".getBytes(StandardCharsets.UTF_8)));
+
+        assertAll("Only references have to be read from the store",
+                () -> assertArrayEquals(CONTENT, blobStore.read(reference)),
+                () -> assertArrayEquals(CONTENT, blobStore.read(CONTENT)),
+                () -> assertArrayEquals(new byte[0], blobStore.read(missingReference)),
+                () -> assertNull(blobStore.read(null)));
+    }
+}
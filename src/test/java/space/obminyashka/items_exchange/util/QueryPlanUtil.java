@@ -0,0 +1,27 @@
+package space.obminyashka.items_exchange.util;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Types;
+
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public class QueryPlanUtil {
+
+    /**
+     * Get the plan of a statement recorded by {@link RecordingStatementInspector}. The plan is made when the statement
+     * is prepared, so its parameters are bound to NULL only to let it be executed
+     * @param jdbcTemplate template of the data source the statement was run against
+     * @param sql statement with '?' parameters
+     * @return plan of the statement as printed by the database
+     */
+    public static String explain(JdbcTemplate jdbcTemplate, String sql) {
+        return String.join("\n", jdbcTemplate.query("EXPLAIN " + sql, statement -> {
+            final var parametersCount = statement.getParameterMetaData().getParameterCount();
+            for (int i = 1; i <= parametersCount; i++) {
+                statement.setNull(i, Types.NULL);
+            }
+        }, (rs, rowNum) -> rs.getString(1)));
+    }
+}
@@ -0,0 +1,34 @@
+package space.obminyashka.items_exchange.util;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Records SQL statements prepared by Hibernate in the current thread between {@link #start()} and {@link #stop()},
+ * so statements of scheduled jobs and background processing running meanwhile aren't recorded.
+ * Enable it with the 'spring.jpa.properties.hibernate.session_factory.statement_inspector' property
+ */
+public class RecordingStatementInspector implements StatementInspector {
+    private static final ThreadLocal<List<String>> STATEMENTS = new ThreadLocal<>();
+
+    @Override
+    public String inspect(String sql) {
+        final var statements = STATEMENTS.get();
+        if (statements != null) {
+            statements.add(sql);
+        }
+        return sql;
+    }
+
+    public static void start() {
+        STATEMENTS.set(new ArrayList<>());
+    }
+
+    public static List<String> stop() {
+        final var statements = STATEMENTS.get();
+        STATEMENTS.remove();
+        return statements == null ? List.of() : List.copyOf(statements);
+    }
+}
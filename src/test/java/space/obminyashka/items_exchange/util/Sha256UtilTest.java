@@ -0,0 +1,29 @@
+package space.obminyashka.items_exchange.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class Sha256UtilTest {
+    // test vector of FIPS 180-2
+    private static final String ABC_HASH = "ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad";
+
+    @Test
+    void hash_shouldCalculateSha256OfText() {
+        assertEquals(ABC_HASH, HexFormat.of().formatHex(Sha256Util.hash("abc")));
+    }
+
+    @Test
+    void hash_shouldCalculateSameHashOfBytesAndDigest() {
+        final var content = "abc".getBytes(StandardCharsets.UTF_8);
+        final var digest = Sha256Util.newDigest();
+        digest.update(content);
+
+        assertAll("Every way of hashing has to give the same hash",
+                () -> assertArrayEquals(Sha256Util.hash(content), digest.digest()),
+                () -> assertEquals(ABC_HASH, HexFormat.of().formatHex(Sha256Util.hash(content))));
+    }
+}
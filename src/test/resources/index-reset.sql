@@ -7,4 +7,5 @@ ALTER TABLE PUBLIC.user ALTER COLUMN id RESTART WITH 1;
 ALTER TABLE PUBLIC.role ALTER COLUMN id RESTART WITH 1;
 ALTER TABLE PUBLIC.subcategory ALTER COLUMN id RESTART WITH 1;
 ALTER TABLE PUBLIC.child ALTER COLUMN id RESTART WITH 1;
-ALTER TABLE PUBLIC.phone ALTER COLUMN id RESTART WITH 1;
\ No newline at end of file
+ALTER TABLE PUBLIC.phone ALTER COLUMN id RESTART WITH 1;
+ALTER TABLE PUBLIC.advertisement_thumbnail ALTER COLUMN id RESTART WITH 1;
\ No newline at end of file